@@ -5,7 +5,10 @@ import com.github.gpluscb.toni.command.Command;
 import com.github.gpluscb.toni.command.CommandCategory;
 import com.github.gpluscb.toni.command.CommandDispatcher;
 import com.github.gpluscb.toni.command.CommandListener;
+import com.github.gpluscb.toni.command.CommandMetrics;
+import com.github.gpluscb.toni.command.FairCommandScheduler;
 import com.github.gpluscb.toni.command.admin.EvalCommand;
+import com.github.gpluscb.toni.command.admin.MetricsCommand;
 import com.github.gpluscb.toni.command.admin.ShutdownCommand;
 import com.github.gpluscb.toni.command.admin.StatusCommand;
 import com.github.gpluscb.toni.command.admin.UpdateSmashdataCommand;
@@ -13,34 +16,46 @@ import com.github.gpluscb.toni.command.game.*;
 import com.github.gpluscb.toni.command.help.HelpCommand;
 import com.github.gpluscb.toni.command.help.PingCommand;
 import com.github.gpluscb.toni.command.help.TermsCommand;
+import com.github.gpluscb.toni.command.lookup.FrameQueryCommand;
 import com.github.gpluscb.toni.command.lookup.MovesCommand;
+import com.github.gpluscb.toni.command.lookup.PunishCommand;
 import com.github.gpluscb.toni.command.lookup.SmashdataCommand;
 import com.github.gpluscb.toni.command.lookup.TournamentCommand;
 import com.github.gpluscb.toni.command.matchmaking.AvailableCommand;
 import com.github.gpluscb.toni.command.matchmaking.UnrankedConfigCommand;
 import com.github.gpluscb.toni.command.matchmaking.UnrankedLfgCommand;
 import com.github.gpluscb.toni.db.DBManager;
+import com.github.gpluscb.toni.menu.InteractionRouter;
+import com.github.gpluscb.toni.menu.ModalRegistry;
 import com.github.gpluscb.toni.smashdata.SmashdataManager;
+import com.github.gpluscb.toni.smashset.CharacterAutocompleteIndex;
+import com.github.gpluscb.toni.smashset.CharacterIndex;
 import com.github.gpluscb.toni.smashset.CharacterTree;
 import com.github.gpluscb.toni.smashset.Ruleset;
 import com.github.gpluscb.toni.smashset.Rulesets;
 import com.github.gpluscb.toni.startgg.GGManager;
+import com.github.gpluscb.toni.startgg.GGRequestScheduler;
+import com.github.gpluscb.toni.startgg.TournamentSearchCache;
 import com.github.gpluscb.toni.statsposting.BotListClient;
 import com.github.gpluscb.toni.statsposting.PostGuildRoutine;
 import com.github.gpluscb.toni.statsposting.dbots.DBotsClient;
 import com.github.gpluscb.toni.statsposting.dbots.DBotsClientMock;
 import com.github.gpluscb.toni.statsposting.dbots.StatsResponse;
+import com.github.gpluscb.toni.ultimateframedata.CharacterDataCache;
+import com.github.gpluscb.toni.ultimateframedata.FrameDataStore;
+import com.github.gpluscb.toni.ultimateframedata.HitboxImageCache;
 import com.github.gpluscb.toni.ultimateframedata.UltimateframedataClient;
+import com.github.gpluscb.toni.util.TimingWheel;
 import com.github.gpluscb.toni.util.discord.DiscordAppenderImpl;
 import com.github.gpluscb.toni.util.discord.ShardsLoadListener;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonParser;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.requests.RestAction;
 import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
@@ -65,8 +80,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -86,7 +100,11 @@ public class Bot {
     @Nonnull
     private final DBManager dbManager;
     @Nonnull
-    private final ScheduledExecutorService waiterPool;
+    private final TimingWheel timeoutWheel;
+    @Nonnull
+    private final FrameDataStore frameDataStore;
+    @Nonnull
+    private final HitboxImageCache hitboxImageCache;
     @Nonnull
     private final Gson gson;
 
@@ -140,7 +158,9 @@ public class Bot {
         OkHttpClient okHttp = new OkHttpClient.Builder().build();
 
         log.trace("Building GGManager");
-        ggManager = new GGManager(GGClient.builder(cfg.ggToken()).client(okHttp).build(), stopwords);
+        TournamentSearchCache searchCache = new TournamentSearchCache(new TournamentSearchCache.Settings.Builder().build());
+        GGRequestScheduler ggScheduler = new GGRequestScheduler(new GGRequestScheduler.Settings.Builder().build());
+        ggManager = new GGManager(GGClient.builder(cfg.ggToken()).client(okHttp).build(), stopwords, ggScheduler, searchCache);
 
         // Avoid unintentional pings.
         MessageRequest.setDefaultMentions(Collections.emptyList());
@@ -150,10 +170,14 @@ public class Bot {
 
         log.trace("Building UltimateframedataClient");
         UltimateframedataClient ufdClient = new UltimateframedataClient(okHttp, gson);
+        CharacterDataCache characterDataCache = new CharacterDataCache(ufdClient, new CharacterDataCache.Settings.Builder().build());
 
-        log.trace("Building EventWaiter");
-        waiterPool = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "EventWaiterPool [0 / 1] Waiter-Thread"));
-        EventWaiter waiter = new EventWaiter(waiterPool, false);
+        log.trace("Building InteractionRouter");
+        // Timeouts are on the scale of minutes, 100ms precision is plenty
+        timeoutWheel = new TimingWheel(100, TimeUnit.MILLISECONDS, 2);
+        // Every pending modal costs very little, this is just so abandoned ones can't pile up
+        ModalRegistry modalRegistry = new ModalRegistry(timeoutWheel, 10_000);
+        InteractionRouter router = new InteractionRouter(timeoutWheel, modalRegistry);
 
         long botId = cfg.botId();
 
@@ -178,7 +202,7 @@ public class Bot {
         } catch (Exception e) {
             log.error("Exception while loading characters - shutting down", e);
             ggManager.shutdown();
-            waiterPool.shutdownNow();
+            timeoutWheel.shutdown();
             throw e;
         }
 
@@ -188,7 +212,7 @@ public class Bot {
         } catch (SQLException e) {
             log.error("Exception while loading unranked manager - shutting down", e);
             ggManager.shutdown();
-            waiterPool.shutdownNow();
+            timeoutWheel.shutdown();
             throw e;
         }
 
@@ -201,7 +225,7 @@ public class Bot {
             log.error("Exception while loading rulesets - shutting down", e);
             ggManager.shutdown();
             dbManager.shutdown();
-            waiterPool.shutdownNow();
+            timeoutWheel.shutdown();
             throw e;
         }
 
@@ -212,12 +236,45 @@ public class Bot {
             log.error("Exception while loading smashdata - shutting down", e);
             ggManager.shutdown();
             dbManager.shutdown();
-            waiterPool.shutdownNow();
+            timeoutWheel.shutdown();
+            throw e;
+        }
+
+        log.trace("Loading frame data snapshot");
+        frameDataStore = new FrameDataStore(ufdClient, characterDataCache, cfg.frameDataSnapshotLocationOrDefault(), FrameDataStore.getCharacterIds(characterTree));
+        frameDataStore.start();
+
+        log.trace("Loading hitbox image cache");
+        try {
+            HitboxImageCache.Settings hitboxCacheSettings = new HitboxImageCache.Settings.Builder()
+                    .setMaxBytes(cfg.hitboxCacheMaxBytesOrDefault())
+                    .build();
+            hitboxImageCache = new HitboxImageCache(okHttp, cfg.hitboxCacheLocationOrDefault(), hitboxCacheSettings);
+        } catch (IOException e) {
+            log.error("Exception while loading hitbox image cache - shutting down", e);
+            ggManager.shutdown();
+            dbManager.shutdown();
+            timeoutWheel.shutdown();
+            frameDataStore.shutdown();
             throw e;
         }
 
+        log.trace("Creating command scheduler");
+        CommandDispatcher.ExecutionMode executionMode = cfg.virtualThreadsOrDefault()
+                ? CommandDispatcher.ExecutionMode.VIRTUAL_THREADS
+                : CommandDispatcher.ExecutionMode.PLATFORM_THREADS;
+        ExecutorService commandExecutor = CommandDispatcher.createExecutor(executionMode);
+        FairCommandScheduler.Settings schedulerSettings = new FairCommandScheduler.Settings.Builder()
+                .setMaxConcurrent(cfg.maxConcurrentCommandsOrDefault())
+                .setMaxQueuedPerGuild(cfg.maxQueuedCommandsPerGuildOrDefault())
+                .setMaxQueuedPerUser(cfg.maxQueuedCommandsPerUserOrDefault())
+                .setMaxQueueWaitMillis(cfg.maxCommandQueueWaitMillisOrDefault())
+                .build();
+        FairCommandScheduler commandScheduler = new FairCommandScheduler(commandExecutor, timeoutWheel, schedulerSettings);
+
         log.trace("Loading commands");
-        List<CommandCategory> commands = loadCommands(ufdClient, waiter, /*challonge, listener, */characterTree, rulesets);
+        CommandMetrics commandMetrics = new CommandMetrics();
+        List<CommandCategory> commands = loadCommands(ufdClient, characterDataCache, frameDataStore, hitboxImageCache, router, /*challonge, listener, */characterTree, rulesets, commandMetrics, commandScheduler);
 
         log.trace("Creating loadListener");
         long adminGuildId = cfg.adminGuildId();
@@ -246,7 +303,7 @@ public class Bot {
                     .enableCache(CacheFlag.MEMBER_OVERRIDES)
                     .setMemberCachePolicy(MemberCachePolicy.NONE)
                     .setChunkingFilter(ChunkingFilter.NONE)
-                    .addEventListeners(waiter, loadListener)
+                    .addEventListeners(router, loadListener)
                     .setActivity(Activity.listening("Help: /help"))
                     .setUseShutdownNow(true)
                     .build();
@@ -254,12 +311,15 @@ public class Bot {
             log.error("LoginException - shutting down", e);
             ggManager.shutdown();
             dbManager.shutdown();
-            waiterPool.shutdownNow();
+            timeoutWheel.shutdown();
+            frameDataStore.shutdown();
+            hitboxImageCache.shutdown();
+            commandExecutor.shutdown();
             throw e;
         }
 
         log.trace("Starting command listener and dispatcher");
-        dispatcher = new CommandDispatcher(commands);
+        dispatcher = new CommandDispatcher(commands, commandMetrics, commandExecutor, commandScheduler);
 
         CommandListener commandListener = new CommandListener(dispatcher, cfg);
         shardManager.addEventListener(commandListener);
@@ -291,13 +351,18 @@ public class Bot {
     }
 
     @Nonnull
-    private List<CommandCategory> loadCommands(@Nonnull UltimateframedataClient ufdClient, @Nonnull EventWaiter waiter, @Nonnull CharacterTree characterTree, @Nonnull List<Ruleset> rulesets) {
+    private List<CommandCategory> loadCommands(@Nonnull UltimateframedataClient ufdClient, @Nonnull CharacterDataCache characterDataCache, @Nonnull FrameDataStore frameDataStore, @Nonnull HitboxImageCache hitboxImageCache, @Nonnull InteractionRouter router, @Nonnull CharacterTree characterTree, @Nonnull List<Ruleset> rulesets, @Nonnull CommandMetrics commandMetrics, @Nonnull FairCommandScheduler commandScheduler) {
         List<CommandCategory> commands = new ArrayList<>();
 
+        // Shared by all commands resolving or autocompleting characters
+        CharacterIndex characterIndex = new CharacterIndex(characterTree);
+        CharacterAutocompleteIndex characterAutocompleteIndex = new CharacterAutocompleteIndex(characterTree.getAllCharacters(), OptionData.MAX_CHOICES);
+
         List<Command> adminCommands = new ArrayList<>();
         adminCommands.add(new ShutdownCommand(this));
         adminCommands.add(new EvalCommand());
         adminCommands.add(new StatusCommand());
+        adminCommands.add(new MetricsCommand(commandMetrics, commandScheduler, router, timeoutWheel, ufdClient, characterDataCache, hitboxImageCache, ggManager));
         adminCommands.add(new UpdateSmashdataCommand(smashdata));
         commands.add(new CommandCategory(null, null, adminCommands));
 
@@ -310,24 +375,26 @@ public class Bot {
         List<Command> gameCommands = new ArrayList<>();
         gameCommands.add(new RandomCharacterCommand(characterTree));
         gameCommands.add(new RandomPlayerCommand());
-        gameCommands.add(new RPSCommand(waiter));
-        gameCommands.add(new BlindPickCommand(waiter, characterTree));
-        gameCommands.add(new StrikeStagesCommand(waiter, dbManager, rulesets));
-        gameCommands.add(new CounterpickStagesCommand(waiter, dbManager, rulesets));
-        gameCommands.add(new SmashSetCommand(waiter, dbManager, rulesets, characterTree));
-        gameCommands.add(new RulesetsCommand(waiter, rulesets));
+        gameCommands.add(new RPSCommand(router));
+        gameCommands.add(new BlindPickCommand(router, characterIndex));
+        gameCommands.add(new StrikeStagesCommand(router, dbManager, rulesets));
+        gameCommands.add(new CounterpickStagesCommand(router, dbManager, rulesets));
+        gameCommands.add(new SmashSetCommand(router, dbManager, rulesets, characterIndex));
+        gameCommands.add(new RulesetsCommand(router, rulesets));
         commands.add(new CommandCategory("game", "Smash Bros. utility commands", gameCommands));
 
         List<Command> lookupCommands = new ArrayList<>();
-        lookupCommands.add(new TournamentCommand(ggManager, waiter));
-        lookupCommands.add(new MovesCommand(ufdClient, waiter, characterTree));
-        lookupCommands.add(new SmashdataCommand(waiter, smashdata));
+        lookupCommands.add(new TournamentCommand(ggManager, router));
+        lookupCommands.add(new MovesCommand(frameDataStore, hitboxImageCache, router, characterIndex, characterAutocompleteIndex));
+        lookupCommands.add(new FrameQueryCommand(frameDataStore));
+        lookupCommands.add(new PunishCommand(frameDataStore, characterIndex, characterAutocompleteIndex));
+        lookupCommands.add(new SmashdataCommand(router, smashdata));
         commands.add(new CommandCategory("lookup", "Lookup commands for other websites", lookupCommands));
 
         List<Command> matchmakingCommands = new ArrayList<>();
         matchmakingCommands.add(new UnrankedConfigCommand(dbManager));
         matchmakingCommands.add(new AvailableCommand(dbManager));
-        matchmakingCommands.add(new UnrankedLfgCommand(dbManager, waiter));
+        matchmakingCommands.add(new UnrankedLfgCommand(dbManager, router));
         commands.add(new CommandCategory("matchmaking", "Commands for matchmaking", matchmakingCommands));
 
         return commands;
@@ -349,6 +416,8 @@ public class Bot {
         shardManager.shutdown();
         dispatcher.shutdown();
         postGuildRoutine.shutdown();
+        frameDataStore.shutdown();
+        hitboxImageCache.shutdown();
         try {
             smashdata.shutdown();
         } catch (SQLException e) {
@@ -361,6 +430,6 @@ public class Bot {
             log.catching(e);
         }
 
-        waiterPool.shutdownNow();
+        timeoutWheel.shutdown();
     }
 }
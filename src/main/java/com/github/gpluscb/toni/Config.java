@@ -1,14 +1,36 @@
 package com.github.gpluscb.toni;
 
+import com.github.gpluscb.toni.command.FairCommandScheduler;
+import com.github.gpluscb.toni.ultimateframedata.HitboxImageCache;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.Path;
 
+/**
+ * Options added after the first release are nullable, so older config files keep working with their defaults.
+ *
+ * @param frameDataSnapshotLocation "frame_data.snapshot" next to the state db if not set
+ * @param hitboxCacheLocation       "hitbox_cache" next to the state db if not set
+ * @param hitboxCacheMaxMegabytes   {@link HitboxImageCache.Settings#DEFAULT_MAX_BYTES} if not set
+ * @param virtualThreads            whether commands run on virtual threads, false if not set
+ * @param maxConcurrentCommands     {@link FairCommandScheduler.Settings#DEFAULT_MAX_CONCURRENT} if not set
+ * @param maxQueuedCommandsPerGuild {@link FairCommandScheduler.Settings#DEFAULT_MAX_QUEUED_PER_GUILD} if not set
+ * @param maxQueuedCommandsPerUser  {@link FairCommandScheduler.Settings#DEFAULT_MAX_QUEUED_PER_USER} if not set
+ * @param maxCommandQueueWaitMillis {@link FairCommandScheduler.Settings#DEFAULT_MAX_QUEUE_WAIT_MILLIS} if not set
+ */
 public record Config(@Nonnull String ggToken, @Nonnull String discordToken,
                      @Nonnull String dbotsToken, boolean mockBotLists,
                      @Nonnull String inviteUrl, long botId, @Nonnull String supportServer,
                      @Nonnull String twitterHandle, @Nonnull String github, long devId,
                      long adminGuildId, @Nonnull String stopwordListLocation,
                      @Nonnull String stateDbLocation, @Nonnull String smashdataDbLocation,
-                     @Nonnull String rulesetsLocation, @Nonnull String charactersFileLocation) {
+                     @Nonnull String rulesetsLocation, @Nonnull String charactersFileLocation,
+                     @Nullable String frameDataSnapshotLocation, @Nullable String hitboxCacheLocation,
+                     @Nullable Long hitboxCacheMaxMegabytes,
+                     @Nullable Boolean virtualThreads, @Nullable Integer maxConcurrentCommands,
+                     @Nullable Integer maxQueuedCommandsPerGuild, @Nullable Integer maxQueuedCommandsPerUser,
+                     @Nullable Long maxCommandQueueWaitMillis) {
     @SuppressWarnings("ConstantConditions")
     public void check() {
         if (ggToken == null) throw new IllegalStateException("ggToken may not be null");
@@ -22,5 +44,53 @@ public record Config(@Nonnull String ggToken, @Nonnull String discordToken,
         if (smashdataDbLocation == null) throw new IllegalStateException("smashdataDbLocation may not be null");
         if (rulesetsLocation == null) throw new IllegalStateException("rulesetsLocation may not be null");
         if (charactersFileLocation == null) throw new IllegalStateException("characterFileLocation may not be null");
+        if (hitboxCacheMaxMegabytes != null && hitboxCacheMaxMegabytes <= 0)
+            throw new IllegalStateException("hitboxCacheMaxMegabytes must be positive");
+        if (maxConcurrentCommands != null && maxConcurrentCommands <= 0)
+            throw new IllegalStateException("maxConcurrentCommands must be positive");
+        if (maxQueuedCommandsPerGuild != null && maxQueuedCommandsPerGuild < 0)
+            throw new IllegalStateException("maxQueuedCommandsPerGuild may not be negative");
+        if (maxQueuedCommandsPerUser != null && maxQueuedCommandsPerUser < 0)
+            throw new IllegalStateException("maxQueuedCommandsPerUser may not be negative");
+        if (maxCommandQueueWaitMillis != null && maxCommandQueueWaitMillis <= 0)
+            throw new IllegalStateException("maxCommandQueueWaitMillis must be positive");
+    }
+
+    @Nonnull
+    public Path frameDataSnapshotLocationOrDefault() {
+        return frameDataSnapshotLocation == null
+                ? Path.of(stateDbLocation).toAbsolutePath().resolveSibling("frame_data.snapshot")
+                : Path.of(frameDataSnapshotLocation);
+    }
+
+    @Nonnull
+    public Path hitboxCacheLocationOrDefault() {
+        return hitboxCacheLocation == null
+                ? Path.of(stateDbLocation).toAbsolutePath().resolveSibling("hitbox_cache")
+                : Path.of(hitboxCacheLocation);
+    }
+
+    public long hitboxCacheMaxBytesOrDefault() {
+        return hitboxCacheMaxMegabytes == null ? HitboxImageCache.Settings.DEFAULT_MAX_BYTES : hitboxCacheMaxMegabytes * 1024 * 1024;
+    }
+
+    public boolean virtualThreadsOrDefault() {
+        return virtualThreads != null && virtualThreads;
+    }
+
+    public int maxConcurrentCommandsOrDefault() {
+        return maxConcurrentCommands == null ? FairCommandScheduler.Settings.DEFAULT_MAX_CONCURRENT : maxConcurrentCommands;
+    }
+
+    public int maxQueuedCommandsPerGuildOrDefault() {
+        return maxQueuedCommandsPerGuild == null ? FairCommandScheduler.Settings.DEFAULT_MAX_QUEUED_PER_GUILD : maxQueuedCommandsPerGuild;
+    }
+
+    public int maxQueuedCommandsPerUserOrDefault() {
+        return maxQueuedCommandsPerUser == null ? FairCommandScheduler.Settings.DEFAULT_MAX_QUEUED_PER_USER : maxQueuedCommandsPerUser;
+    }
+
+    public long maxCommandQueueWaitMillisOrDefault() {
+        return maxCommandQueueWaitMillis == null ? FairCommandScheduler.Settings.DEFAULT_MAX_QUEUE_WAIT_MILLIS : maxCommandQueueWaitMillis;
     }
 }
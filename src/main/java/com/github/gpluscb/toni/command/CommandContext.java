@@ -16,8 +16,8 @@ import org.apache.logging.log4j.Logger;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-@SuppressWarnings("ClassCanBeRecord")
 public class CommandContext {
     private static final Logger log = LogManager.getLogger(CommandContext.class);
 
@@ -27,9 +27,30 @@ public class CommandContext {
     @Nonnull
     private final Config config;
 
+    private final long createdNanos;
+    @Nullable
+    private volatile CommandMetrics.CommandStats stats;
+    @Nonnull
+    private final AtomicBoolean replied;
+
     public CommandContext(@Nonnull SlashCommandInteractionEvent event, @Nonnull Config config) {
         this.event = event;
         this.config = config;
+
+        createdNanos = System.nanoTime();
+        replied = new AtomicBoolean(false);
+    }
+
+    /**
+     * Set by the dispatcher, so the time until the first reply can be recorded.
+     */
+    void setStats(@Nonnull CommandMetrics.CommandStats stats) {
+        this.stats = stats;
+    }
+
+    private void onReply() {
+        CommandMetrics.CommandStats stats = this.stats;
+        if (stats != null && !replied.getAndSet(true)) stats.recordFirstReply(System.nanoTime() - createdNanos);
     }
 
     @Nonnull
@@ -54,12 +75,28 @@ public class CommandContext {
     public ReplyAction<?, ?> reply(@Nonnull MessageCreateData message) {
         String content = message.getContent();
         log.debug("Reply: {}", content.isEmpty() ? message.getEmbeds() : content);
+        onReply();
 
         return event.isAcknowledged() ?
                 new ReplyAction<>(event.getHook().sendMessage(message))
                 : new ReplyAction<>(event.reply(message));
     }
 
+    /**
+     * Only the invoking user will see this reply.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public ReplyAction<?, ?> replyEphemeral(@Nonnull String message) {
+        log.debug("Ephemeral reply: {}", message);
+        onReply();
+
+        MessageCreateData data = new MessageCreateBuilder().setContent(message).build();
+        return event.isAcknowledged() ?
+                new ReplyAction<>(event.getHook().sendMessage(data).setEphemeral(true))
+                : new ReplyAction<>(event.reply(data).setEphemeral(true));
+    }
+
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public boolean memberHasBotAdminPermission() {
         return getUser().getIdLong() == getConfig().devId();
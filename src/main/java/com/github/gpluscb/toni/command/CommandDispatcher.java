@@ -10,7 +10,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -23,29 +22,50 @@ public class CommandDispatcher {
     private static final Logger log = LogManager.getLogger(CommandDispatcher.class);
 
     @Nonnull
-    private final List<CommandCategory> commands;
+    private final CommandRegistry registry;
     @Nonnull
     private final ExecutorService executor;
+    @Nonnull
+    private final FairCommandScheduler scheduler;
+
+    /**
+     * @param executor  see {@link #createExecutor(ExecutionMode)}, shut down with the dispatcher
+     * @param scheduler must run its commands on executor
+     */
+    public CommandDispatcher(@Nonnull List<CommandCategory> commands, @Nonnull CommandMetrics metrics,
+                             @Nonnull ExecutorService executor, @Nonnull FairCommandScheduler scheduler) {
+        registry = new CommandRegistry(commands, metrics);
+        this.executor = executor;
+        this.scheduler = scheduler;
+    }
 
-    public CommandDispatcher(@Nonnull List<CommandCategory> commands) {
-        this.commands = commands;
-        executor = Executors.newCachedThreadPool(new ThreadFactory() {
-            private final AtomicInteger i = new AtomicInteger();
-
-            @Override
-            public Thread newThread(@Nonnull Runnable runnable) {
-                return new Thread(runnable, String.format("CommandPool [%d] Command-Thread", i.getAndIncrement()));
-            }
-        });
+    /**
+     * The scheduler is created before the commands so they can report its stats, so the executor is created separately too.
+     */
+    @Nonnull
+    public static ExecutorService createExecutor(@Nonnull ExecutionMode mode) {
+        return switch (mode) {
+            case PLATFORM_THREADS -> Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger i = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@Nonnull Runnable runnable) {
+                    return new Thread(runnable, String.format("CommandPool [%d] Command-Thread", i.getAndIncrement()));
+                }
+            });
+            case VIRTUAL_THREADS ->
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("CommandPool Command-VirtualThread-", 0).factory());
+        };
     }
 
     public void dispatch(@Nonnull CommandContext ctx) {
-        Command command = findCommandByName(ctx.getName());
+        CommandRegistry.Entry entry = registry.get(ctx.getEvent().getFullCommandName());
 
-        if (command == null) return;
+        if (entry == null) return;
+        Command command = entry.command();
 
         if (ctx.getEvent().isFromGuild()) {
-            Permission[] perms = command.getInfo().requiredBotPerms();
+            Permission[] perms = entry.requiredBotPerms();
             Guild guild = ctx.getEvent().getGuild();
             GuildMessageChannel channel = ctx.getEvent().getGuildChannel();
 
@@ -60,43 +80,87 @@ public class CommandDispatcher {
             }
         }
 
+        long userId = ctx.getUser().getIdLong();
+        Guild guild = ctx.getEvent().getGuild();
+        long flowId = guild == null ? userId : guild.getIdLong();
+
+        FairCommandScheduler.Admission admission;
         synchronized (executor) {
             if (!executor.isShutdown()) {
                 log.trace("Dispatching command: {}", command);
-                executor.execute(FailLogger.logFail(() -> executeCommandSafe(command, ctx)));
-            } else log.info("Rejecting dispatch of command {} - already shut down", command);
+                long dispatchNanos = System.nanoTime();
+                admission = scheduler.submit(flowId, userId,
+                        FailLogger.logFail(() -> executeCommandSafe(entry, ctx, dispatchNanos)),
+                        FailLogger.logFail(() -> ctx.replyEphemeral("Sorry, I'm really busy right now and couldn't get to your command in time. Please try again in a moment.").queue()));
+            } else {
+                log.info("Rejecting dispatch of command {} - already shut down", command);
+                return;
+            }
+        }
+
+        switch (admission) {
+            case ACCEPTED -> {
+            }
+            case GUILD_QUEUE_FULL -> {
+                log.debug("Guild queue full, rejecting: {}", ctx);
+                ctx.replyEphemeral("Sorry, this server is using a lot of commands right now. Please try again in a moment.").queue();
+            }
+            case USER_QUEUE_FULL -> {
+                log.debug("User queue full, rejecting: {}", ctx);
+                ctx.replyEphemeral("Sorry, you have a lot of commands waiting already. Please try again once they're done.").queue();
+            }
         }
     }
 
-    private void executeCommandSafe(@Nonnull Command command, @Nonnull CommandContext ctx) {
+    private void executeCommandSafe(@Nonnull CommandRegistry.Entry entry, @Nonnull CommandContext ctx, long dispatchNanos) {
+        Command command = entry.command();
+        CommandMetrics.CommandStats stats = entry.stats();
+        ctx.setStats(stats);
+
+        long startNanos = System.nanoTime();
+        boolean failed = true;
         try {
             command.execute(ctx);
+            failed = false;
         } catch (Exception e) {
             log.error(String.format("Command %s had uncaught exception, ctx: %s", command, ctx), e);
             ctx.reply("One of my commands had a really bad error... I'll go yell at my dev about it (at least if they managed to implement that feature right), but you should give them some context too.").queue();
+        } finally {
+            stats.recordExecution(startNanos - dispatchNanos, System.nanoTime() - startNanos, failed);
         }
     }
 
     public void dispatchAutoComplete(@Nonnull CommandAutoCompleteInteractionEvent event) {
-        Command command = findCommandByName(event.getName());
-        if (command == null) {
-            log.error("Auto complete event was received, but no corresponding command was found: {}", event.getName());
+        CommandRegistry.Entry entry = registry.get(event.getFullCommandName());
+        if (entry == null) {
+            log.error("Auto complete event was received, but no corresponding command was found: {}", event.getFullCommandName());
             return;
         }
 
-        List<net.dv8tion.jda.api.interactions.commands.Command.Choice> choices = command.onAutocomplete(event);
-        event.replyChoices(choices).queue();
-    }
-
-    @Nullable
-    private Command findCommandByName(@Nonnull String name) {
-        return commands.stream().flatMap(category -> category.commands().stream())
-                .filter(command -> command.getInfo().commandData().getName().equals(name))
-                .findAny()
-                .orElse(null);
+        long startNanos = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<net.dv8tion.jda.api.interactions.commands.Command.Choice> choices = entry.command().onAutocomplete(event);
+            event.replyChoices(choices).queue();
+            failed = false;
+        } finally {
+            entry.stats().recordAutocomplete(System.nanoTime() - startNanos, failed);
+        }
     }
 
     public void shutdown() {
         executor.shutdown();
     }
+
+    public enum ExecutionMode {
+        /**
+         * Commands run on a cached pool of platform threads
+         */
+        PLATFORM_THREADS,
+        /**
+         * Every command runs on its own virtual thread.
+         * Blocking backends should bound their concurrency with a {@link com.github.gpluscb.toni.util.ConcurrencyLimiter}, not with threads.
+         */
+        VIRTUAL_THREADS
+    }
 }
@@ -0,0 +1,124 @@
+package com.github.gpluscb.toni.command;
+
+import com.github.gpluscb.toni.util.LatencyHistogram;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-command counters and latency histograms.
+ * The stats objects are created once when the {@link CommandRegistry} is built, recording doesn't allocate or lock.
+ */
+public class CommandMetrics {
+    @Nonnull
+    private final Map<String, CommandStats> stats;
+
+    public CommandMetrics() {
+        stats = new ConcurrentHashMap<>();
+    }
+
+    @Nonnull
+    public CommandStats forCommand(@Nonnull String name) {
+        return stats.computeIfAbsent(name, CommandStats::new);
+    }
+
+    @Nonnull
+    public Collection<CommandStats> getAll() {
+        return Collections.unmodifiableCollection(stats.values());
+    }
+
+    public static class CommandStats {
+        @Nonnull
+        private final String name;
+        @Nonnull
+        private final LongAdder count;
+        @Nonnull
+        private final LongAdder errors;
+        @Nonnull
+        private final LongAdder autocompleteErrors;
+        /**
+         * From dispatch until the command starts running
+         */
+        @Nonnull
+        private final LatencyHistogram queueWait;
+        @Nonnull
+        private final LatencyHistogram execution;
+        /**
+         * From receiving the interaction until the first {@link CommandContext} reply is created.
+         * Replies not made through {@link CommandContext} (like menus replying to the event directly) are not seen here.
+         */
+        @Nonnull
+        private final LatencyHistogram firstReply;
+        @Nonnull
+        private final LatencyHistogram autocomplete;
+
+        private CommandStats(@Nonnull String name) {
+            this.name = name;
+            count = new LongAdder();
+            errors = new LongAdder();
+            autocompleteErrors = new LongAdder();
+            queueWait = new LatencyHistogram();
+            execution = new LatencyHistogram();
+            firstReply = new LatencyHistogram();
+            autocomplete = new LatencyHistogram();
+        }
+
+        void recordExecution(long queueWaitNanos, long executionNanos, boolean failed) {
+            count.increment();
+            if (failed) errors.increment();
+            queueWait.record(queueWaitNanos, TimeUnit.NANOSECONDS);
+            execution.record(executionNanos, TimeUnit.NANOSECONDS);
+        }
+
+        void recordFirstReply(long nanos) {
+            firstReply.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        void recordAutocomplete(long nanos, boolean failed) {
+            if (failed) autocompleteErrors.increment();
+            autocomplete.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Nonnull
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getAutocompleteErrors() {
+            return autocompleteErrors.sum();
+        }
+
+        @Nonnull
+        public LatencyHistogram getQueueWait() {
+            return queueWait;
+        }
+
+        @Nonnull
+        public LatencyHistogram getExecution() {
+            return execution;
+        }
+
+        @Nonnull
+        public LatencyHistogram getFirstReply() {
+            return firstReply;
+        }
+
+        @Nonnull
+        public LatencyHistogram getAutocomplete() {
+            return autocomplete;
+        }
+    }
+}
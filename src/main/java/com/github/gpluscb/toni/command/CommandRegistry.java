@@ -0,0 +1,75 @@
+package com.github.gpluscb.toni.command;
+
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandGroupData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Built once from the command categories, so looking up a command is a single hash lookup.
+ * {@link Command#getInfo()} is only called once per command here, the result is cached in the {@link Entry}.
+ */
+public class CommandRegistry {
+    @Nonnull
+    private final Map<String, Entry> entries;
+
+    /**
+     * @throws IllegalStateException if two commands share a name
+     */
+    public CommandRegistry(@Nonnull List<CommandCategory> categories, @Nonnull CommandMetrics metrics) {
+        Map<String, Entry> entries = new HashMap<>();
+
+        for (CommandCategory category : categories) {
+            for (Command command : category.commands()) {
+                CommandInfo info = command.getInfo();
+                Entry entry = new Entry(command, info, info.requiredBotPerms().clone(), metrics.forCommand(info.commandData().getName()));
+
+                for (String path : getPaths(info))
+                    if (entries.putIfAbsent(path, entry) != null)
+                        throw new IllegalStateException(String.format("Duplicate command path: %s", path));
+            }
+        }
+
+        this.entries = entries;
+    }
+
+    /**
+     * @param path the full command name as in {@link net.dv8tion.jda.api.interactions.commands.CommandInteractionPayload#getFullCommandName()}
+     */
+    @Nullable
+    public Entry get(@Nonnull String path) {
+        return entries.get(path);
+    }
+
+    @Nonnull
+    private static List<String> getPaths(@Nonnull CommandInfo info) {
+        String name = info.commandData().getName();
+
+        List<String> paths = new ArrayList<>();
+        paths.add(name);
+
+        if (info.commandData() instanceof SlashCommandData slashData) {
+            for (SubcommandData subcommand : slashData.getSubcommands())
+                paths.add(String.format("%s %s", name, subcommand.getName()));
+
+            for (SubcommandGroupData group : slashData.getSubcommandGroups()) {
+                String groupPath = String.format("%s %s", name, group.getName());
+                for (SubcommandData subcommand : group.getSubcommands())
+                    paths.add(String.format("%s %s", groupPath, subcommand.getName()));
+            }
+        }
+
+        return paths;
+    }
+
+    /**
+     * @param requiredBotPerms a defensive copy of {@code info.requiredBotPerms()}, so it can be used without copying again
+     */
+    public record Entry(@Nonnull Command command, @Nonnull CommandInfo info, @Nonnull Permission[] requiredBotPerms,
+                        @Nonnull CommandMetrics.CommandStats stats) {
+    }
+}
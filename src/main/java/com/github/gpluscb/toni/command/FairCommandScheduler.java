@@ -0,0 +1,418 @@
+package com.github.gpluscb.toni.command;
+
+import com.github.gpluscb.toni.util.TimingWheel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many commands run at once, and queues the rest fairly.
+ * Every guild (or user in DMs) gets its own flow, flows are served with deficit round-robin.
+ * Inside a flow, the users' queues are served round-robin, so one user can't starve the rest of their guild either.
+ * <p>
+ * Queue depth is bounded per guild and per user, submissions over those bounds are rejected immediately.
+ * Every queued command gets a timeout on the {@link TimingWheel}.
+ * If it is still queued when that fires, it is dropped right away, while there is still time to tell the user.
+ */
+public class FairCommandScheduler {
+    private static final Logger log = LogManager.getLogger(FairCommandScheduler.class);
+
+    /**
+     * Every command costs one unit for now, so this is the number of commands a flow may start per round.
+     */
+    private static final int QUANTUM = 1;
+    private static final int COST = 1;
+
+    @Nonnull
+    private final Executor executor;
+    @Nonnull
+    private final TimingWheel timeoutWheel;
+    @Nonnull
+    private final Settings settings;
+
+    // All guarded by this
+    @Nonnull
+    private final Map<Long, Flow> flows;
+    @Nonnull
+    private final ArrayDeque<Flow> activeFlows;
+    @Nonnull
+    private final Map<Long, Integer> queuedPerUser;
+    private int running;
+    private int queued;
+
+    @Nonnull
+    private final AtomicLong acceptedCount;
+    @Nonnull
+    private final AtomicLong rejectedGuildCount;
+    @Nonnull
+    private final AtomicLong rejectedUserCount;
+    @Nonnull
+    private final AtomicLong queuedTotalCount;
+    @Nonnull
+    private final AtomicLong queueWaitTotalNanos;
+    @Nonnull
+    private final AtomicLong queueWaitMaxNanos;
+    @Nonnull
+    private final AtomicLong expiredCount;
+
+    public FairCommandScheduler(@Nonnull Executor executor, @Nonnull TimingWheel timeoutWheel, @Nonnull Settings settings) {
+        this.executor = executor;
+        this.timeoutWheel = timeoutWheel;
+        this.settings = settings;
+
+        flows = new HashMap<>();
+        activeFlows = new ArrayDeque<>();
+        queuedPerUser = new HashMap<>();
+        running = 0;
+        queued = 0;
+
+        acceptedCount = new AtomicLong(0);
+        rejectedGuildCount = new AtomicLong(0);
+        rejectedUserCount = new AtomicLong(0);
+        queuedTotalCount = new AtomicLong(0);
+        queueWaitTotalNanos = new AtomicLong(0);
+        queueWaitMaxNanos = new AtomicLong(0);
+        expiredCount = new AtomicLong(0);
+    }
+
+    /**
+     * @param flowId    the guild id, or the user id for DMs. Snowflakes are unique across types, so those can't collide.
+     * @param onExpired run instead of the command if it waited longer than {@link Settings#maxQueueWaitNanos()}
+     */
+    @Nonnull
+    public Admission submit(long flowId, long userId, @Nonnull Runnable command, @Nonnull Runnable onExpired) {
+        Task task = new Task(command, onExpired, flowId, userId, System.nanoTime());
+
+        synchronized (this) {
+            if (running < settings.maxConcurrent() && queued == 0) {
+                running++;
+                acceptedCount.incrementAndGet();
+                start(task);
+                return Admission.ACCEPTED;
+            }
+
+            Flow flow = flows.get(flowId);
+            if (flow != null && flow.size >= settings.maxQueuedPerGuild()) {
+                rejectedGuildCount.incrementAndGet();
+                return Admission.GUILD_QUEUE_FULL;
+            }
+
+            int queuedForUser = queuedPerUser.getOrDefault(userId, 0);
+            if (queuedForUser >= settings.maxQueuedPerUser()) {
+                rejectedUserCount.incrementAndGet();
+                return Admission.USER_QUEUE_FULL;
+            }
+
+            if (flow == null) {
+                flow = new Flow(flowId);
+                flows.put(flowId, flow);
+                activeFlows.addLast(flow);
+            }
+
+            flow.add(task);
+            queuedPerUser.put(userId, queuedForUser + 1);
+            queued++;
+            task.expiry = timeoutWheel.schedule(() -> expire(task), settings.maxQueueWaitNanos(), TimeUnit.NANOSECONDS);
+
+            acceptedCount.incrementAndGet();
+            queuedTotalCount.incrementAndGet();
+
+            // We might be below maxConcurrent while others are queued if a start was rejected
+            startQueued();
+            return Admission.ACCEPTED;
+        }
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void startQueued() {
+        while (running < settings.maxConcurrent()) {
+            Task next = pollNext();
+            if (next == null) return;
+
+            // If it fired already, expire won't find the task in the queue anymore
+            if (next.expiry != null) next.expiry.cancel();
+
+            long waitNanos = System.nanoTime() - next.enqueuedNanos;
+            recordWait(waitNanos);
+
+            // The timeout can be late by a tick
+            if (waitNanos > settings.maxQueueWaitNanos()) {
+                dropExpired(next, waitNanos);
+                continue;
+            }
+
+            running++;
+            start(next);
+        }
+    }
+
+    private synchronized void expire(@Nonnull Task task) {
+        Flow flow = flows.get(task.flowId);
+        if (flow == null || !flow.remove(task)) return; // Started in the meantime
+
+        queued--;
+        queuedPerUser.computeIfPresent(task.userId, (user, count) -> count <= 1 ? null : count - 1);
+        if (flow.size == 0) {
+            activeFlows.remove(flow);
+            flows.remove(flow.flowId);
+        }
+
+        long waitNanos = System.nanoTime() - task.enqueuedNanos;
+        recordWait(waitNanos);
+        dropExpired(task, waitNanos);
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void recordWait(long waitNanos) {
+        queueWaitTotalNanos.addAndGet(waitNanos);
+        queueWaitMaxNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void dropExpired(@Nonnull Task task, long waitNanos) {
+        // Too late to run it, but there is still time to tell the user
+        expiredCount.incrementAndGet();
+        log.warn("Dropping command after waiting {}ms in queue", waitNanos / 1_000_000);
+        try {
+            executor.execute(task.onExpired);
+        } catch (RejectedExecutionException e) {
+            log.info("Executor rejected expiry notice - probably shutting down");
+        }
+    }
+
+    /**
+     * Deficit round-robin over the active flows. Must hold the lock.
+     */
+    @Nullable
+    private Task pollNext() {
+        while (true) {
+            Flow flow = activeFlows.peekFirst();
+            if (flow == null) return null;
+
+            if (flow.deficit < COST) {
+                flow.deficit += QUANTUM;
+                continue;
+            }
+
+            Task task = flow.poll();
+            flow.deficit -= COST;
+            queued--;
+            queuedPerUser.computeIfPresent(task.userId, (user, count) -> count <= 1 ? null : count - 1);
+
+            if (flow.size == 0) {
+                // Idle flows don't keep their deficit
+                activeFlows.pollFirst();
+                flows.remove(flow.flowId);
+            } else if (flow.deficit < COST) {
+                // Used up its share this round
+                activeFlows.pollFirst();
+                activeFlows.addLast(flow);
+            }
+
+            return task;
+        }
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void start(@Nonnull Task task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.command.run();
+                } finally {
+                    onComplete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running--;
+            log.info("Executor rejected command - probably shutting down");
+        }
+    }
+
+    private synchronized void onComplete() {
+        running--;
+        startQueued();
+    }
+
+    @Nonnull
+    public synchronized Stats getStats() {
+        long queuedTotal = queuedTotalCount.get();
+        long averageWaitNanos = queuedTotal == 0 ? 0 : queueWaitTotalNanos.get() / queuedTotal;
+        return new Stats(running, queued, flows.size(), acceptedCount.get(), rejectedGuildCount.get(), rejectedUserCount.get(),
+                queuedTotal, expiredCount.get(), averageWaitNanos, queueWaitMaxNanos.get());
+    }
+
+    public enum Admission {
+        ACCEPTED,
+        GUILD_QUEUE_FULL,
+        USER_QUEUE_FULL
+    }
+
+    /**
+     * @param queuedTotal      the number of accepted commands that had to wait in a queue
+     * @param expired          the number of queued commands that were dropped because they waited too long
+     * @param averageWaitNanos averaged over only the commands that had to wait
+     */
+    public record Stats(int running, int queued, int activeFlows, long accepted, long rejectedGuild, long rejectedUser,
+                        long queuedTotal, long expired, long averageWaitNanos, long maxWaitNanos) {
+    }
+
+    public record Settings(int maxConcurrent, int maxQueuedPerGuild, int maxQueuedPerUser, long maxQueueWaitNanos) {
+        public static final int DEFAULT_MAX_CONCURRENT = 32;
+        public static final int DEFAULT_MAX_QUEUED_PER_GUILD = 20;
+        public static final int DEFAULT_MAX_QUEUED_PER_USER = 3;
+        /**
+         * Interactions have to be acknowledged within 3 seconds
+         */
+        public static final long DEFAULT_MAX_QUEUE_WAIT_MILLIS = 2500;
+
+        public static class Builder {
+            private int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+            private int maxQueuedPerGuild = DEFAULT_MAX_QUEUED_PER_GUILD;
+            private int maxQueuedPerUser = DEFAULT_MAX_QUEUED_PER_USER;
+            private long maxQueueWaitMillis = DEFAULT_MAX_QUEUE_WAIT_MILLIS;
+
+            @Nonnull
+            public Builder setMaxConcurrent(int maxConcurrent) {
+                this.maxConcurrent = maxConcurrent;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxQueuedPerGuild(int maxQueuedPerGuild) {
+                this.maxQueuedPerGuild = maxQueuedPerGuild;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxQueuedPerUser(int maxQueuedPerUser) {
+                this.maxQueuedPerUser = maxQueuedPerUser;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxQueueWaitMillis(long maxQueueWaitMillis) {
+                this.maxQueueWaitMillis = maxQueueWaitMillis;
+                return this;
+            }
+
+            @Nonnull
+            public Settings build() {
+                if (maxConcurrent <= 0) throw new IllegalStateException("MaxConcurrent must be positive");
+                if (maxQueuedPerGuild < 0) throw new IllegalStateException("MaxQueuedPerGuild may not be negative");
+                if (maxQueuedPerUser < 0) throw new IllegalStateException("MaxQueuedPerUser may not be negative");
+                if (maxQueueWaitMillis <= 0) throw new IllegalStateException("MaxQueueWaitMillis must be positive");
+
+                return new Settings(maxConcurrent, maxQueuedPerGuild, maxQueuedPerUser, TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis));
+            }
+        }
+    }
+
+    /**
+     * Guarded by the scheduler.
+     */
+    private static class Task {
+        @Nonnull
+        private final Runnable command;
+        @Nonnull
+        private final Runnable onExpired;
+        private final long flowId;
+        private final long userId;
+        private final long enqueuedNanos;
+        /**
+         * Null if it never had to wait
+         */
+        @Nullable
+        private TimingWheel.Timeout expiry;
+
+        private Task(@Nonnull Runnable command, @Nonnull Runnable onExpired, long flowId, long userId, long enqueuedNanos) {
+            this.command = command;
+            this.onExpired = onExpired;
+            this.flowId = flowId;
+            this.userId = userId;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * Round-robin over per-user queues. Guarded by the scheduler.
+     */
+    private static class Flow {
+        private final long flowId;
+        @Nonnull
+        private final Map<Long, ArrayDeque<Task>> userQueues;
+        @Nonnull
+        private final ArrayDeque<Long> userOrder;
+        private int size;
+        private int deficit;
+
+        private Flow(long flowId) {
+            this.flowId = flowId;
+            userQueues = new HashMap<>();
+            userOrder = new ArrayDeque<>();
+            size = 0;
+            deficit = 0;
+        }
+
+        private void add(@Nonnull Task task) {
+            ArrayDeque<Task> queue = userQueues.get(task.userId);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                userQueues.put(task.userId, queue);
+                userOrder.addLast(task.userId);
+            }
+
+            queue.addLast(task);
+            size++;
+        }
+
+        /**
+         * @return false if the task isn't queued here
+         */
+        private boolean remove(@Nonnull Task task) {
+            ArrayDeque<Task> queue = userQueues.get(task.userId);
+            if (queue == null || !queue.remove(task)) return false;
+
+            if (queue.isEmpty()) {
+                userQueues.remove(task.userId);
+                userOrder.remove(task.userId);
+            }
+
+            size--;
+            return true;
+        }
+
+        /**
+         * Must not be empty.
+         */
+        @Nonnull
+        private Task poll() {
+            long userId = userOrder.pollFirst();
+            ArrayDeque<Task> queue = userQueues.get(userId);
+            Task task = queue.pollFirst();
+
+            if (queue.isEmpty()) userQueues.remove(userId);
+            else userOrder.addLast(userId);
+
+            size--;
+            return task;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.gpluscb.toni.command.admin;
+
+import com.github.gpluscb.toni.command.Command;
+import com.github.gpluscb.toni.command.CommandContext;
+import com.github.gpluscb.toni.command.CommandInfo;
+import com.github.gpluscb.toni.command.CommandMetrics;
+import com.github.gpluscb.toni.command.FairCommandScheduler;
+import com.github.gpluscb.toni.menu.InteractionRouter;
+import com.github.gpluscb.toni.menu.ModalRegistry;
+import com.github.gpluscb.toni.startgg.GGManager;
+import com.github.gpluscb.toni.startgg.GGRequestScheduler;
+import com.github.gpluscb.toni.startgg.TournamentSearchCache;
+import com.github.gpluscb.toni.ultimateframedata.CharacterDataCache;
+import com.github.gpluscb.toni.ultimateframedata.HitboxImageCache;
+import com.github.gpluscb.toni.ultimateframedata.UltimateframedataClient;
+import com.github.gpluscb.toni.util.LatencyHistogram;
+import com.github.gpluscb.toni.util.SingleFlight;
+import com.github.gpluscb.toni.util.TimingWheel;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+
+import javax.annotation.Nonnull;
+import java.util.Comparator;
+import java.util.List;
+
+public class MetricsCommand implements Command {
+    @Nonnull
+    private final CommandMetrics metrics;
+    @Nonnull
+    private final FairCommandScheduler commandScheduler;
+    @Nonnull
+    private final InteractionRouter router;
+    @Nonnull
+    private final TimingWheel timeoutWheel;
+    @Nonnull
+    private final UltimateframedataClient ufdClient;
+    @Nonnull
+    private final CharacterDataCache characterDataCache;
+    @Nonnull
+    private final HitboxImageCache hitboxImageCache;
+    @Nonnull
+    private final GGManager ggManager;
+
+    public MetricsCommand(@Nonnull CommandMetrics metrics, @Nonnull FairCommandScheduler commandScheduler,
+                          @Nonnull InteractionRouter router, @Nonnull TimingWheel timeoutWheel,
+                          @Nonnull UltimateframedataClient ufdClient, @Nonnull CharacterDataCache characterDataCache,
+                          @Nonnull HitboxImageCache hitboxImageCache, @Nonnull GGManager ggManager) {
+        this.metrics = metrics;
+        this.commandScheduler = commandScheduler;
+        this.router = router;
+        this.timeoutWheel = timeoutWheel;
+        this.ufdClient = ufdClient;
+        this.characterDataCache = characterDataCache;
+        this.hitboxImageCache = hitboxImageCache;
+        this.ggManager = ggManager;
+    }
+
+    @Override
+    public void execute(@Nonnull CommandContext ctx) {
+        if (!ctx.memberHasBotAdminPermission()) return;
+
+        List<CommandMetrics.CommandStats> stats = metrics.getAll().stream()
+                .filter(commandStats -> commandStats.getCount() > 0 || commandStats.getAutocomplete().getCount() > 0)
+                .sorted(Comparator.comparingLong(CommandMetrics.CommandStats::getCount).reversed())
+                .toList();
+
+        if (stats.isEmpty()) {
+            ctx.reply("No commands have been run yet.").queue();
+            return;
+        }
+
+        StringBuilder table = new StringBuilder("```\n")
+                .append(String.format("%-16s %6s %4s %13s %13s %9s %9s%n",
+                        "command", "n", "err", "exec p50/p99", "wait p50/p99", "reply p99", "auto p99"));
+
+        StringBuilder components = new StringBuilder("\n");
+        appendCommandQueue(components);
+        appendInteractions(components);
+        appendFrameData(components);
+        appendHitboxImages(components);
+        appendStartGG(components);
+
+        // Leave room for the components and the closing backticks
+        int maxLength = Message.MAX_CONTENT_LENGTH - components.length() - 4;
+        for (CommandMetrics.CommandStats commandStats : stats) {
+            String line = String.format("%-16s %6d %4d %13s %13s %9s %9s%n",
+                    commandStats.getName(),
+                    commandStats.getCount(),
+                    commandStats.getErrors() + commandStats.getAutocompleteErrors(),
+                    formatPercentiles(commandStats.getExecution()),
+                    formatPercentiles(commandStats.getQueueWait()),
+                    formatMillis(commandStats.getFirstReply().getPercentileMicros(99)),
+                    formatMillis(commandStats.getAutocomplete().getPercentileMicros(99)));
+
+            if (table.length() + line.length() > maxLength) break;
+            table.append(line);
+        }
+
+        table.append(components).append("```");
+
+        ctx.reply(table.toString()).queue();
+    }
+
+    private void appendCommandQueue(@Nonnull StringBuilder builder) {
+        FairCommandScheduler.Stats stats = commandScheduler.getStats();
+        builder.append(String.format("command queue: %d running, %d queued in %d flows, %d/%d rejected (guild/user), %d/%d waited/expired, wait avg/max %s/%s%n",
+                stats.running(), stats.queued(), stats.activeFlows(), stats.rejectedGuild(), stats.rejectedUser(),
+                stats.queuedTotal(), stats.expired(),
+                formatMillis(stats.averageWaitNanos() / 1000), formatMillis(stats.maxWaitNanos() / 1000)));
+    }
+
+    private void appendInteractions(@Nonnull StringBuilder builder) {
+        ModalRegistry modals = router.getModalRegistry();
+        builder.append(String.format("interactions: %d messages routed, %d timeouts pending, %d callbacks queued, modals %d/%d/%d live/expired/evicted%n",
+                router.getRegisteredCount(), timeoutWheel.getPendingCount(), timeoutWheel.getQueuedCallbackCount(),
+                modals.getLiveCount(), modals.getExpiredCount(), modals.getEvictedCount()));
+    }
+
+    private void appendFrameData(@Nonnull StringBuilder builder) {
+        CharacterDataCache.Stats stats = characterDataCache.getStats();
+        builder.append(String.format("frame data cache: %d cached, %d/%d/%d hits/stale/misses, %d not modified, %d failed refreshes, %s refreshes, %s fetches%n",
+                stats.size(), stats.hits(), stats.staleHits(), stats.misses(), stats.notModified(), stats.failedRefreshes(),
+                formatFlight(characterDataCache.getRefreshFlightStats()), formatFlight(ufdClient.getCharacterFlightStats())));
+    }
+
+    private void appendHitboxImages(@Nonnull StringBuilder builder) {
+        builder.append(String.format("hitbox images: %d cached (~%dMB), %s downloads%n",
+                hitboxImageCache.getImageCount(), hitboxImageCache.getTotalBytes() / (1024 * 1024),
+                formatFlight(hitboxImageCache.getDownloadFlightStats())));
+    }
+
+    private void appendStartGG(@Nonnull StringBuilder builder) {
+        GGRequestScheduler.Stats schedulerStats = ggManager.getSchedulerStats();
+        builder.append(String.format("start.gg requests: %d sent, %d/%d queued (interactive/background), wait avg/max %s/%s, %d rate limited, %d busy%n",
+                schedulerStats.sent(), schedulerStats.queuedInteractive(), schedulerStats.queuedBackground(),
+                formatMillis(schedulerStats.averageWaitNanos() / 1000), formatMillis(schedulerStats.maxWaitNanos() / 1000),
+                schedulerStats.rateLimited(), schedulerStats.busy()));
+
+        TournamentSearchCache.Stats searchStats = ggManager.getSearchCacheStats();
+        builder.append(String.format("tournament cache: %d cached (~%dKB), %d hits, %d misses, %d evictions, %s searches%n",
+                searchStats.size(), searchStats.estimatedBytes() / 1024, searchStats.hits(), searchStats.misses(), searchStats.evictions(),
+                formatFlight(ggManager.getSearchFlightStats())));
+
+        GGManager.BatchStats batchStats = ggManager.getBatchStats();
+        builder.append(String.format("tournament lookups: %s, %d fetched in %d batches, %d queries, %d too complex%n",
+                formatFlight(ggManager.getTournamentFlightStats()),
+                batchStats.tournaments(), batchStats.batches(), batchStats.queries(), batchStats.tooComplex()));
+    }
+
+    /**
+     * @return e.g. "3/120 coalesced"
+     */
+    @Nonnull
+    private static String formatFlight(@Nonnull SingleFlight.Stats stats) {
+        return String.format("%d/%d coalesced", stats.coalesced(), stats.calls());
+    }
+
+    @Nonnull
+    private static String formatPercentiles(@Nonnull LatencyHistogram histogram) {
+        return String.format("%s/%s", formatMillis(histogram.getPercentileMicros(50)), formatMillis(histogram.getPercentileMicros(99)));
+    }
+
+    @Nonnull
+    private static String formatMillis(long micros) {
+        if (micros < 10_000) return String.format("%.1fms", micros / 1000d);
+        if (micros < 10_000_000) return String.format("%dms", micros / 1000);
+        return String.format("%ds", micros / 1_000_000);
+    }
+
+    @Nonnull
+    @Override
+    public CommandInfo getInfo() {
+        return new CommandInfo.Builder()
+                .setAdminOnly(true)
+                .setCommandData(Commands.slash("metrics", "Shows command counts and latencies since startup"))
+                .build();
+    }
+}
@@ -5,14 +5,14 @@ import com.github.gpluscb.toni.command.CommandContext;
 import com.github.gpluscb.toni.command.CommandInfo;
 import com.github.gpluscb.toni.command.menu.BlindPickMenu;
 import com.github.gpluscb.toni.menu.ActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.smashset.Character;
-import com.github.gpluscb.toni.smashset.CharacterTree;
+import com.github.gpluscb.toni.smashset.CharacterIndex;
 import com.github.gpluscb.toni.util.MiscUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
-import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
+import net.dv8tion.jda.api.interactions.callbacks.IMessageEditCallback;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
@@ -34,13 +34,13 @@ public class BlindPickCommand implements Command {
     private static final Logger log = LogManager.getLogger(BlindPickCommand.class);
 
     @Nonnull
-    private final EventWaiter waiter;
+    private final InteractionRouter router;
     @Nonnull
-    private final List<Character> characters;
+    private final CharacterIndex characterIndex;
 
-    public BlindPickCommand(@Nonnull EventWaiter waiter, @Nonnull CharacterTree characterTree) {
-        this.waiter = waiter;
-        this.characters = characterTree.getAllCharacters();
+    public BlindPickCommand(@Nonnull InteractionRouter router, @Nonnull CharacterIndex characterIndex) {
+        this.router = router;
+        this.characterIndex = characterIndex;
     }
 
     @Override
@@ -84,12 +84,12 @@ public class BlindPickCommand implements Command {
         BlindPickMenu menu = new BlindPickMenu(new BlindPickMenu.Settings.Builder()
                 .setActionMenuSettings(new ActionMenu.Settings.Builder()
                         .setTimeout(3, TimeUnit.MINUTES)
-                        .setWaiter(waiter)
+                        .setRouter(router)
                         .build())
-                .setWaiter(waiter)
+                .setRouter(router)
                 .setUsers(users)
                 .setStart(start)
-                .setCharacters(characters)
+                .setCharacterIndex(characterIndex)
                 .setOnResult(this::onResult)
                 .setOnTimeout(timeout -> onTimeout(timeout, jda, channelId))
                 .build());
@@ -97,7 +97,7 @@ public class BlindPickCommand implements Command {
         menu.displaySlashReplying(ctx.getEvent());
     }
 
-    private void onResult(@Nonnull BlindPickMenu.BlindPickResult result, @Nonnull ModalInteractionEvent event) {
+    private void onResult(@Nonnull BlindPickMenu.BlindPickResult result, @Nonnull IMessageEditCallback event) {
         event.deferEdit().queue();
 
         MessageChannel channel = result.getChannel();
@@ -9,12 +9,12 @@ import com.github.gpluscb.toni.command.menu.PickStageMenu;
 import com.github.gpluscb.toni.command.menu.RulesetSelectMenu;
 import com.github.gpluscb.toni.db.DBManager;
 import com.github.gpluscb.toni.menu.ActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.menu.TwoUsersChoicesActionMenu;
 import com.github.gpluscb.toni.smashset.Ruleset;
 import com.github.gpluscb.toni.smashset.Stage;
 import com.github.gpluscb.toni.util.MiscUtil;
 import com.github.gpluscb.toni.util.OneOfTwo;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
@@ -35,14 +35,14 @@ public class CounterpickStagesCommand implements Command {
     private static final Logger log = LogManager.getLogger(CounterpickStagesCommand.class);
 
     @Nonnull
-    private final EventWaiter waiter;
+    private final InteractionRouter router;
     @Nonnull
     private final DBManager manager;
     @Nonnull
     private final List<Ruleset> rulesets;
 
-    public CounterpickStagesCommand(@Nonnull EventWaiter waiter, @Nonnull DBManager manager, @Nonnull List<Ruleset> rulesets) {
-        this.waiter = waiter;
+    public CounterpickStagesCommand(@Nonnull InteractionRouter router, @Nonnull DBManager manager, @Nonnull List<Ruleset> rulesets) {
+        this.router = router;
         this.manager = manager;
         this.rulesets = rulesets;
     }
@@ -98,7 +98,7 @@ public class CounterpickStagesCommand implements Command {
         }
 
         RulesetSelectMenu rulesetMenu = new RulesetSelectMenu(RulesetSelectMenu.Settings.getDefaultSettings(
-                waiter,
+                router,
                 ctx.getMember(),
                 ctx.getUser(),
                 rulesets,
@@ -119,7 +119,7 @@ public class CounterpickStagesCommand implements Command {
         BanPickStagesMenu menu = new BanPickStagesMenu(new BanPickStagesMenu.Settings.Builder()
                 .setTwoUsersChoicesActionMenuSettings(new TwoUsersChoicesActionMenu.Settings.Builder()
                         .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                                .setWaiter(waiter)
+                                .setRouter(router)
                                 .build())
                         .setUsers(banningUser, pickingUser)
                         .build())
@@ -5,9 +5,9 @@ import com.github.gpluscb.toni.command.CommandContext;
 import com.github.gpluscb.toni.command.CommandInfo;
 import com.github.gpluscb.toni.command.menu.RPSMenu;
 import com.github.gpluscb.toni.menu.ActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.menu.TwoUsersChoicesActionMenu;
 import com.github.gpluscb.toni.util.MiscUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
@@ -23,10 +23,10 @@ import java.util.concurrent.TimeUnit;
 
 public class RPSCommand implements Command {
     @Nonnull
-    private final EventWaiter waiter;
+    private final InteractionRouter router;
 
-    public RPSCommand(@Nonnull EventWaiter waiter) {
-        this.waiter = waiter;
+    public RPSCommand(@Nonnull InteractionRouter router) {
+        this.router = router;
     }
 
     @Override
@@ -63,7 +63,7 @@ public class RPSCommand implements Command {
         RPSMenu menu = new RPSMenu(new RPSMenu.Settings.Builder()
                 .setTwoUsersChoicesActionMenuSettings(new TwoUsersChoicesActionMenu.Settings.Builder()
                         .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                                .setWaiter(waiter)
+                                .setRouter(router)
                                 .setTimeout(3, TimeUnit.MINUTES)
                                 .build())
                         .setUsers(user1, user2)
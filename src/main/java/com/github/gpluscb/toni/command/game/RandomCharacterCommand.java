@@ -3,7 +3,6 @@ package com.github.gpluscb.toni.command.game;
 import com.github.gpluscb.toni.command.Command;
 import com.github.gpluscb.toni.command.CommandContext;
 import com.github.gpluscb.toni.command.CommandInfo;
-import com.github.gpluscb.toni.smashset.Character;
 import com.github.gpluscb.toni.smashset.CharacterTree;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
@@ -15,7 +14,6 @@ import org.apache.logging.log4j.Logger;
 import javax.annotation.Nonnull;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
 
 // TODO: Melee Wolf? P+ Mewtwo?? This gonna be a headache
 public class RandomCharacterCommand implements Command {
@@ -64,20 +62,12 @@ public class RandomCharacterCommand implements Command {
         OptionMapping stackEchosMapping = ctx.getOption("stack-echos");
         if (stackEchosMapping != null) stackEchos = stackEchosMapping.getAsBoolean();
 
-        List<List<Character>> possibleCharacters = characterTree.getAllCharacters(game, stackEchos, stackMiis, stackSheikZelda, stackZssSamus);
+        // Precomputed, the display names of stacked characters are already joined
+        List<String> possibleCharacters = characterTree.getDisplayNames(game, stackEchos, stackMiis, stackSheikZelda, stackZssSamus);
         ThreadLocalRandom rng = ThreadLocalRandom.current();
         int rngIndex = rng.nextInt(possibleCharacters.size());
-        List<Character> selectedCharacters = possibleCharacters.get(rngIndex);
 
-        sendResponse(ctx, selectedCharacters);
-    }
-
-    private void sendResponse(@Nonnull CommandContext ctx, @Nonnull List<Character> selectedCharacters) {
-        String emotes = selectedCharacters.stream()
-                .map(Character::getDisplayName)
-                .collect(Collectors.joining("/"));
-
-        ctx.reply(emotes).queue();
+        ctx.reply(possibleCharacters.get(rngIndex)).queue();
     }
 
     @Nonnull
@@ -4,10 +4,10 @@ import com.github.gpluscb.toni.command.Command;
 import com.github.gpluscb.toni.command.CommandContext;
 import com.github.gpluscb.toni.command.CommandInfo;
 import com.github.gpluscb.toni.menu.ActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.menu.SelectionActionMenu;
 import com.github.gpluscb.toni.smashset.Ruleset;
 import com.github.gpluscb.toni.util.discord.EmbedUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.events.interaction.component.StringSelectInteractionEvent;
@@ -29,12 +29,12 @@ public class RulesetsCommand implements Command {
     private static final Logger log = LogManager.getLogger(RulesetsCommand.class);
 
     @Nonnull
-    private final EventWaiter waiter;
+    private final InteractionRouter router;
     @Nonnull
     private final List<Ruleset> rulesets;
 
-    public RulesetsCommand(@Nonnull EventWaiter waiter, @Nonnull List<Ruleset> rulesets) {
-        this.waiter = waiter;
+    public RulesetsCommand(@Nonnull InteractionRouter router, @Nonnull List<Ruleset> rulesets) {
+        this.router = router;
         this.rulesets = rulesets;
     }
 
@@ -50,7 +50,7 @@ public class RulesetsCommand implements Command {
 
         SelectionActionMenu.Settings.Builder menuBuilder = new SelectionActionMenu.Settings.Builder()
                 .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                        .setWaiter(waiter)
+                        .setRouter(router)
                         .build())
                 .addUsers(ctx.getUser().getIdLong())
                 .setStart(start);
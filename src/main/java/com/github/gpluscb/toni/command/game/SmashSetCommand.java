@@ -7,14 +7,14 @@ import com.github.gpluscb.toni.command.menu.RulesetSelectMenu;
 import com.github.gpluscb.toni.command.menu.SmashSetMenu;
 import com.github.gpluscb.toni.db.DBManager;
 import com.github.gpluscb.toni.menu.ActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.menu.TwoUsersChoicesActionMenu;
 import com.github.gpluscb.toni.smashset.Character;
-import com.github.gpluscb.toni.smashset.CharacterTree;
+import com.github.gpluscb.toni.smashset.CharacterIndex;
 import com.github.gpluscb.toni.smashset.Ruleset;
 import com.github.gpluscb.toni.smashset.SmashSet;
 import com.github.gpluscb.toni.util.MiscUtil;
 import com.github.gpluscb.toni.util.OneOfTwo;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.User;
@@ -36,19 +36,19 @@ public class SmashSetCommand implements Command {
     private final static Logger log = LogManager.getLogger(SmashSetCommand.class);
 
     @Nonnull
-    private final EventWaiter waiter;
+    private final InteractionRouter router;
     @Nonnull
     private final DBManager manager;
     @Nonnull
     private final List<Ruleset> rulesets;
     @Nonnull
-    private final List<Character> characters;
+    private final CharacterIndex characterIndex;
 
-    public SmashSetCommand(@Nonnull EventWaiter waiter, @Nonnull DBManager manager, @Nonnull List<Ruleset> rulesets, @Nonnull CharacterTree characterTree) {
-        this.waiter = waiter;
+    public SmashSetCommand(@Nonnull InteractionRouter router, @Nonnull DBManager manager, @Nonnull List<Ruleset> rulesets, @Nonnull CharacterIndex characterIndex) {
+        this.router = router;
         this.manager = manager;
         this.rulesets = rulesets;
-        this.characters = characterTree.getAllCharacters();
+        this.characterIndex = characterIndex;
     }
 
     @Override
@@ -123,7 +123,7 @@ public class SmashSetCommand implements Command {
         }
 
         RulesetSelectMenu rulesetMenu = new RulesetSelectMenu(RulesetSelectMenu.Settings.getDefaultSettings(
-                waiter,
+                router,
                 ctx.getMember(),
                 ctx.getUser(),
                 rulesets,
@@ -137,7 +137,7 @@ public class SmashSetCommand implements Command {
         SmashSetMenu menu = new SmashSetMenu(new SmashSetMenu.Settings.Builder()
                 .setTwoUsersChoicesActionMenuSettings(new TwoUsersChoicesActionMenu.Settings.Builder()
                         .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                                .setWaiter(waiter)
+                                .setRouter(router)
                                 .setTimeout(60, TimeUnit.MINUTES)
                                 .build())
                         .setUsers(user1.getIdLong(), user2.getIdLong())
@@ -148,8 +148,8 @@ public class SmashSetCommand implements Command {
                 .setReportGameTimeout(60, TimeUnit.MINUTES)
                 .setLoserCharCounterpickTimeout(60, TimeUnit.MINUTES)
                 .setWinnerCharPickTimeout(60, TimeUnit.MINUTES)
-                .setWaiter(waiter)
-                .setCharacters(characters)
+                .setRouter(router)
+                .setCharacterIndex(characterIndex)
                 .setRuleset(ruleset)
                 .setFirstToWhatScore(firstToWhatScore)
                 .setRpsInfo(new SmashSetMenu.RPSInfo(60, TimeUnit.MINUTES,
@@ -6,15 +6,16 @@ import com.github.gpluscb.toni.command.CommandInfo;
 import com.github.gpluscb.toni.command.menu.RPSAndStrikeStagesMenu;
 import com.github.gpluscb.toni.command.menu.RPSMenu;
 import com.github.gpluscb.toni.command.menu.RulesetSelectMenu;
+import com.github.gpluscb.toni.command.menu.StatelessStrikeStagesMenu;
 import com.github.gpluscb.toni.command.menu.StrikeStagesMenu;
 import com.github.gpluscb.toni.db.DBManager;
 import com.github.gpluscb.toni.menu.ActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.menu.TwoUsersChoicesActionMenu;
 import com.github.gpluscb.toni.smashset.Ruleset;
 import com.github.gpluscb.toni.smashset.Stage;
 import com.github.gpluscb.toni.util.MiscUtil;
 import com.github.gpluscb.toni.util.OneOfTwo;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
@@ -37,16 +38,19 @@ public class StrikeStagesCommand implements Command {
     private static final Logger log = LogManager.getLogger(StrikeStagesCommand.class);
 
     @Nonnull
-    private final EventWaiter waiter;
+    private final InteractionRouter router;
     @Nonnull
     private final DBManager manager;
     @Nonnull
     private final List<Ruleset> rulesets;
+    @Nonnull
+    private final StatelessStrikeStagesMenu statelessStrikeMenu;
 
-    public StrikeStagesCommand(@Nonnull EventWaiter waiter, @Nonnull DBManager manager, @Nonnull List<Ruleset> rulesets) {
-        this.waiter = waiter;
+    public StrikeStagesCommand(@Nonnull InteractionRouter router, @Nonnull DBManager manager, @Nonnull List<Ruleset> rulesets) {
+        this.router = router;
         this.manager = manager;
         this.rulesets = rulesets;
+        statelessStrikeMenu = new StatelessStrikeStagesMenu(router, rulesets);
     }
 
     @Override
@@ -103,7 +107,7 @@ public class StrikeStagesCommand implements Command {
 
         // Load RulesetSelectMenu
         RulesetSelectMenu rulesetMenu = new RulesetSelectMenu(RulesetSelectMenu.Settings.getDefaultSettings(
-                waiter,
+                router,
                 ctx.getMember(),
                 ctx.getUser(),
                 rulesets,
@@ -124,7 +128,7 @@ public class StrikeStagesCommand implements Command {
 
         TwoUsersChoicesActionMenu.Settings.Builder twoUsersChoicesActionMenuSettingsBuilder = new TwoUsersChoicesActionMenu.Settings.Builder()
                 .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                        .setWaiter(waiter)
+                        .setRouter(router)
                         .build());
 
         ActionMenu menu;
@@ -156,6 +160,13 @@ public class StrikeStagesCommand implements Command {
                 user2 = tmp;
             }
 
+            // Plain strikes don't need any callbacks, so we don't need to keep anything in memory
+            if (StatelessStrikeStagesMenu.supports(ruleset)) {
+                MessageCreateData start = statelessStrikeMenu.createStart(ruleset, user1, user2);
+                replyTo.map(msg -> msg.reply(start), slash -> slash.reply(start)).queue();
+                return;
+            }
+
             menu = new StrikeStagesMenu(new StrikeStagesMenu.Settings.Builder()
                     .setTwoUsersChoicesActionMenuSettings(twoUsersChoicesActionMenuSettingsBuilder
                             .setUsers(user1, user2)
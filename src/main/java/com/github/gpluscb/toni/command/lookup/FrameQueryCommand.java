@@ -0,0 +1,117 @@
+package com.github.gpluscb.toni.command.lookup;
+
+import com.github.gpluscb.toni.command.Command;
+import com.github.gpluscb.toni.command.CommandContext;
+import com.github.gpluscb.toni.command.CommandInfo;
+import com.github.gpluscb.toni.ultimateframedata.FrameDataColumns;
+import com.github.gpluscb.toni.ultimateframedata.FrameDataStore;
+import com.github.gpluscb.toni.util.MiscUtil;
+import com.github.gpluscb.toni.util.discord.EmbedUtil;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+
+public class FrameQueryCommand implements Command {
+    private static final Logger log = LogManager.getLogger(FrameQueryCommand.class);
+
+    private static final int MAX_ROWS = 20;
+    /**
+     * Well beyond any real frame data, but keeps the values in int range
+     */
+    private static final int MAX_BOUND = 10_000;
+
+    @Nonnull
+    private final FrameDataStore frameDataStore;
+
+    public FrameQueryCommand(@Nonnull FrameDataStore frameDataStore) {
+        this.frameDataStore = frameDataStore;
+    }
+
+    @Override
+    public void execute(@Nonnull CommandContext ctx) {
+        FrameDataColumns columns = frameDataStore.getColumns();
+        if (columns == null) {
+            ctx.reply("I'm still loading the frame data, try again in a minute.").queue();
+            return;
+        }
+
+        String attributeId = ctx.getOptionNonNull("attribute").getAsString();
+        FrameDataColumns.Attribute attribute = FrameDataColumns.Attribute.getForId(attributeId);
+        if (attribute == null) {
+            log.error("Attribute from choice not found: {}", attributeId);
+            ctx.reply("This is a bad error - the attribute you chose apparently doesn't exist. I've notified my dev, but you can give them some context too.").queue();
+            return;
+        }
+
+        OptionMapping minMapping = ctx.getOption("min");
+        int min = minMapping == null ? -MAX_BOUND : minMapping.getAsInt();
+
+        OptionMapping maxMapping = ctx.getOption("max");
+        int max = maxMapping == null ? MAX_BOUND : maxMapping.getAsInt();
+
+        OptionMapping moveMapping = ctx.getOption("move");
+        String move = moveMapping == null ? null : moveMapping.getAsString();
+
+        OptionMapping orderMapping = ctx.getOption("order");
+        // By default the best moves first
+        boolean descending = orderMapping == null ? attribute.isHigherBetter() : orderMapping.getAsString().equals("highest");
+
+        FrameDataColumns.Result result = columns.query(attribute, min, max, move, descending, MAX_ROWS);
+
+        if (result.rows().isEmpty()) {
+            ctx.reply("No moves match that, sorry.").queue();
+            return;
+        }
+
+        StringBuilder description = new StringBuilder();
+        for (FrameDataColumns.Row row : result.rows())
+            description.append(String.format("`%4d` %s - %s%n", row.value(), MiscUtil.capitalizeFirst(row.characterName()), row.moveName()));
+
+        EmbedBuilder embed = EmbedUtil.getPreparedUFD(ctx.getMember(), ctx.getUser())
+                .setTitle(String.format("Moves by %s", attribute.getDisplayName()))
+                .setDescription(description);
+
+        if (result.matchCount() > result.rows().size())
+            embed.appendDescription(String.format("*...and %d more*", result.matchCount() - result.rows().size()));
+
+        ctx.reply(embed.build()).queue();
+    }
+
+    @Nonnull
+    @Override
+    public CommandInfo getInfo() {
+        OptionData attributeOption = new OptionData(OptionType.STRING, "attribute", "The frame data to filter and sort by", true);
+        for (FrameDataColumns.Attribute attribute : FrameDataColumns.Attribute.values())
+            attributeOption.addChoice(attribute.getDisplayName(), attribute.getId());
+
+        return new CommandInfo.Builder()
+                .setRequiredBotPerms(new Permission[]{Permission.MESSAGE_EMBED_LINKS})
+                .setShortHelp("Finds moves of all characters by their frame data from [ultimateframedata.com](https://ultimateframedata.com).")
+                .setDetailedHelp("""
+                        Lists the moves of all characters with the best (or worst) frame data, e.g. the fastest jabs or the safest aerials on shield.
+                        Multi-hit moves are ranked by their first hit.
+                        Slash command options:
+                        • `attribute`: The frame data to sort by.
+                        • (Optional) `move`: Only moves with this in their name, e.g. `jab`, `aerial` or `up b`.
+                        • (Optional) `min`/`max`: Only moves with at least/at most this value.
+                        • (Optional) `order`: Whether to show the lowest or highest values first. By default I'll show you the best values first.""")
+                .setCommandData(Commands.slash("framequery", "Finds moves of all characters by their frame data")
+                        .addOptions(attributeOption,
+                                new OptionData(OptionType.STRING, "move", "Only moves with this in their name (e.g. `jab`, `aerial`)", false),
+                                new OptionData(OptionType.INTEGER, "min", "Only moves with at least this value", false)
+                                        .setRequiredRange(-MAX_BOUND, MAX_BOUND),
+                                new OptionData(OptionType.INTEGER, "max", "Only moves with at most this value", false)
+                                        .setRequiredRange(-MAX_BOUND, MAX_BOUND),
+                                new OptionData(OptionType.STRING, "order", "Whether the lowest or highest values come first", false)
+                                        .addChoice("lowest", "lowest")
+                                        .addChoice("highest", "highest")))
+                .build();
+    }
+}
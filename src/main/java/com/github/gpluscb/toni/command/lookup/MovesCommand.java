@@ -3,16 +3,20 @@ package com.github.gpluscb.toni.command.lookup;
 import com.github.gpluscb.toni.command.Command;
 import com.github.gpluscb.toni.command.CommandContext;
 import com.github.gpluscb.toni.command.CommandInfo;
+import com.github.gpluscb.toni.menu.ActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.smashset.Character;
-import com.github.gpluscb.toni.smashset.CharacterTree;
+import com.github.gpluscb.toni.smashset.CharacterAutocompleteIndex;
+import com.github.gpluscb.toni.smashset.CharacterIndex;
 import com.github.gpluscb.toni.ultimateframedata.CharacterData;
-import com.github.gpluscb.toni.ultimateframedata.UltimateframedataClient;
+import com.github.gpluscb.toni.ultimateframedata.FrameDataStore;
+import com.github.gpluscb.toni.ultimateframedata.HitboxImageCache;
+import com.github.gpluscb.toni.ultimateframedata.MoveIndex;
 import com.github.gpluscb.toni.util.FailLogger;
 import com.github.gpluscb.toni.util.MiscUtil;
 import com.github.gpluscb.toni.util.OneOfTwo;
 import com.github.gpluscb.toni.util.PairNonnull;
 import com.github.gpluscb.toni.util.discord.EmbedUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.Permission;
@@ -25,12 +29,15 @@ import net.dv8tion.jda.api.exceptions.ErrorHandler;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.interactions.components.selections.SelectOption;
 import net.dv8tion.jda.api.interactions.components.selections.StringSelectMenu;
 import net.dv8tion.jda.api.requests.ErrorResponse;
+import net.dv8tion.jda.api.utils.FileUpload;
 import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import net.dv8tion.jda.api.utils.messages.MessageEditBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageEditData;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -38,65 +45,75 @@ import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
-import static net.dv8tion.jda.api.interactions.commands.build.OptionData.MAX_CHOICES;
 import static net.dv8tion.jda.api.interactions.components.selections.SelectOption.LABEL_MAX_LENGTH;
 
 public class MovesCommand implements Command {
     private static final Logger log = LogManager.getLogger(MovesCommand.class);
 
     @Nonnull
-    private final UltimateframedataClient client;
+    private final FrameDataStore frameDataStore;
     @Nonnull
-    private final EventWaiter waiter;
+    private final HitboxImageCache hitboxImageCache;
     @Nonnull
-    private final List<Character> characters;
-
-    public MovesCommand(@Nonnull UltimateframedataClient client, @Nonnull EventWaiter waiter, @Nonnull CharacterTree characters) {
-        this.client = client;
-        this.waiter = waiter;
-        this.characters = characters.getAllCharacters();
+    private final InteractionRouter router;
+    @Nonnull
+    private final CharacterIndex characterIndex;
+    @Nonnull
+    private final CharacterAutocompleteIndex autocompleteIndex;
+
+    public MovesCommand(@Nonnull FrameDataStore frameDataStore, @Nonnull HitboxImageCache hitboxImageCache, @Nonnull InteractionRouter router, @Nonnull CharacterIndex characterIndex, @Nonnull CharacterAutocompleteIndex autocompleteIndex) {
+        this.frameDataStore = frameDataStore;
+        this.hitboxImageCache = hitboxImageCache;
+        this.router = router;
+        this.characterIndex = characterIndex;
+        this.autocompleteIndex = autocompleteIndex;
     }
 
     @Override
     public void execute(@Nonnull CommandContext ctx) {
-        String characterName = ctx.getOptionNonNull("character").getAsString().toLowerCase();
+        String characterName = ctx.getOptionNonNull("character").getAsString();
 
-        Optional<Short> idOptional = characters.stream().filter(character -> character.altNames().contains(characterName)).map(c -> {
-                    Short id__ = c.id();
-                    return Optional.ofNullable(id__);
-                })
-                .findAny().orElse(null);
+        CharacterIndex.Resolution resolution = characterIndex.resolve(characterName);
+        CharacterIndex.Match match = resolution.getConfident();
+
+        if (match == null) {
+            String suggestions = resolution.matches().isEmpty() ? ""
+                    : String.format("%nDid you mean %s?", resolution.matches().stream()
+                    .map(candidate -> String.format("`%s`", candidate.character().name()))
+                    .collect(Collectors.joining(", ")));
 
-        // I think this is ok here, I don't really want Optional<Optional<Short>> or other weird constructs
-        //noinspection OptionalAssignedToNull
-        if (idOptional == null) {
             ctx.reply(String.format("""
                             I don't know the character "%s", sorry. Note that I only know the English names.
-                            Also make sure you only put the **character name** in the `character` option, and put the **move name** in the `move` option.""",
-                    characterName)).queue();
+                            Also make sure you only put the **character name** in the `character` option, and put the **move name** in the `move` option.%s""",
+                    characterName, suggestions)).queue();
             return;
         }
 
-        if (idOptional.isEmpty()) {
+        // Typos are corrected silently, the reply shows which character it is anyway
+        Character character = match.character();
+
+        Short idBoxed = character.id();
+        if (idBoxed == null) {
             ctx.reply("This character by itself doesn't have a page on ultimateframedata, but sub-characters probably do!" +
                     " So try for example `Charizard` instead of `Pokémon Trainer`.").queue();
             return;
         }
 
-        short id = idOptional.get();
+        short id = idBoxed;
 
         OptionMapping moveNameMapping = ctx.getOption("move");
         String moveName = moveNameMapping == null ? null : moveNameMapping.getAsString();
 
         ctx.getEvent().deferReply().queue();
 
-        client.getCharacter(id).whenComplete(FailLogger.logFail((response, t) -> {
+        frameDataStore.getIndexedCharacter(id).whenComplete(FailLogger.logFail((response, t) -> {
             try {
                 if (t != null) {
                     // TODO: Potentially quite spammy during my outages
@@ -105,10 +122,15 @@ public class MovesCommand implements Command {
                     return;
                 }
 
+                // The user will likely click through the hitboxes of this character next
+                if (response != null) hitboxImageCache.prefetch(response.data());
+
                 boolean startMoveRequested = moveName != null;
-                PairNonnull<Integer, Integer> startMove = startMoveRequested ? findMove(response, moveName) : null;
+                PairNonnull<Integer, Integer> startMove = startMoveRequested && response != null
+                        ? response.moveIndex().find(moveName)
+                        : null;
 
-                sendReply(ctx, response, startMove, startMoveRequested);
+                sendReply(ctx, response == null ? null : response.data(), startMove, startMoveRequested);
             } catch (Exception e) {
                 log.catching(e);
                 ctx.reply("Ouch, an error. This one's really bad, sorry. I'll send a report to my dev. If it keeps happening you might want to provide them with some context too.").queue();
@@ -116,107 +138,6 @@ public class MovesCommand implements Command {
         }));
     }
 
-    /**
-     * @return First is MoveSection idx, second is move idx. If first is -1, it's misc
-     */
-    @Nullable
-    private PairNonnull<Integer, Integer> findMove(@Nonnull CharacterData data, @Nonnull String name) {
-        String normalisedName = normaliseMoveName(name);
-
-        // Special case for just misc
-        if ((normalisedName == null ? name : normalisedName).equals("misc"))
-            return new PairNonnull<>(-1, -1);
-
-        PairNonnull<Integer, Integer> foundMove = null;
-
-        List<CharacterData.MoveSection> sections = data.moveSections();
-        for (int i = 0; i < sections.size(); i++) {
-            List<CharacterData.MoveData> moves = sections.get(i).moves();
-            for (int j = 0; j < moves.size(); j++) {
-                String moveName = moves.get(j).moveName();
-
-                if (moveName != null) {
-                    String moveNameLowercase = moveName.toLowerCase();
-
-                    // Direct match -> return early
-                    if (moveNameLowercase.contains(name)) return new PairNonnull<>(i, j);
-
-                    // Indirect match -> don't return just yet, we might find a direct match later
-                    // Only check for the first move we find indirectly, otherwise "neutral air" will find "neutral air dodge"
-                    if (normalisedName != null && foundMove == null && moveNameLowercase.contains(normalisedName))
-                        foundMove = new PairNonnull<>(i, j);
-                }
-            }
-        }
-
-        return foundMove;
-    }
-
-    @Nullable
-    private String normaliseMoveName(@Nonnull String moveName) {
-        // General replacements
-        // Guarantee space after usually first word for backair|neutralair|sideb etc.
-        String name = moveName
-                // for airdodge, with the trim this shouldn't mess anything up
-                .replaceAll("air", "air ")
-                .replaceAll("aerial", "air")
-                // at the top because of (forward[s)pecial] conflict
-                .replaceAll("special", "b")
-                .replaceAll("neutral", "neutral ")
-                .replaceAll("normal", "neutral ")
-                .replaceAll("forwards", "forward ")
-                .replaceAll("side", "side ")
-                .replaceAll("back(wards?)?", "back ")
-                .replaceAll("down(wards?)?", "down ")
-                .replaceAll("up(wards?)?", "up ")
-                .replaceAll("miscellaneous", "misc")
-                .replaceAll("get ?up", "getup ")
-                .replaceAll("ledge", "ledge ")
-                // remove double spaces
-                .replaceAll(" +", " ")
-                // and remove leading and trailing spaces
-                .trim();
-
-        int length = name.length();
-
-        // bair|nair|fair|dair|zair|b air|etc.
-        // we might have "z air" as moveName and return "z air" here but I don't care too much
-        if ((length == 4 || length == 5) && name.endsWith("air")) {
-            char firstChar = name.charAt(0);
-            String expandedCharacter = firstChar == 'z' ? "z" : expandMoveCharacterNBFD(name.charAt(0));
-            if (expandedCharacter != null) return String.format("%s air", expandedCharacter);
-        }
-
-        // ftilt|f tilt|etc.
-        if ((length == 5 || length == 6) && name.endsWith("tilt")) {
-            String expandedCharacter = expandMoveCharacterNBFD(name.charAt(0));
-            if (expandedCharacter != null) return String.format("%s tilt", expandedCharacter);
-        }
-
-        // fsmash|f smash|etc.
-        if ((length == 6 || length == 7) && name.endsWith("smash")) {
-            String expandedCharacter = expandMoveCharacterNBFD(name.charAt(0));
-            if (expandedCharacter != null) return String.format("%s smash", expandedCharacter);
-        }
-
-        // Other special cases
-        if (name.matches("forward ?b")) return "side b";
-
-        // If we didn't do anything we might as well skip the check later
-        return name.equals(moveName) ? null : name;
-    }
-
-    @Nullable
-    private String expandMoveCharacterNBFD(char character) {
-        return switch (character) {
-            case 'n' -> "neutral";
-            case 'f' -> "forward";
-            case 'b' -> "back";
-            case 'd' -> "down";
-            default -> null;
-        };
-    }
-
     private void sendReply(@Nonnull CommandContext ctx, @Nullable CharacterData data, @Nullable PairNonnull<Integer, Integer> startMove, boolean startMoveRequested) {
         if (data == null) {
             log.error("Valid character requested, but not found by ufd service.");
@@ -382,16 +303,41 @@ public class MovesCommand implements Command {
     @Nonnull
     @Override
     public List<net.dv8tion.jda.api.interactions.commands.Command.Choice> onAutocomplete(@Nonnull CommandAutoCompleteInteractionEvent event) {
-        String input = event.getFocusedOption().getValue().toLowerCase();
-
-        // Limiting to one name per character for more diversity
-        // More "proper" names will tend to be earlier in the altNames, so we choose the most "proper" matching name
-        return characters.stream()
-                .flatMap(character -> character.altNames().stream()
-                        .filter(name -> name.startsWith(input))
-                        .limit(1))
+        String input = event.getFocusedOption().getValue();
+
+        if (event.getFocusedOption().getName().equals("move")) return completeMove(event, input);
+
+        // The index has one name per character for more diversity, and picks the most "proper" matching name
+        return autocompleteIndex.complete(input).stream()
+                .map(match -> new net.dv8tion.jda.api.interactions.commands.Command.Choice(match.name(), match.name()))
+                .toList();
+    }
+
+    /**
+     * Only uses move indices that are already loaded, the deadline for autocomplete is too short to wait for a request.
+     */
+    @Nonnull
+    private List<net.dv8tion.jda.api.interactions.commands.Command.Choice> completeMove(@Nonnull CommandAutoCompleteInteractionEvent event, @Nonnull String input) {
+        OptionMapping characterMapping = event.getOption("character");
+        if (characterMapping == null) return Collections.emptyList();
+
+        CharacterIndex.Match match = characterIndex.resolve(characterMapping.getAsString()).getConfident();
+        if (match == null) return Collections.emptyList();
+
+        Short id = match.character().id();
+        if (id == null) return Collections.emptyList();
+
+        MoveIndex moveIndex = frameDataStore.getLoadedMoveIndex(id);
+        if (moveIndex == null) {
+            // So it's there by the next keystroke
+            frameDataStore.getIndexedCharacter(id).whenComplete((r, t) -> {
+                if (t != null) log.debug("Loading move index for autocomplete failed", t);
+            });
+            return Collections.emptyList();
+        }
+
+        return moveIndex.complete(input, OptionData.MAX_CHOICES).stream()
                 .map(name -> new net.dv8tion.jda.api.interactions.commands.Command.Choice(name, name))
-                .limit(MAX_CHOICES)
                 .toList();
     }
 
@@ -399,17 +345,17 @@ public class MovesCommand implements Command {
     @Override
     public CommandInfo getInfo() {
         return new CommandInfo.Builder()
-                .setRequiredBotPerms(new Permission[]{Permission.MESSAGE_EMBED_LINKS, Permission.MESSAGE_HISTORY})
+                .setRequiredBotPerms(new Permission[]{Permission.MESSAGE_EMBED_LINKS, Permission.MESSAGE_HISTORY, Permission.MESSAGE_ATTACH_FILES})
                 .setShortHelp("Displays the moves of a character using data from [ultimateframedata.com](https://ultimateframedata.com).")
                 .setDetailedHelp("""
                         Looks up the moves of a character on [ultimateframedata.com](https://ultimateframedata.com).
                         Use the drop-down menus to select the move section, move, and hitbox image.
                         Slash command options:
                         • `character`: The character name (or nickname). Has to be English.
-                        • (Optional) `move`: The move name. By default I'll show you jab 1, and you can select the move/hitbox you want to see via the select menus.""")
+                        • (Optional) `move`: The move name. By default I'll show you jab 1, and you can select the move/hitbox you want to see via the select menus. I'll suggest move names once you've entered the character.""")
                 .setCommandData(Commands.slash("moves", "Displays moves of a smash ultimate character")
                         .addOption(OptionType.STRING, "character", "The character name", true, true)
-                        .addOption(OptionType.STRING, "move", "The move name (e.g. `fair`, `down b`)", false))
+                        .addOption(OptionType.STRING, "move", "The move name (e.g. `fair`, `down b`)", false, true))
                 .build();
     }
 
@@ -472,22 +418,21 @@ public class MovesCommand implements Command {
 
         private synchronized void awaitEvents(@Nonnull Message message) {
             messageId = message.getIdLong();
-            waiter.waitForEvent(StringSelectInteractionEvent.class,
+            router.awaitSelections(message.getIdLong(),
                     e -> {
                         if (checkSelection(e)) handleSelection(e);
-                        // Return false to endlessly keep awaiting until timeout
-                        return false;
+                        // Keep awaiting until timeout
+                        return ActionMenu.MenuAction.CONTINUE;
                     },
-                    MiscUtil.emptyConsumer(),
                     20, TimeUnit.MINUTES,
-                    FailLogger.logFail(() -> timeout(message.getJDA(), message.getChannel().getIdLong())) // This might swallow exceptions otherwise
+                    () -> timeout(message.getJDA(), message.getChannel().getIdLong())
             );
         }
 
         private boolean checkSelection(@Nonnull StringSelectInteractionEvent e) {
             String id = e.getComponentId();
 
-            if (messageId == null || e.getMessageIdLong() != messageId || !(id.equals(sectionMenuId)
+            if (messageId == null || !(id.equals(sectionMenuId)
                     || id.equals(moveMenuId)
                     || id.equals(hitboxMenuId))) {
                 return false;
@@ -534,9 +479,10 @@ public class MovesCommand implements Command {
                 MessageCreateData current = getCurrent();
                 // We know because of the check that messageId is not null here
                 //noinspection ConstantConditions
-                e.getChannel().editMessageById(messageId, MessageEditData.fromCreateData(current))
+                // Replace so the attachment of the previous hitbox goes away
+                e.getChannel().editMessageById(messageId, MessageEditBuilder.fromCreateData(current).setReplace(true).build())
                         .setComponents(prepareActionRows())
-                        .queue();
+                        .queue(null, new ErrorHandler().ignore(ErrorResponse.UNKNOWN_MESSAGE));
             } catch (NumberFormatException ex) {
                 log.error("Non-Integer component value: {}", value);
                 // We know because of the check that messageId is not null here
@@ -554,7 +500,7 @@ public class MovesCommand implements Command {
                 return;
             }
 
-            // We know it is set before waiter waits
+            // We know it is set before the router waits
             //noinspection ConstantConditions
             channel.retrieveMessageById(messageId)
                     .flatMap(m -> m.editMessage(MessageEditData.fromMessage(m)).setComponents())
@@ -646,7 +592,29 @@ public class MovesCommand implements Command {
 
                 applyMove(embed, data, getCurrentSection(), hitboxPageAndMove);
 
-                return new MessageCreateBuilder().setEmbeds(embed.build()).build();
+                MessageCreateBuilder message = new MessageCreateBuilder();
+
+                List<CharacterData.HitboxData> hitboxes = isMiscPage ? Collections.emptyList() : moves.get(movePage).hitboxes();
+                if (hitboxPage >= 0 && hitboxPage < hitboxes.size()) {
+                    String hitboxUrl = hitboxes.get(hitboxPage).url();
+                    HitboxImageCache.Image image = hitboxImageCache.getCached(hitboxUrl);
+                    if (image == null) {
+                        // The embed links the original for now
+                        hitboxImageCache.prefetch(hitboxUrl);
+                    } else {
+                        String fileName = String.format("hitbox.%s", image.extension());
+                        try {
+                            // Only opens the file, JDA reads it on its request thread
+                            message.addFiles(FileUpload.fromData(image.path(), fileName));
+                            embed.setImage(String.format("attachment://%s", fileName));
+                        } catch (IllegalArgumentException | UncheckedIOException e) {
+                            // Evicted in the meantime, the embed links the original
+                            hitboxImageCache.dropCached(image);
+                        }
+                    }
+                }
+
+                return message.setEmbeds(embed.build()).build();
             } catch (Exception e) {
                 log.catching(e);
                 return new MessageCreateBuilder()
@@ -0,0 +1,297 @@
+package com.github.gpluscb.toni.command.lookup;
+
+import com.github.gpluscb.toni.command.Command;
+import com.github.gpluscb.toni.command.CommandContext;
+import com.github.gpluscb.toni.command.CommandInfo;
+import com.github.gpluscb.toni.smashset.Character;
+import com.github.gpluscb.toni.smashset.CharacterAutocompleteIndex;
+import com.github.gpluscb.toni.smashset.CharacterIndex;
+import com.github.gpluscb.toni.ultimateframedata.*;
+import com.github.gpluscb.toni.util.FailLogger;
+import com.github.gpluscb.toni.util.MiscUtil;
+import com.github.gpluscb.toni.util.PairNonnull;
+import com.github.gpluscb.toni.util.discord.EmbedUtil;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+public class PunishCommand implements Command {
+    private static final Logger log = LogManager.getLogger(PunishCommand.class);
+
+    private static final int MAX_ROWS = 20;
+
+    @Nonnull
+    private final FrameDataStore frameDataStore;
+    @Nonnull
+    private final CharacterIndex characterIndex;
+    @Nonnull
+    private final CharacterAutocompleteIndex autocompleteIndex;
+
+    public PunishCommand(@Nonnull FrameDataStore frameDataStore, @Nonnull CharacterIndex characterIndex, @Nonnull CharacterAutocompleteIndex autocompleteIndex) {
+        this.frameDataStore = frameDataStore;
+        this.characterIndex = characterIndex;
+        this.autocompleteIndex = autocompleteIndex;
+    }
+
+    @Override
+    public void execute(@Nonnull CommandContext ctx) {
+        PunishIndex punishIndex = frameDataStore.getPunishIndex();
+        if (punishIndex == null) {
+            ctx.reply("I'm still loading the frame data, try again in a minute.").queue();
+            return;
+        }
+
+        String subcommand = ctx.getEvent().getSubcommandName();
+        if ("move".equals(subcommand)) executeMove(ctx, punishIndex);
+        else if ("option".equals(subcommand)) executeOption(ctx, punishIndex);
+        else {
+            log.error("Unknown subcommand: {}", subcommand);
+            ctx.reply("This is a bad error - the subcommand you used apparently doesn't exist. I've notified my dev, but you can give them some context too.").queue();
+        }
+    }
+
+    private void executeMove(@Nonnull CommandContext ctx, @Nonnull PunishIndex punishIndex) {
+        Character attacker = resolveCharacter(ctx, ctx.getOptionNonNull("attacker").getAsString());
+        if (attacker == null) return;
+
+        OptionMapping defenderMapping = ctx.getOption("defender");
+        Character defender = null;
+        if (defenderMapping != null) {
+            defender = resolveCharacter(ctx, defenderMapping.getAsString());
+            if (defender == null) return;
+        }
+
+        String moveName = ctx.getOptionNonNull("move").getAsString();
+
+        Short attackerId = attacker.id();
+        if (attackerId == null) {
+            ctx.reply(String.format("%s doesn't have frame data by itself, try one of the sub-characters.", attacker.name())).queue();
+            return;
+        }
+
+        Character finalDefender = defender;
+        ctx.getEvent().deferReply().queue();
+        frameDataStore.getIndexedCharacter(attackerId).whenComplete(FailLogger.logFail((response, t) -> {
+            try {
+                if (t != null) {
+                    log.catching(t);
+                    ctx.reply("The request to my ultimateframedata api service failed. Tell my dev if this happens a lot.").queue();
+                    return;
+                }
+
+                if (response == null) {
+                    log.error("Valid character requested, but not found by ufd service.");
+                    ctx.reply("Oh this is a bug. I was sure I'd have frame data for that character, but I don't. I'll tell my dev about it, but you can give them some context too.").queue();
+                    return;
+                }
+
+                PairNonnull<Integer, Integer> position = response.moveIndex().find(moveName);
+                if (position == null || position.getT() == -1) {
+                    ctx.reply(String.format("I couldn't find the move \"%s\" for %s.", moveName, attacker.name())).queue();
+                    return;
+                }
+
+                CharacterData.MoveData move = response.data().moveSections().get(position.getT()).moves().get(position.getU());
+                replyMove(ctx, punishIndex, response.data(), move, finalDefender);
+            } catch (Exception e) {
+                log.catching(e);
+                ctx.reply("Ouch, an error. This one's really bad, sorry. I'll send a report to my dev. If it keeps happening you might want to provide them with some context too.").queue();
+            }
+        }));
+    }
+
+    private void replyMove(@Nonnull CommandContext ctx, @Nonnull PunishIndex punishIndex, @Nonnull CharacterData attackerData, @Nonnull CharacterData.MoveData move, @Nullable Character defender) {
+        String moveName = move.moveName() == null ? "Some Unnamed Move" : move.moveName();
+        String attackerName = MiscUtil.capitalizeFirst(attackerData.name());
+
+        int advantage = FrameDataColumns.parseFrames(move.advantage());
+        if (advantage == FrameDataColumns.MISSING) {
+            ctx.reply(String.format("I don't know how safe %s's %s is on shield, sorry.", attackerName, moveName)).queue();
+            return;
+        }
+
+        EmbedBuilder embed = EmbedUtil.getPreparedUFD(ctx.getMember(), ctx.getUser())
+                .setTitle(String.format("%s - %s (%d on shield)", attackerName, moveName, advantage));
+
+        if (defender != null) {
+            Short defenderId = defender.id();
+            List<PunishIndex.OosOption> options = defenderId == null ? null : punishIndex.getOosOptions(defenderId);
+            if (options == null || options.isEmpty()) {
+                ctx.reply(String.format("I don't know the out of shield options of %s, sorry.", defender.name())).queue();
+                return;
+            }
+
+            StringBuilder description = new StringBuilder(String.format("Out of shield options of %s:%n", defender.name()));
+            for (PunishIndex.OosOption option : options)
+                description.append(String.format("%s `%2d` %s%n", option.punishes(advantage) ? "✅" : "❌", option.frames(), option.name()));
+
+            ctx.reply(embed.setDescription(description).build()).queue();
+            return;
+        }
+
+        List<PunishIndex.Punisher> punishers = punishIndex.findPunishers(advantage);
+        if (punishers.isEmpty()) {
+            ctx.reply(embed.setDescription("Nobody can punish this out of shield.").build()).queue();
+            return;
+        }
+
+        StringBuilder description = new StringBuilder(String.format("%d of %d characters can punish this out of shield:%n",
+                punishers.size(), punishIndex.getCharacterCount()));
+        for (PunishIndex.Punisher punisher : punishers.subList(0, Math.min(MAX_ROWS, punishers.size()))) {
+            PunishIndex.OosOption option = punisher.fastestOption();
+            description.append(String.format("`%2d` %s - %s%n", option.frames(), MiscUtil.capitalizeFirst(punisher.characterName()), option.name()));
+        }
+
+        if (punishers.size() > MAX_ROWS)
+            description.append(String.format("*...and %d more*", punishers.size() - MAX_ROWS));
+
+        ctx.reply(embed.setDescription(description).build()).queue();
+    }
+
+    private void executeOption(@Nonnull CommandContext ctx, @Nonnull PunishIndex punishIndex) {
+        Character defender = resolveCharacter(ctx, ctx.getOptionNonNull("defender").getAsString());
+        if (defender == null) return;
+
+        String optionName = ctx.getOptionNonNull("option").getAsString();
+
+        Short defenderId = defender.id();
+        PunishIndex.OosOption option = defenderId == null ? null : punishIndex.findOosOption(defenderId, optionName);
+        if (option == null) {
+            ctx.reply(String.format("I couldn't find the out of shield option \"%s\" for %s.", optionName, defender.name())).queue();
+            return;
+        }
+
+        List<PunishIndex.PunishableMove> punishable = punishIndex.findPunishable(option.frames());
+
+        EmbedBuilder embed = EmbedUtil.getPreparedUFD(ctx.getMember(), ctx.getUser())
+                .setTitle(String.format("%s - %s out of shield (%d frames)", defender.name(), option.name(), option.frames()));
+
+        if (punishable.isEmpty()) {
+            ctx.reply(embed.setDescription("This doesn't punish any move on shield.").build()).queue();
+            return;
+        }
+
+        StringBuilder description = new StringBuilder(String.format("Punishes %d moves, most unsafe first:%n", punishable.size()));
+        for (PunishIndex.PunishableMove move : punishable.subList(0, Math.min(MAX_ROWS, punishable.size())))
+            description.append(String.format("`%4d` %s - %s%n", move.advantage(), MiscUtil.capitalizeFirst(move.characterName()), move.moveName()));
+
+        if (punishable.size() > MAX_ROWS)
+            description.append(String.format("*...and %d more*", punishable.size() - MAX_ROWS));
+
+        ctx.reply(embed.setDescription(description).build()).queue();
+    }
+
+    /**
+     * Replies if the character can't be resolved.
+     */
+    @Nullable
+    private Character resolveCharacter(@Nonnull CommandContext ctx, @Nonnull String name) {
+        CharacterIndex.Match match = characterIndex.resolve(name).getConfident();
+        if (match == null) {
+            ctx.reply(String.format("I don't know the character \"%s\", sorry. Note that I only know the English names.", name)).queue();
+            return null;
+        }
+
+        return match.character();
+    }
+
+    @Nonnull
+    @Override
+    public List<net.dv8tion.jda.api.interactions.commands.Command.Choice> onAutocomplete(@Nonnull CommandAutoCompleteInteractionEvent event) {
+        String focused = event.getFocusedOption().getName();
+        String input = event.getFocusedOption().getValue();
+
+        return switch (focused) {
+            case "move" -> completeMove(event, input);
+            case "option" -> completeOption(event, input);
+            default -> autocompleteIndex.complete(input).stream()
+                    .map(match -> new net.dv8tion.jda.api.interactions.commands.Command.Choice(match.name(), match.name()))
+                    .toList();
+        };
+    }
+
+    /**
+     * Only uses move indices that are already loaded, like for /moves.
+     */
+    @Nonnull
+    private List<net.dv8tion.jda.api.interactions.commands.Command.Choice> completeMove(@Nonnull CommandAutoCompleteInteractionEvent event, @Nonnull String input) {
+        Short attackerId = resolveAutocompleteCharacterId(event, "attacker");
+        if (attackerId == null) return Collections.emptyList();
+
+        MoveIndex moveIndex = frameDataStore.getLoadedMoveIndex(attackerId);
+        if (moveIndex == null) return Collections.emptyList();
+
+        return moveIndex.complete(input, OptionData.MAX_CHOICES).stream()
+                .map(name -> new net.dv8tion.jda.api.interactions.commands.Command.Choice(name, name))
+                .toList();
+    }
+
+    @Nonnull
+    private List<net.dv8tion.jda.api.interactions.commands.Command.Choice> completeOption(@Nonnull CommandAutoCompleteInteractionEvent event, @Nonnull String input) {
+        PunishIndex punishIndex = frameDataStore.getPunishIndex();
+        Short defenderId = resolveAutocompleteCharacterId(event, "defender");
+        if (punishIndex == null || defenderId == null) return Collections.emptyList();
+
+        List<PunishIndex.OosOption> options = punishIndex.getOosOptions(defenderId);
+        if (options == null) return Collections.emptyList();
+
+        String normalizedInput = MoveNameNormalizer.normalize(input);
+        return options.stream()
+                .map(PunishIndex.OosOption::name)
+                .filter(name -> MoveNameNormalizer.normalize(name).contains(normalizedInput))
+                .distinct()
+                .limit(OptionData.MAX_CHOICES)
+                .map(name -> new net.dv8tion.jda.api.interactions.commands.Command.Choice(name, name))
+                .toList();
+    }
+
+    @Nullable
+    private Short resolveAutocompleteCharacterId(@Nonnull CommandAutoCompleteInteractionEvent event, @Nonnull String option) {
+        OptionMapping mapping = event.getOption(option);
+        if (mapping == null) return null;
+
+        CharacterIndex.Match match = characterIndex.resolve(mapping.getAsString()).getConfident();
+        return match == null ? null : match.character().id();
+    }
+
+    @Nonnull
+    @Override
+    public CommandInfo getInfo() {
+        return new CommandInfo.Builder()
+                .setRequiredBotPerms(new Permission[]{Permission.MESSAGE_EMBED_LINKS})
+                .setShortHelp("Finds out of shield punishes using data from [ultimateframedata.com](https://ultimateframedata.com).")
+                .setDetailedHelp("""
+                        Calculates which out of shield options punish which moves, for all characters. An option punishes a move if it is at most as many frames as the move is negative on shield.
+                        Multi-hit moves are judged by their first hit.
+                        `/punish move`: Which options punish a move.
+                        Slash command options:
+                        • `attacker`: The character doing the move.
+                        • `move`: The move name.
+                        • (Optional) `defender`: The shielding character. If you leave this out, I'll list every character who can punish the move.
+                        `/punish option`: Which moves of all characters an out of shield option punishes.
+                        Slash command options:
+                        • `defender`: The shielding character.
+                        • `option`: The out of shield option, e.g. `nair` or `up b`.""")
+                .setCommandData(Commands.slash("punish", "Finds out of shield punishes")
+                        .addSubcommands(new SubcommandData("move", "Which out of shield options punish a move")
+                                        .addOption(OptionType.STRING, "attacker", "The character doing the move", true, true)
+                                        .addOption(OptionType.STRING, "move", "The move name (e.g. `fair`, `down smash`)", true, true)
+                                        .addOption(OptionType.STRING, "defender", "The shielding character, all characters if left out", false, true),
+                                new SubcommandData("option", "Which moves of all characters an out of shield option punishes")
+                                        .addOption(OptionType.STRING, "defender", "The shielding character", true, true)
+                                        .addOption(OptionType.STRING, "option", "The out of shield option (e.g. `nair`, `up b`)", true, true)))
+                .build();
+    }
+}
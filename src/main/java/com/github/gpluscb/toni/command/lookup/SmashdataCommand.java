@@ -3,12 +3,12 @@ package com.github.gpluscb.toni.command.lookup;
 import com.github.gpluscb.toni.command.Command;
 import com.github.gpluscb.toni.command.CommandContext;
 import com.github.gpluscb.toni.command.CommandInfo;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.menu.ReactionActionMenu;
 import com.github.gpluscb.toni.smashdata.SmashdataManager;
 import com.github.gpluscb.toni.util.Constants;
 import com.github.gpluscb.toni.util.MiscUtil;
 import com.github.gpluscb.toni.util.discord.EmbedUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Member;
@@ -41,10 +41,10 @@ public class SmashdataCommand implements Command {
     @Nonnull
     private final SmashdataManager smashdata;
     @Nonnull
-    private final EventWaiter waiter;
+    private final InteractionRouter router;
 
-    public SmashdataCommand(@Nonnull EventWaiter waiter, @Nonnull SmashdataManager smashdata) {
-        this.waiter = waiter;
+    public SmashdataCommand(@Nonnull InteractionRouter router, @Nonnull SmashdataManager smashdata) {
+        this.router = router;
         this.smashdata = smashdata;
     }
 
@@ -113,7 +113,7 @@ public class SmashdataCommand implements Command {
 
         PlayerEmbedPaginator pages = new PlayerEmbedPaginator(EmbedUtil.getPreparedSmashdata(member, author).build(), results);
         ReactionActionMenu.Builder menuBuilder = new ReactionActionMenu.Builder()
-                .setEventWaiter(waiter)
+                .setRouter(router)
                 .addUsers(author.getIdLong())
                 .setStart(pages.getCurrent());
 
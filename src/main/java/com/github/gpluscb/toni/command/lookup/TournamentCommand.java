@@ -11,19 +11,21 @@ import com.github.gpluscb.ggjava.entity.object.response.scalars.*;
 import com.github.gpluscb.toni.command.Command;
 import com.github.gpluscb.toni.command.CommandContext;
 import com.github.gpluscb.toni.command.CommandInfo;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.menu.ReactionActionMenu;
 import com.github.gpluscb.toni.startgg.GGManager;
+import com.github.gpluscb.toni.startgg.GGRequestScheduler;
 import com.github.gpluscb.toni.util.Constants;
 import com.github.gpluscb.toni.util.FailLogger;
 import com.github.gpluscb.toni.util.Pair;
 import com.github.gpluscb.toni.util.PairNonnull;
 import com.github.gpluscb.toni.util.discord.EmbedUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.entities.emoji.Emoji;
 import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
@@ -38,6 +40,8 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -45,14 +49,17 @@ import java.util.stream.Stream;
 public class TournamentCommand implements Command {
     private static final Logger log = LogManager.getLogger(TournamentCommand.class);
 
+    private static final int NUM_TOURNAMENTS = 7;
+    private static final int NUM_STANDINGS = 8;
+
     @Nonnull
     private final GGManager ggManager;
     @Nonnull
-    private final EventWaiter waiter;
+    private final InteractionRouter router;
 
-    public TournamentCommand(@Nonnull GGManager ggManager, @Nonnull EventWaiter waiter) {
+    public TournamentCommand(@Nonnull GGManager ggManager, @Nonnull InteractionRouter router) {
         this.ggManager = ggManager;
-        this.waiter = waiter;
+        this.router = router;
     }
 
     @Override
@@ -61,17 +68,33 @@ public class TournamentCommand implements Command {
 
         ctx.getEvent().deferReply().queue();
 
-        // more than 7 -> risk of query complexiy
-        ggManager.searchTouranmentsByName(searchTerm, 7, 8).whenComplete(FailLogger.logFail((response, t) -> {
+        // Details are only fetched for the pages that are actually looked at
+        ggManager.searchTournamentsLight(searchTerm, NUM_TOURNAMENTS).whenComplete(FailLogger.logFail((response, t) -> {
             try {
-                if (t != null) {
-                    ctx.reply("The request to start.gg failed. Tell my dev if this happens a lot - I've already annoyed them about it, but it can't hurt to give them some more context.").queue();
-                    log.catching(t);
-                    return;
-                }
+                if (handleRequestFailure(ctx, t)) return;
 
                 response.onU(errorResponse -> handleErrorResponse(ctx, errorResponse))
-                        .onT(tournaments -> sendReply(ctx, tournaments));
+                        .onT(tournaments -> loadFirstAndReply(ctx, tournaments));
+            } catch (Exception e) {
+                log.catching(e);
+                ctx.reply("Ouch, an error. That one's probably on me, sorry. I'll send a report to my dev. If it keeps happening you might want to provide them with some context too.").queue();
+            }
+        }));
+    }
+
+    private void loadFirstAndReply(@Nonnull CommandContext ctx, @Nonnull List<TournamentResponse> lightTournaments) {
+        if (lightTournaments.isEmpty()) {
+            ctx.reply("Sorry, I couldn't find any tournament matching that on start.gg.").queue();
+            return;
+        }
+
+        // Light tournaments always have an id
+        long firstId = lightTournaments.get(0).getId().getValueLong();
+        ggManager.getTournamentById(GGRequestScheduler.Priority.INTERACTIVE, firstId, NUM_STANDINGS).whenComplete(FailLogger.logFail((first, t) -> {
+            try {
+                if (handleRequestFailure(ctx, t)) return;
+
+                sendReply(ctx, lightTournaments, first);
             } catch (Exception e) {
                 log.catching(e);
                 ctx.reply("Ouch, an error. That one's probably on me, sorry. I'll send a report to my dev. If it keeps happening you might want to provide them with some context too.").queue();
@@ -79,6 +102,24 @@ public class TournamentCommand implements Command {
         }));
     }
 
+    /**
+     * @return true if it failed and the user was told
+     */
+    private boolean handleRequestFailure(@Nonnull CommandContext ctx, @Nullable Throwable t) {
+        if (t == null) return false;
+
+        Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+        if (cause instanceof RejectedExecutionException) {
+            log.debug("start.gg request rejected as busy", cause);
+            ctx.reply("I'm sending start.gg a lot of requests right now, so I'd have to wait a while for this one. Try again in a minute please.").queue();
+            return true;
+        }
+
+        ctx.reply("The request to start.gg failed. Tell my dev if this happens a lot - I've already annoyed them about it, but it can't hurt to give them some more context.").queue();
+        log.catching(t);
+        return true;
+    }
+
     private void handleErrorResponse(@Nonnull CommandContext ctx, @Nonnull GGResponse<QueryResponse> errorResponse) {
         DeserializationException e = errorResponse.getException();
         List<GGError> errors = errorResponse.getErrors();
@@ -91,18 +132,16 @@ public class TournamentCommand implements Command {
         ctx.reply("An error during the parsing of the response start.gg sent me... I'll go annoy my dev. If this happens consistently, go give them some context too.").queue();
     }
 
-    private void sendReply(@Nonnull CommandContext ctx, @Nonnull List<TournamentResponse> tournaments) {
-        if (tournaments.isEmpty()) {
-            ctx.reply("Sorry, I couldn't find any tournament matching that on start.gg.").queue();
-            return;
-        }
-
+    /**
+     * @param first details of the first tournament, null if it couldn't be found
+     */
+    private void sendReply(@Nonnull CommandContext ctx, @Nonnull List<TournamentResponse> tournaments, @Nullable TournamentResponse first) {
         User author = ctx.getUser();
         Member member = ctx.getMember();
 
-        TournamentEmbedPaginator pages = new TournamentEmbedPaginator(EmbedUtil.getPreparedGG(member, author).build(), tournaments);
+        TournamentEmbedPaginator pages = new TournamentEmbedPaginator(EmbedUtil.getPreparedGG(member, author).build(), tournaments, first);
         ReactionActionMenu.Builder menuBuilder = new ReactionActionMenu.Builder()
-                .setEventWaiter(waiter)
+                .setRouter(router)
                 .addUsers(author.getIdLong())
                 .registerButton(Emoji.fromUnicode(Constants.ARROW_DOWNWARD), pages::nextEvent)
                 .registerButton(Emoji.fromUnicode(Constants.ARROW_UPWARD), pages::prevEvent)
@@ -383,14 +422,30 @@ public class TournamentCommand implements Command {
                 .build();
     }
 
+    /**
+     * Starts with only the details of the first tournament.
+     * The details of other tournaments are fetched when they are paged to, and one page ahead in the paging direction.
+     */
     private class TournamentEmbedPaginator {
         @Nonnull
         private final MessageEmbed template;
+        /**
+         * Only have id, name, numAttendees and endAt
+         */
+        @Nonnull
+        private final List<TournamentResponse> lightTournaments;
+        /**
+         * Per tournament page, null until loaded
+         */
         @Nonnull
         private final List<PairNonnull<TournamentResponse, List<EventResponse>>> tournaments;
+        @Nonnull
+        private final boolean[] loading;
+        @Nonnull
+        private final boolean[] failed;
         /**
          * First index: tournament page
-         * Second index: event page (0 for none)
+         * Second index: event page (0 for none), null until the tournament is loaded
          */
         // TODO: Is this really practical? I mean I guess I have it for this so...
         @Nonnull
@@ -402,67 +457,190 @@ public class TournamentCommand implements Command {
          */
         private int eventPage;
 
-        public TournamentEmbedPaginator(@Nonnull MessageEmbed template, @Nonnull List<TournamentResponse> tournaments) {
+        /**
+         * Null until the first reaction
+         */
+        @Nullable
+        private MessageChannel channel;
+        private long messageId;
+        /**
+         * Whether the message shows a placeholder that should be replaced once its page is loaded
+         */
+        private boolean showingUnloaded;
+        /**
+         * Whether a load is being started right now, callers of {@link #load(int)} show the page themselves afterwards
+         */
+        private boolean startingLoad;
+
+        public TournamentEmbedPaginator(@Nonnull MessageEmbed template, @Nonnull List<TournamentResponse> lightTournaments, @Nullable TournamentResponse first) {
             this.template = template;
-            this.tournaments = tournaments.stream().map(tournament -> {
-                List<EventResponse> eventsResponse = tournament.getEvents();
-                List<EventResponse> events = eventsResponse == null ?
-                        Collections.emptyList()
-                        : eventsResponse.stream().filter(Objects::nonNull).toList();
-
-                return new PairNonnull<>(tournament, events);
-            }).toList();
-
-            lazyMessages = new MessageCreateData[tournaments.size()][];
-            for (int i = 0; i < lazyMessages.length; i++) {
-                List<EventResponse> events = tournaments.get(i).getEvents();
-                lazyMessages[i] = new MessageCreateData[events == null ? 1 : events.size() + 1];
-            }
+            this.lightTournaments = lightTournaments;
+
+            int size = lightTournaments.size();
+            tournaments = new ArrayList<>(Collections.nCopies(size, null));
+            loading = new boolean[size];
+            failed = new boolean[size];
+            lazyMessages = new MessageCreateData[size][];
+
             tournamentPage = 0;
             eventPage = 0;
+
+            if (first == null) failed[0] = true;
+            else setLoaded(0, first);
+            showingUnloaded = first == null;
+
+            if (size > 1) load(1);
         }
 
-        @Nonnull
+        /**
+         * Must hold the lock.
+         */
+        private void setLoaded(int page, @Nonnull TournamentResponse tournament) {
+            List<EventResponse> eventsResponse = tournament.getEvents();
+            List<EventResponse> events = eventsResponse == null ?
+                    Collections.emptyList()
+                    : eventsResponse.stream().filter(Objects::nonNull).toList();
+
+            tournaments.set(page, new PairNonnull<>(tournament, events));
+            lazyMessages[page] = new MessageCreateData[events.size() + 1];
+            failed[page] = false;
+        }
+
+        /**
+         * Must hold the lock.
+         */
+        private void load(int page) {
+            if (tournaments.get(page) != null || loading[page]) return;
+
+            loading[page] = true;
+            // Light tournaments always have an id
+            long id = lightTournaments.get(page).getId().getValueLong();
+            // Cache hits complete right here
+            startingLoad = true;
+            try {
+                ggManager.getTournamentById(GGRequestScheduler.Priority.INTERACTIVE, id, NUM_STANDINGS)
+                        .whenComplete(FailLogger.logFail((tournament, t) -> {
+                            onLoaded(page, tournament, t);
+                        }));
+            } finally {
+                startingLoad = false;
+            }
+        }
+
+        private synchronized void onLoaded(int page, @Nullable TournamentResponse tournament, @Nullable Throwable t) {
+            loading[page] = false;
+
+            if (t != null) {
+                Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+                if (cause instanceof RejectedExecutionException) log.debug("Loading tournament page rejected as busy", cause);
+                else log.warn("Loading tournament page failed", t);
+                failed[page] = true;
+            } else if (tournament == null) {
+                failed[page] = true;
+            } else {
+                setLoaded(page, tournament);
+            }
+
+            // Replace the placeholder if they're still looking at it
+            if (!startingLoad && showingUnloaded && page == tournamentPage && eventPage == 0) show();
+        }
+
+        /**
+         * Must hold the lock.
+         * Edits are queued while holding the lock, so a placeholder can never overwrite the loaded page.
+         */
+        private void show() {
+            if (channel == null) return;
+
+            showingUnloaded = tournaments.get(tournamentPage) == null;
+            channel.editMessageById(messageId, MessageEditData.fromCreateData(getCurrent())).queue();
+        }
+
+        /**
+         * Must hold the lock.
+         */
+        private void onReaction(@Nonnull MessageReactionAddEvent e) {
+            channel = e.getChannel();
+            messageId = e.getMessageIdLong();
+        }
+
+        /**
+         * @return always null, the message is edited directly
+         */
+        @Nullable
         public synchronized MessageEditData nextTournament(@Nonnull MessageReactionAddEvent e) {
+            onReaction(e);
             tournamentPage = (tournamentPage + 1) % tournaments.size();
             eventPage = 0;
-            return MessageEditData.fromCreateData(getCurrent());
+
+            load(tournamentPage);
+            load((tournamentPage + 1) % tournaments.size());
+            show();
+            return null;
         }
 
-        @Nonnull
+        /**
+         * @return always null, the message is edited directly
+         */
+        @Nullable
         public synchronized MessageEditData prevTournament(@Nonnull MessageReactionAddEvent e) {
+            onReaction(e);
             tournamentPage--;
             if (tournamentPage < 0) tournamentPage = tournaments.size() - 1;
             eventPage = 0;
-            return MessageEditData.fromCreateData(getCurrent());
+
+            load(tournamentPage);
+            load(tournamentPage == 0 ? tournaments.size() - 1 : tournamentPage - 1);
+            show();
+            return null;
         }
 
-        @Nonnull
+        /**
+         * @return always null, the message is edited directly
+         */
+        @Nullable
         public synchronized MessageEditData nextEvent(@Nonnull MessageReactionAddEvent e) {
-            eventPage = (eventPage + 1) % (tournaments.get(tournamentPage).getU().size() + 1);
-            return MessageEditData.fromCreateData(getCurrent());
+            onReaction(e);
+            PairNonnull<TournamentResponse, List<EventResponse>> current = tournaments.get(tournamentPage);
+            // Events aren't known until the tournament is loaded
+            if (current == null) return null;
+
+            eventPage = (eventPage + 1) % (current.getU().size() + 1);
+            show();
+            return null;
         }
 
-        @Nonnull
+        /**
+         * @return always null, the message is edited directly
+         */
+        @Nullable
         public synchronized MessageEditData prevEvent(@Nonnull MessageReactionAddEvent e) {
+            onReaction(e);
+            PairNonnull<TournamentResponse, List<EventResponse>> current = tournaments.get(tournamentPage);
+            // Events aren't known until the tournament is loaded
+            if (current == null) return null;
+
             eventPage--;
-            if (eventPage < 0) eventPage = tournaments.get(tournamentPage).getU().size();
-            return MessageEditData.fromCreateData(getCurrent());
+            if (eventPage < 0) eventPage = current.getU().size();
+            show();
+            return null;
         }
 
         @Nonnull
         public synchronized MessageCreateData getCurrent() {
             try {
+                PairNonnull<Integer, Integer> idxOutOfSize = tournaments.size() > 1 ?
+                        new PairNonnull<>(tournamentPage + 1, tournaments.size())
+                        : null;
+
+                Pair<TournamentResponse, List<EventResponse>> pair = tournaments.get(tournamentPage);
+                if (pair == null) return getUnloaded(idxOutOfSize);
+
                 MessageCreateData lazyMessage = lazyMessages[tournamentPage][eventPage];
                 if (lazyMessage != null) return lazyMessage;
 
                 EmbedBuilder embed = new EmbedBuilder(template);
-
-                Pair<TournamentResponse, List<EventResponse>> pair = tournaments.get(tournamentPage);
                 TournamentResponse tournament = pair.getT();
-                PairNonnull<Integer, Integer> idxOutOfSize = tournaments.size() > 1 ?
-                        new PairNonnull<>(tournamentPage + 1, tournaments.size())
-                        : null;
 
                 MessageCreateData message;
                 if (eventPage == 0)
@@ -481,5 +659,25 @@ public class TournamentCommand implements Command {
                         .build();
             }
         }
+
+        /**
+         * Must hold the lock.
+         */
+        @Nonnull
+        private MessageCreateData getUnloaded(@Nullable PairNonnull<Integer, Integer> idxOutOfSize) {
+            StringResponse nameResponse = lightTournaments.get(tournamentPage).getName();
+            String name = nameResponse == null ? "[not named]" : nameResponse.getValue();
+            String title = idxOutOfSize != null ?
+                    String.format("(%d/%d) %s", idxOutOfSize.getT(), idxOutOfSize.getU(), name)
+                    : name;
+
+            String description = failed[tournamentPage] && !loading[tournamentPage] ?
+                    "*I couldn't load this tournament from start.gg. Page back to it to try again.*"
+                    : "*Loading the tournament details...*";
+
+            return new MessageCreateBuilder()
+                    .setEmbeds(new EmbedBuilder(template).setTitle(title).setDescription(description).build())
+                    .build();
+        }
     }
 }
@@ -6,10 +6,10 @@ import com.github.gpluscb.toni.command.CommandInfo;
 import com.github.gpluscb.toni.db.DBManager;
 import com.github.gpluscb.toni.menu.ActionMenu;
 import com.github.gpluscb.toni.menu.ButtonActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.util.Constants;
 import com.github.gpluscb.toni.util.MiscUtil;
 import com.github.gpluscb.toni.util.PairNonnull;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
@@ -41,14 +41,14 @@ public class UnrankedLfgCommand implements Command {
     @Nonnull
     private final DBManager manager;
     @Nonnull
-    private final EventWaiter waiter;
+    private final InteractionRouter router;
 
     @Nonnull
     private final Set<PairNonnull<Long, Long>> currentlyLfgPerGuild;
 
-    public UnrankedLfgCommand(@Nonnull DBManager manager, @Nonnull EventWaiter waiter) {
+    public UnrankedLfgCommand(@Nonnull DBManager manager, @Nonnull InteractionRouter router) {
         this.manager = manager;
-        this.waiter = waiter;
+        this.router = router;
         currentlyLfgPerGuild = new HashSet<>();
     }
 
@@ -130,7 +130,7 @@ public class UnrankedLfgCommand implements Command {
         ButtonHandler handler = new ButtonHandler(guildId, userId, roleId);
         ButtonActionMenu menu = new ButtonActionMenu(new ButtonActionMenu.Settings.Builder()
                 .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                        .setWaiter(waiter)
+                        .setRouter(router)
                         .setTimeout(duration.getSeconds(), TimeUnit.SECONDS)
                         .build())
                 .setDeletionButton(null)
@@ -212,7 +212,7 @@ public class UnrankedLfgCommand implements Command {
             DisableButtonHandler handler = new DisableButtonHandler(originalMessageId, challengerId);
             ButtonActionMenu menu = new ButtonActionMenu(new ButtonActionMenu.Settings.Builder()
                     .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                            .setWaiter(waiter)
+                            .setRouter(router)
                             .setTimeout(3, TimeUnit.MINUTES)
                             .build())
                     .setDeletionButton(null)
@@ -112,7 +112,7 @@ public class BanPickStagesMenu extends TwoUsersChoicesActionMenu {
     private PickStageMenu createPickMenu(@Nonnull Set<Integer> bannedStageIds) {
         return new PickStageMenu(new PickStageMenu.Settings.Builder()
                 .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                        .setWaiter(getActionMenuSettings().waiter())
+                        .setRouter(getActionMenuSettings().router())
                         .setTimeout(settings.pickStageTimeout(), settings.pickStageUnit())
                         .build())
                 .setPickingUser(getTwoUsersChoicesActionMenuSettings().user2())
@@ -3,10 +3,11 @@ package com.github.gpluscb.toni.command.menu;
 import com.github.gpluscb.toni.command.modal.CharPickModalHandler;
 import com.github.gpluscb.toni.menu.ActionMenu;
 import com.github.gpluscb.toni.menu.ButtonActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
+import com.github.gpluscb.toni.menu.SelectionActionMenu;
 import com.github.gpluscb.toni.smashset.Character;
-import com.github.gpluscb.toni.smashset.CharacterTree;
+import com.github.gpluscb.toni.smashset.CharacterIndex;
 import com.github.gpluscb.toni.util.MiscUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
@@ -14,8 +15,13 @@ import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.callbacks.IMessageEditCallback;
 import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.interactions.components.selections.SelectOption;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.utils.MarkdownSanitizer;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageCreateData;
 
 import javax.annotation.Nonnull;
@@ -24,8 +30,13 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class BlindPickMenu extends ActionMenu {
+    @Nonnull
+    private static final String ALREADY_FINISHED_MESSAGE = "All characters have already been selected and published, or this interaction timed out." +
+            " So your choice wasn't recorded";
+
     @Nonnull
     private final Settings settings;
 
@@ -43,7 +54,7 @@ public class BlindPickMenu extends ActionMenu {
         super(settings.actionMenuSettings());
         this.settings = settings;
 
-        modalHandler = new CharPickModalHandler(settings.waiter());
+        modalHandler = new CharPickModalHandler(settings.router());
         buttonMenu = new ButtonActionMenu(new ButtonActionMenu.Settings.Builder()
                 .setActionMenuSettings(settings.actionMenuSettings())
                 .setStart(settings.start())
@@ -101,38 +112,75 @@ public class BlindPickMenu extends ActionMenu {
     }
 
     private void onChoice(@Nonnull String choice, @Nonnull ModalInteractionEvent event) {
+        // Checked again in choose, this just avoids offering candidates for a pick that is already over
         if (finished.get()) {
-            event.reply("All characters have already been selected and published, or this interaction timed out." +
-                            " So your choice wasn't recorded")
-                    .setEphemeral(true)
-                    .queue();
+            event.reply(ALREADY_FINISHED_MESSAGE).setEphemeral(true).queue();
             return;
         }
 
-        Character characterChoice = settings.characters().stream()
-                .filter(c -> c.altNames().contains(choice.toLowerCase()))
-                .findAny()
-                .orElse(null);
+        CharacterIndex.Resolution resolution = settings.characterIndex().resolve(choice);
+
+        CharacterIndex.Match confident = resolution.getConfident();
+        if (confident != null) {
+            String note = confident.distance() == 0 ? "" : String.format(" I assumed you meant %s.", confident.character().name());
+            boolean completed = choose(confident.character(), event, message -> event.reply(message + note).setEphemeral(true));
+            // The result handler acknowledged the event, so the note has to go in a followup
+            if (completed && !note.isEmpty()) event.getHook().sendMessage(note.strip()).setEphemeral(true).queue();
+            return;
+        }
 
-        if (characterChoice == null) {
+        if (resolution.matches().isEmpty()) {
             // TODO: Maybe block while another modal is open?
             event.reply("I don't recognise that character. Please try again.").setEphemeral(true).queue();
             return;
         }
 
-        boolean firstChoice = choices.put(event.getUser().getIdLong(), characterChoice) == null;
+        // Ambiguous typo, so we let them pick instead of making them go through the modal again
+        SelectionActionMenu.Settings.Builder candidatesBuilder = new SelectionActionMenu.Settings.Builder()
+                .setActionMenuSettings(getActionMenuSettings())
+                .addUsers(event.getUser().getIdLong())
+                .setStart(new MessageCreateBuilder()
+                        .setContent(String.format("I'm not sure which character you meant by \"%s\", please pick one.", MarkdownSanitizer.escape(choice)))
+                        .build())
+                // The message is ephemeral, so we can't retrieve it to remove the menu
+                .setOnTimeout(MiscUtil.emptyConsumer());
+
+        for (CharacterIndex.Match match : resolution.matches()) {
+            Character character = match.character();
+            candidatesBuilder.registerOption(SelectOption.of(character.name(), character.name()), (info, e) -> {
+                boolean completed = choose(character, e, message -> e.editMessage(message).setComponents());
+                // The result handler only acknowledges the event, so we still have to remove the menu
+                if (completed) e.getHook().editOriginal("I have noted your choice.").setComponents().queue();
+                return MenuAction.CANCEL;
+            });
+        }
+
+        event.deferReply(true).queue();
+        new SelectionActionMenu(candidatesBuilder.build()).displayDeferredReplying(event.getHook());
+    }
+
+    /**
+     * @param acknowledge replies with the given message, only used if the pick is not complete after this
+     * @return true if this completed the pick and the event was passed on to the result handler
+     */
+    private boolean choose(@Nonnull Character character, @Nonnull IMessageEditCallback event, @Nonnull Function<String, RestAction<?>> acknowledge) {
+        if (finished.get()) {
+            acknowledge.apply(ALREADY_FINISHED_MESSAGE).queue();
+            return false;
+        }
+
+        boolean firstChoice = choices.put(event.getUser().getIdLong(), character) == null;
 
         if (settings.users().stream().allMatch(choices::containsKey)) {
             finished.set(true);
 
             settings.onResult().accept(new BlindPickResult(), event);
 
-            return;
+            return true;
         }
 
-        event.reply(String.format("I have %s your choice.", firstChoice ? "noted" : "updated"))
-                .setEphemeral(true)
-                .queue();
+        acknowledge.apply(String.format("I have %s your choice.", firstChoice ? "noted" : "updated")).queue();
+        return false;
     }
 
     public void onTimeout(@Nonnull ButtonActionMenu.ButtonActionMenuTimeoutEvent timeout) {
@@ -180,12 +228,12 @@ public class BlindPickMenu extends ActionMenu {
     public class BlindPickTimeoutEvent extends BlindPickMenuStateInfo {
     }
 
-    public record Settings(@Nonnull ActionMenu.Settings actionMenuSettings, @Nonnull EventWaiter waiter,
-                           @Nonnull Set<Long> users, @Nonnull MessageCreateData start, @Nonnull List<Character> characters,
-                           @Nonnull BiConsumer<BlindPickResult, ModalInteractionEvent> onResult,
+    public record Settings(@Nonnull ActionMenu.Settings actionMenuSettings, @Nonnull InteractionRouter router,
+                           @Nonnull Set<Long> users, @Nonnull MessageCreateData start, @Nonnull CharacterIndex characterIndex,
+                           @Nonnull BiConsumer<BlindPickResult, IMessageEditCallback> onResult,
                            @Nonnull Consumer<BlindPickTimeoutEvent> onTimeout) {
         @Nonnull
-        public static final BiConsumer<BlindPickResult, ModalInteractionEvent> DEFAULT_ON_RESULT = MiscUtil.emptyBiConsumer();
+        public static final BiConsumer<BlindPickResult, IMessageEditCallback> DEFAULT_ON_RESULT = MiscUtil.emptyBiConsumer();
         @Nonnull
         public static final Consumer<BlindPickTimeoutEvent> DEFAULT_ON_TIMEOUT = MiscUtil.emptyConsumer();
 
@@ -193,15 +241,15 @@ public class BlindPickMenu extends ActionMenu {
             @Nullable
             private ActionMenu.Settings actionMenuSettings;
             @Nullable
-            private EventWaiter waiter;
+            private InteractionRouter router;
             @Nonnull
             private Set<Long> users = new HashSet<>();
             @Nullable
             private MessageCreateData start;
             @Nullable
-            private List<Character> characters;
+            private CharacterIndex characterIndex;
             @Nonnull
-            private BiConsumer<BlindPickResult, ModalInteractionEvent> onResult = DEFAULT_ON_RESULT;
+            private BiConsumer<BlindPickResult, IMessageEditCallback> onResult = DEFAULT_ON_RESULT;
             @Nonnull
             private Consumer<BlindPickTimeoutEvent> onTimeout = DEFAULT_ON_TIMEOUT;
 
@@ -212,8 +260,8 @@ public class BlindPickMenu extends ActionMenu {
             }
 
             @Nonnull
-            public Builder setWaiter(@Nonnull EventWaiter waiter) {
-                this.waiter = waiter;
+            public Builder setRouter(@Nonnull InteractionRouter router) {
+                this.router = router;
                 return this;
             }
 
@@ -236,19 +284,13 @@ public class BlindPickMenu extends ActionMenu {
             }
 
             @Nonnull
-            public Builder setCharacters(@Nonnull List<Character> characters) {
-                this.characters = characters;
-                return this;
-            }
-
-            @Nonnull
-            public Builder setCharacterTree(@Nonnull CharacterTree characterTree) {
-                characters = characterTree.getAllCharacters();
+            public Builder setCharacterIndex(@Nonnull CharacterIndex characterIndex) {
+                this.characterIndex = characterIndex;
                 return this;
             }
 
             @Nonnull
-            public Builder setOnResult(@Nonnull BiConsumer<BlindPickResult, ModalInteractionEvent> onResult) {
+            public Builder setOnResult(@Nonnull BiConsumer<BlindPickResult, IMessageEditCallback> onResult) {
                 this.onResult = onResult;
                 return this;
             }
@@ -262,11 +304,11 @@ public class BlindPickMenu extends ActionMenu {
             @Nonnull
             public Settings build() {
                 if (actionMenuSettings == null) throw new IllegalStateException("ActionMenuSettings must be set");
-                if (waiter == null) throw new IllegalStateException("Waiter must be set");
+                if (router == null) throw new IllegalStateException("Router must be set");
                 if (start == null) throw new IllegalStateException("Start must be set");
-                if (characters == null) throw new IllegalStateException("Characters must be set");
+                if (characterIndex == null) throw new IllegalStateException("CharacterIndex must be set");
 
-                return new Settings(actionMenuSettings, waiter, users, start, characters, onResult, onTimeout);
+                return new Settings(actionMenuSettings, router, users, start, characterIndex, onResult, onTimeout);
             }
         }
     }
@@ -51,7 +51,7 @@ public class RPSAndStrikeStagesMenu extends TwoUsersChoicesActionMenu {
         return new RPSMenu(new RPSMenu.Settings.Builder()
                 .setTwoUsersChoicesActionMenuSettings(new TwoUsersChoicesActionMenu.Settings.Builder()
                         .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                                .setWaiter(getActionMenuSettings().waiter())
+                                .setRouter(getActionMenuSettings().router())
                                 .setTimeout(settings.rpsTimeout(), settings.rpsUnit())
                                 .build())
                         .setUsers(getTwoUsersChoicesActionMenuSettings().user1(), getTwoUsersChoicesActionMenuSettings().user2())
@@ -152,7 +152,7 @@ public class RPSAndStrikeStagesMenu extends TwoUsersChoicesActionMenu {
         StrikeStagesMenu strikeUnderlying = new StrikeStagesMenu(new StrikeStagesMenu.Settings.Builder()
                 .setTwoUsersChoicesActionMenuSettings(new TwoUsersChoicesActionMenu.Settings.Builder()
                         .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                                .setWaiter(getActionMenuSettings().waiter())
+                                .setRouter(getActionMenuSettings().router())
                                 .setTimeout(settings.strikeTimeout(), settings.strikeUnit())
                                 .build())
                         .setUsers(result.getFirstStriker(), result.getSecondStriker())
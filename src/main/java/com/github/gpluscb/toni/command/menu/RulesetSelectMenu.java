@@ -2,10 +2,10 @@ package com.github.gpluscb.toni.command.menu;
 
 import com.github.gpluscb.toni.menu.ActionMenu;
 import com.github.gpluscb.toni.menu.ConfirmableSelectionActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.smashset.Ruleset;
 import com.github.gpluscb.toni.util.MiscUtil;
 import com.github.gpluscb.toni.util.discord.EmbedUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.*;
@@ -200,11 +200,11 @@ public class RulesetSelectMenu extends ActionMenu {
         public static final Consumer<RulesetSelectTimeoutEvent> DEFAULT_ON_TIMEOUT = MiscUtil.emptyConsumer();
 
         @Nonnull
-        public static Settings getDefaultSettings(@Nonnull EventWaiter waiter, @Nullable Member member, @Nonnull User user, @Nonnull List<Ruleset> rulesets,
+        public static Settings getDefaultSettings(@Nonnull InteractionRouter router, @Nullable Member member, @Nonnull User user, @Nonnull List<Ruleset> rulesets,
                                                   @Nonnull BiConsumer<RulesetSelectMenu.RulesetSelectionInfo, ButtonInteractionEvent> afterRulesetSelect) {
             return new RulesetSelectMenu.Settings.Builder()
                     .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                            .setWaiter(waiter)
+                            .setRouter(router)
                             .setTimeout(15, TimeUnit.MINUTES)
                             .build())
                     .setUser(user.getIdLong())
@@ -1,6 +1,7 @@
 package com.github.gpluscb.toni.command.menu;
 
 import com.github.gpluscb.toni.menu.ActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.menu.TwoUsersChoicesActionMenu;
 import com.github.gpluscb.toni.smashset.Character;
 import com.github.gpluscb.toni.smashset.*;
@@ -8,15 +9,14 @@ import com.github.gpluscb.toni.util.Constants;
 import com.github.gpluscb.toni.util.MiscUtil;
 import com.github.gpluscb.toni.util.OneOfTwo;
 import com.github.gpluscb.toni.util.discord.EmbedUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
-import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.callbacks.IMessageEditCallback;
 import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import net.dv8tion.jda.api.utils.messages.MessageCreateData;
@@ -216,7 +216,7 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
         return new RPSAndStrikeStagesMenu(new RPSAndStrikeStagesMenu.Settings.Builder()
                 .setTwoUsersChoicesActionMenuSettings(new TwoUsersChoicesActionMenu.Settings.Builder()
                         .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                                .setWaiter(getActionMenuSettings().waiter())
+                                .setRouter(getActionMenuSettings().router())
                                 .setTimeout(rpsInfo.strikeFirstChoiceTimeout(), rpsInfo.unit())
                                 .build())
                         .setUsers(getTwoUsersChoicesActionMenuSettings().user1(), getTwoUsersChoicesActionMenuSettings().user2())
@@ -256,29 +256,29 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
     private BlindPickMenu createDoubleBlindMenu(@Nonnull MessageCreateData start) {
         return new BlindPickMenu(new BlindPickMenu.Settings.Builder()
                 .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                        .setWaiter(getActionMenuSettings().waiter())
+                        .setRouter(getActionMenuSettings().router())
                         .setTimeout(settings.doubleBlindTimeout(), settings.doubleBlindUnit())
                         .build())
-                .setWaiter(settings.waiter())
+                .setRouter(settings.router())
                 .addUsers(getTwoUsersChoicesActionMenuSettings().user1(), getTwoUsersChoicesActionMenuSettings().user2())
                 .setStart(start)
-                .setCharacters(settings.characters())
+                .setCharacterIndex(settings.characterIndex())
                 .setOnResult(this::onDoubleBlindResult)
                 .setOnTimeout(this::onDoubleBlindTimeout)
                 .build());
     }
 
     @Nonnull
-    private BlindPickMenu createCharPickMenu(@Nonnull MessageCreateData start, long user, long timeout, @Nonnull TimeUnit unit, @Nonnull BiConsumer<BlindPickMenu.BlindPickResult, ModalInteractionEvent> onResult, @Nonnull Consumer<BlindPickMenu.BlindPickTimeoutEvent> onTimeout) {
+    private BlindPickMenu createCharPickMenu(@Nonnull MessageCreateData start, long user, long timeout, @Nonnull TimeUnit unit, @Nonnull BiConsumer<BlindPickMenu.BlindPickResult, IMessageEditCallback> onResult, @Nonnull Consumer<BlindPickMenu.BlindPickTimeoutEvent> onTimeout) {
         return new BlindPickMenu(new BlindPickMenu.Settings.Builder()
                 .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                        .setWaiter(getActionMenuSettings().waiter())
+                        .setRouter(getActionMenuSettings().router())
                         .setTimeout(timeout, unit)
                         .build())
-                .setWaiter(settings.waiter())
+                .setRouter(settings.router())
                 .addUsers(user)
                 .setStart(start)
-                .setCharacters(settings.characters())
+                .setCharacterIndex(settings.characterIndex())
                 .setOnResult(onResult)
                 .setOnTimeout(onTimeout)
                 .build());
@@ -331,7 +331,7 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
         return new ReportGameMenu(new ReportGameMenu.Settings.Builder()
                 .setTwoUsersChoicesActionMenuSettings(new TwoUsersChoicesActionMenu.Settings.Builder()
                         .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                                .setWaiter(getActionMenuSettings().waiter())
+                                .setRouter(getActionMenuSettings().router())
                                 .setTimeout(settings.reportGameTimeout(), settings.reportGameUnit())
                                 .build())
                         .setUsers(user1, user2)
@@ -361,7 +361,7 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
         return new BanPickStagesMenu(new BanPickStagesMenu.Settings.Builder()
                 .setTwoUsersChoicesActionMenuSettings(new TwoUsersChoicesActionMenu.Settings.Builder()
                         .setActionMenuSettings(new ActionMenu.Settings.Builder()
-                                .setWaiter(getActionMenuSettings().waiter())
+                                .setRouter(getActionMenuSettings().router())
                                 .setTimeout(settings.banTimeout(), settings.banUnit())
                                 .build())
                         .setUsers(banningUser, pickingUser)
@@ -443,7 +443,10 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
                 .onU(inGame -> createReportGameMenu().displayReplying(event.getMessage()));
     }
 
-    private synchronized void onDoubleBlindResult(@Nonnull BlindPickMenu.BlindPickResult result, @Nonnull ModalInteractionEvent event) {
+    private synchronized void onDoubleBlindResult(@Nonnull BlindPickMenu.BlindPickResult result, @Nonnull IMessageEditCallback event) {
+        // The menu message is edited directly, the event might be from an ephemeral candidates selection
+        event.deferEdit().queue();
+
         // Will always be found
         Character user1Choice = result.getChoices().get(getTwoUsersChoicesActionMenuSettings().user1());
 
@@ -465,7 +468,7 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
 
         long messageId = result.getMessageId();
 
-        event.editMessageEmbeds(prepareEmbed("Double Blind Pick")
+        channel.editMessageEmbedsById(messageId, prepareEmbed("Double Blind Pick")
                         .setDescription(String.format("**%s** chose %s and **%s** chose %s.",
                                 settings.user1Display(),
                                 user1Choice.getDisplayName(),
@@ -631,7 +634,10 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
         }).onU(inGame -> createReportGameMenu().displayReplying(event.getMessage()));
     }
 
-    private synchronized void onWinnerCharPickResult(@Nonnull BlindPickMenu.BlindPickResult result, @Nonnull ModalInteractionEvent event) {
+    private synchronized void onWinnerCharPickResult(@Nonnull BlindPickMenu.BlindPickResult result, @Nonnull IMessageEditCallback event) {
+        // The menu message is edited directly, the event might be from an ephemeral candidates selection
+        event.deferEdit().queue();
+
         long user = result.getBlindPickMenuSettings().users().stream().findAny().orElseThrow();
         Character picked = result.getChoices().get(user);
 
@@ -648,7 +654,7 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
 
         long messageId = result.getMessageId();
 
-        event.editMessageEmbeds(prepareEmbed("Winner Character Pick")
+        channel.editMessageEmbedsById(messageId, prepareEmbed("Winner Character Pick")
                         .setDescription(String.format("**%s** picked %s.",
                                 displayFromUser(user),
                                 picked.getDisplayName()))
@@ -671,7 +677,10 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
         createLoserCharCounterpickMenu(start).displayReplying(channel, messageId);
     }
 
-    private synchronized void onLoserCharCounterpickResult(@Nonnull BlindPickMenu.BlindPickResult result, @Nonnull ModalInteractionEvent event) {
+    private synchronized void onLoserCharCounterpickResult(@Nonnull BlindPickMenu.BlindPickResult result, @Nonnull IMessageEditCallback event) {
+        // The menu message is edited directly, the event might be from an ephemeral candidates selection
+        event.deferEdit().queue();
+
         long user = result.getBlindPickMenuSettings().users().stream().findAny().orElseThrow();
         Character picked = result.getChoices().get(user);
 
@@ -690,7 +699,7 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
 
         long messageId = result.getMessageId();
 
-        event.editMessageEmbeds(prepareEmbed("Loser Character Counterpick")
+        channel.editMessageEmbedsById(messageId, prepareEmbed("Loser Character Counterpick")
                         .setDescription(String.format("**%s** counterpicked %s.",
                                 displayFromUser(user),
                                 picked.getDisplayName()))
@@ -967,8 +976,8 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
     }
 
     public record Settings(@Nonnull TwoUsersChoicesActionMenu.Settings twoUsersChoicesActionMenuSettings,
-                           @Nonnull EventWaiter waiter, @Nonnull Ruleset ruleset,
-                           @Nonnull List<Character> characters, int firstToWhatScore,
+                           @Nonnull InteractionRouter router, @Nonnull Ruleset ruleset,
+                           @Nonnull CharacterIndex characterIndex, int firstToWhatScore,
                            @Nullable RPSInfo rpsInfo,
                            @Nonnull Consumer<SmashSetStrikeTimeoutEvent> onStrikeTimeout,
                            long doubleBlindTimeout, @Nonnull TimeUnit doubleBlindUnit,
@@ -1034,12 +1043,12 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
             private TwoUsersChoicesActionMenu.Settings twoUsersChoicesActionMenuSettings;
 
             @Nullable
-            private EventWaiter waiter;
+            private InteractionRouter router;
 
             @Nullable
             private Ruleset ruleset;
             @Nullable
-            private List<Character> characters;
+            private CharacterIndex characterIndex;
             @Nullable
             private Integer firstToWhatScore;
 
@@ -1104,8 +1113,8 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
             }
 
             @Nonnull
-            public Builder setWaiter(@Nonnull EventWaiter waiter) {
-                this.waiter = waiter;
+            public Builder setRouter(@Nonnull InteractionRouter router) {
+                this.router = router;
                 return this;
             }
 
@@ -1122,16 +1131,11 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
             }
 
             @Nonnull
-            public Builder setCharacters(@Nonnull List<Character> characters) {
-                this.characters = characters;
+            public Builder setCharacterIndex(@Nonnull CharacterIndex characterIndex) {
+                this.characterIndex = characterIndex;
                 return this;
             }
 
-            @Nonnull
-            public Builder setCharacterTree(@Nonnull CharacterTree characterTree) {
-                return setCharacters(characterTree.getAllCharacters());
-            }
-
             @Nonnull
             public Builder setRpsInfo(@Nonnull RPSInfo rpsInfo) {
                 this.rpsInfo = rpsInfo;
@@ -1245,14 +1249,14 @@ public class SmashSetMenu extends TwoUsersChoicesActionMenu {
             public Settings build() {
                 if (twoUsersChoicesActionMenuSettings == null)
                     throw new IllegalStateException("TwoUsersChoicesActionMenuSettings must be set");
-                if (waiter == null) throw new IllegalStateException("ChannelWaiter must be set");
+                if (router == null) throw new IllegalStateException("Router must be set");
                 if (ruleset == null) throw new IllegalStateException("Ruleset must be set");
-                if (characters == null) throw new IllegalStateException("Characters must be set");
+                if (characterIndex == null) throw new IllegalStateException("CharacterIndex must be set");
                 if (firstToWhatScore == null) throw new IllegalStateException("FirstToWhatScore must be set");
                 if (user1Display == null || user2Display == null)
                     throw new IllegalStateException("UsersDisplay must be set");
 
-                return new Settings(twoUsersChoicesActionMenuSettings, waiter, ruleset, characters, firstToWhatScore,
+                return new Settings(twoUsersChoicesActionMenuSettings, router, ruleset, characterIndex, firstToWhatScore,
                         rpsInfo,
                         onStrikeTimeout,
                         doubleBlindTimeout, doubleBlindUnit, onDoubleBlindTimeout,
@@ -0,0 +1,268 @@
+package com.github.gpluscb.toni.command.menu;
+
+import com.github.gpluscb.toni.menu.ActionMenu;
+import com.github.gpluscb.toni.menu.InteractionRouter;
+import com.github.gpluscb.toni.smashset.Ruleset;
+import com.github.gpluscb.toni.smashset.Stage;
+import com.github.gpluscb.toni.util.MiscUtil;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.interactions.components.ActionRow;
+import net.dv8tion.jda.api.interactions.components.Component;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.requests.restaction.interactions.MessageEditCallbackAction;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static net.dv8tion.jda.api.interactions.components.buttons.Button.ID_MAX_LENGTH;
+import static net.dv8tion.jda.api.interactions.components.buttons.Button.LABEL_MAX_LENGTH;
+
+/**
+ * Stateless variant of {@link StrikeStagesMenu}.
+ * The whole state (ruleset, strikers, strikes so far, creation time) is encoded in the button ids as
+ * {@code strike:<ruleset id>:<user1>:<user2>:<struck stage ids>:<epoch second>:<stage id of the button>}, all numbers in base 36.
+ * So open menus take almost no memory, and they survive restarts. On the flip side there are no callbacks,
+ * and a timeout is only noticed once someone clicks an expired button.
+ */
+public class StatelessStrikeStagesMenu {
+    private static final Logger log = LogManager.getLogger(StatelessStrikeStagesMenu.class);
+
+    @Nonnull
+    public static final String PREFIX = "strike";
+    private static final int RADIX = Character.MAX_RADIX;
+    /**
+     * Same as {@link com.github.gpluscb.toni.menu.ActionMenu.Settings#DEFAULT_TIMEOUT}, counted from the last strike
+     */
+    private static final long TIMEOUT_SECONDS = TimeUnit.MINUTES.toSeconds(ActionMenu.Settings.DEFAULT_TIMEOUT);
+
+    @Nonnull
+    private final Map<Integer, Ruleset> rulesets;
+    /**
+     * Ids of messages we are currently editing. Clicks on those were made on the state being replaced.
+     */
+    @Nonnull
+    private final Set<Long> editing;
+
+    public StatelessStrikeStagesMenu(@Nonnull InteractionRouter router, @Nonnull List<Ruleset> rulesets) {
+        this.rulesets = rulesets.stream().collect(Collectors.toMap(Ruleset::rulesetId, Function.identity()));
+        editing = ConcurrentHashMap.newKeySet();
+
+        router.registerStatelessButtons(PREFIX, this::onButton);
+    }
+
+    /**
+     * @return false if the state of a strike procedure with this ruleset might not fit into a button id
+     */
+    public static boolean supports(@Nonnull Ruleset ruleset) {
+        if (ruleset.starterStrikePattern().length == 0) return false;
+
+        // Worst case: the largest ids, and every stage but one struck
+        List<Integer> strikes = ruleset.starters().stream()
+                .map(Stage::stageId)
+                .sorted(Comparator.comparingInt((Integer id) -> Integer.toString(id, RADIX).length()).reversed())
+                .limit(ruleset.starters().size() - 1L)
+                .toList();
+        int maxStageId = ruleset.starters().stream().mapToInt(Stage::stageId).max().orElse(0);
+
+        return new State(ruleset, Long.MAX_VALUE, Long.MAX_VALUE, strikes, Long.MAX_VALUE).encode(maxStageId).length() <= ID_MAX_LENGTH;
+    }
+
+    /**
+     * Randomization of the first striker is up to the caller.
+     *
+     * @throws IllegalArgumentException if the ruleset is not {@link #supports(Ruleset) supported}
+     */
+    @Nonnull
+    public MessageCreateData createStart(@Nonnull Ruleset ruleset, long user1, long user2) {
+        if (!supports(ruleset)) throw new IllegalArgumentException("Ruleset is not supported");
+
+        State state = new State(ruleset, user1, user2, Collections.emptyList(), Instant.now().getEpochSecond());
+        return new MessageCreateBuilder()
+                .applyData(state.createUpcomingStrikeMessage())
+                .setComponents(state.createActionRows())
+                .build();
+    }
+
+    private void onButton(@Nonnull ButtonInteractionEvent e) {
+        // Discord might send clicks on outdated versions of the message
+        String componentId = e.getComponentId();
+        if (e.getMessage().getButtons().stream().noneMatch(button -> componentId.equals(button.getId()))) {
+            replyOutdated(e);
+            return;
+        }
+
+        State state;
+        int stageId;
+        try {
+            String[] parts = componentId.split(":", -1);
+            if (parts.length != 7) throw new IllegalArgumentException("Wrong number of parts");
+
+            Ruleset ruleset = rulesets.get(Integer.parseInt(parts[1], RADIX));
+            if (ruleset == null) throw new IllegalArgumentException("Unknown ruleset");
+
+            long user1 = Long.parseLong(parts[2], RADIX);
+            long user2 = Long.parseLong(parts[3], RADIX);
+            List<Integer> strikes = parts[4].isEmpty() ? Collections.emptyList()
+                    : Arrays.stream(parts[4].split("\\.")).map(id -> Integer.parseInt(id, RADIX)).toList();
+            long createdEpochSecond = Long.parseLong(parts[5], RADIX);
+            stageId = Integer.parseInt(parts[6], RADIX);
+
+            state = new State(ruleset, user1, user2, strikes, createdEpochSecond);
+        } catch (IllegalArgumentException ex) {
+            log.warn("Malformed stateless strike button id: {}", componentId, ex);
+            e.reply("This menu seems to be broken. Please start a new one.").setEphemeral(true).queue();
+            return;
+        }
+
+        if (Instant.now().getEpochSecond() - state.createdEpochSecond() > TIMEOUT_SECONDS) {
+            long badUser = state.getCurrentStriker();
+            e.editMessage(String.format("%s, you didn't strike the stage in time.", MiscUtil.mentionUser(badUser)))
+                    .mentionUsers(badUser)
+                    .setComponents()
+                    .queue();
+            return;
+        }
+
+        if (e.getUser().getIdLong() != state.getCurrentStriker()) {
+            e.reply("It's not your turn to strike right now!").setEphemeral(true).queue();
+            return;
+        }
+
+        if (state.strikes().contains(stageId)) {
+            e.reply("That stage has already been struck. Please strike a different one.").setEphemeral(true).queue();
+            return;
+        }
+
+        // Two clicks on the same state could both pass the check above, only the first one may edit
+        long messageId = e.getMessageIdLong();
+        if (!editing.add(messageId)) {
+            replyOutdated(e);
+            return;
+        }
+
+        List<Integer> newStrikes = new ArrayList<>(state.strikes());
+        newStrikes.add(stageId);
+        State newState = new State(state.ruleset(), state.user1(), state.user2(), newStrikes, Instant.now().getEpochSecond());
+
+        MessageEditCallbackAction edit;
+        if (newState.isDone()) {
+            Stage resultingStage = newState.getRemainingStage();
+            edit = e.editMessage(String.format("You have struck to %s.", resultingStage.getDisplayName())).setComponents();
+        } else {
+            edit = e.editMessage(MessageEditData.fromCreateData(newState.createUpcomingStrikeMessage()))
+                    .setComponents(newState.createActionRows());
+        }
+
+        edit.queue(hook -> editing.remove(messageId), t -> {
+            editing.remove(messageId);
+            log.warn("Failed to edit stateless strike message", t);
+        });
+    }
+
+    private void replyOutdated(@Nonnull ButtonInteractionEvent e) {
+        e.reply("This menu has changed in the meantime. Please try again.").setEphemeral(true).queue();
+    }
+
+    private record State(@Nonnull Ruleset ruleset, long user1, long user2, @Nonnull List<Integer> strikes,
+                         long createdEpochSecond) {
+        /**
+         * @return the index of the current entry in the strike pattern, or the length of the pattern if we are done
+         */
+        private int getCurrentStrikeIdx() {
+            int[] pattern = ruleset.starterStrikePattern();
+            int strikesLeft = strikes.size();
+            for (int i = 0; i < pattern.length; i++) {
+                strikesLeft -= pattern[i];
+                if (strikesLeft < 0) return i;
+            }
+
+            return pattern.length;
+        }
+
+        private long getCurrentStriker() {
+            return getCurrentStrikeIdx() % 2 == 0 ? user1 : user2;
+        }
+
+        private int getStagesToStrike() {
+            int[] pattern = ruleset.starterStrikePattern();
+            int currentStrikeIdx = getCurrentStrikeIdx();
+
+            int strikesUntilDone = 0;
+            for (int i = 0; i <= currentStrikeIdx && i < pattern.length; i++) strikesUntilDone += pattern[i];
+
+            return strikesUntilDone - strikes.size();
+        }
+
+        private boolean isDone() {
+            return getCurrentStrikeIdx() == ruleset.starterStrikePattern().length;
+        }
+
+        @Nonnull
+        private Stage getRemainingStage() {
+            //noinspection OptionalGetWithoutIsPresent
+            return ruleset.starters().stream()
+                    .filter(stage -> !strikes.contains(stage.stageId()))
+                    .findAny()
+                    .get();
+        }
+
+        @Nonnull
+        private MessageCreateData createUpcomingStrikeMessage() {
+            long currentStriker = getCurrentStriker();
+            int stagesToStrike = getStagesToStrike();
+
+            String content = strikes.isEmpty()
+                    ? String.format("Alright, time to strike stages. %s, you go first. Please strike %d stage%s from the list below.",
+                    MiscUtil.mentionUser(currentStriker),
+                    stagesToStrike,
+                    stagesToStrike > 1 ? "s" : "")
+                    : String.format("%s, please strike %d stage%s from the list below.",
+                    MiscUtil.mentionUser(currentStriker),
+                    stagesToStrike,
+                    stagesToStrike > 1 ? "s" : "");
+
+            return new MessageCreateBuilder()
+                    .setContent(content)
+                    .mentionUsers(currentStriker)
+                    .build();
+        }
+
+        @Nonnull
+        private List<ActionRow> createActionRows() {
+            List<Button> buttons = ruleset.starters().stream()
+                    .map(stage -> Button.secondary(encode(stage.stageId()), StringUtils.abbreviate(stage.name(), LABEL_MAX_LENGTH))
+                            .withEmoji(Emoji.fromCustom("a", stage.stageEmoteId(), false)) // a as placeholder because it may not be empty
+                            .withDisabled(strikes.contains(stage.stageId())))
+                    .toList();
+
+            // Multiple ActionRows in case of > 5 buttons
+            return MiscUtil.splitList(buttons, Component.Type.BUTTON.getMaxPerRow()).stream()
+                    .map(ActionRow::of)
+                    .toList();
+        }
+
+        @Nonnull
+        private String encode(int buttonStageId) {
+            return String.join(":",
+                    PREFIX,
+                    Integer.toString(ruleset.rulesetId(), RADIX),
+                    Long.toString(user1, RADIX),
+                    Long.toString(user2, RADIX),
+                    strikes.stream().map(id -> Integer.toString(id, RADIX)).collect(Collectors.joining(".")),
+                    Long.toString(createdEpochSecond, RADIX),
+                    Integer.toString(buttonStageId, RADIX));
+        }
+    }
+}
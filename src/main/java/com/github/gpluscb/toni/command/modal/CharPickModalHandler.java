@@ -1,7 +1,7 @@
 package com.github.gpluscb.toni.command.modal;
 
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.util.discord.WaitableModalHandler;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
 import net.dv8tion.jda.api.interactions.components.ActionRow;
 import net.dv8tion.jda.api.interactions.modals.Modal;
@@ -11,8 +11,8 @@ import net.dv8tion.jda.api.interactions.components.text.TextInputStyle;
 import javax.annotation.Nonnull;
 
 public class CharPickModalHandler extends WaitableModalHandler<String> {
-    public CharPickModalHandler(@Nonnull EventWaiter waiter) {
-        super(waiter);
+    public CharPickModalHandler(@Nonnull InteractionRouter router) {
+        super(router);
     }
 
     @Nonnull
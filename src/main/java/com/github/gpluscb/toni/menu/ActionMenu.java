@@ -1,6 +1,5 @@
 package com.github.gpluscb.toni.menu;
 
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
@@ -125,21 +124,21 @@ public abstract class ActionMenu {
         }
     }
 
-    public record Settings(@Nonnull EventWaiter waiter, long timeout, @Nonnull TimeUnit unit) {
+    public record Settings(@Nonnull InteractionRouter router, long timeout, @Nonnull TimeUnit unit) {
         public static final long DEFAULT_TIMEOUT = 20;
         @Nonnull
         public static final TimeUnit DEFAULT_UNIT = TimeUnit.MINUTES;
 
         public static class Builder {
             @Nullable
-            private EventWaiter waiter;
+            private InteractionRouter router;
             private long timeout = DEFAULT_TIMEOUT;
             @Nonnull
             private TimeUnit unit = DEFAULT_UNIT;
 
             @Nonnull
-            public Builder setWaiter(@Nullable EventWaiter waiter) {
-                this.waiter = waiter;
+            public Builder setRouter(@Nullable InteractionRouter router) {
+                this.router = router;
                 return this;
             }
 
@@ -152,8 +151,8 @@ public abstract class ActionMenu {
 
             @Nonnull
             public Settings build() {
-                if (waiter == null) throw new IllegalStateException("Waiter must be set");
-                return new Settings(waiter, timeout, unit);
+                if (router == null) throw new IllegalStateException("Router must be set");
+                return new Settings(router, timeout, unit);
             }
         }
     }
@@ -1,7 +1,6 @@
 package com.github.gpluscb.toni.menu;
 
 import com.github.gpluscb.toni.util.Constants;
-import com.github.gpluscb.toni.util.FailLogger;
 import com.github.gpluscb.toni.util.MiscUtil;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Message;
@@ -117,22 +116,16 @@ public class ButtonActionMenu extends ActionMenu {
     }
 
     private void awaitEvents() {
-        getActionMenuSettings().waiter().waitForEvent(
-                ButtonInteractionEvent.class,
+        getActionMenuSettings().router().awaitButtons(
+                getMessageId(),
                 e -> {
-                    if (checkButtonClick(e, getMessageId())) {
-                        // Stop awaiting on CANCEL
-                        return handleButtonClick(e) == MenuAction.CANCEL;
-                    }
-                    // Return false to endlessly keep awaiting until timeout
-                    return false;
+                    if (checkButtonClick(e)) return handleButtonClick(e);
+                    // Keep awaiting until timeout
+                    return MenuAction.CONTINUE;
                 },
-                MiscUtil.emptyConsumer(),
                 getActionMenuSettings().timeout(),
                 getActionMenuSettings().unit(),
-                FailLogger.logFail(() -> { // This is the only thing that will be executed on not JDA-WS thread. So exceptions may get swallowed
-                    settings.onTimeout().accept(new ButtonActionMenuTimeoutEvent());
-                })
+                () -> settings.onTimeout().accept(new ButtonActionMenuTimeoutEvent())
         );
     }
 
@@ -141,9 +134,7 @@ public class ButtonActionMenu extends ActionMenu {
         return users.isEmpty() || users.contains(user);
     }
 
-    private boolean checkButtonClick(@Nonnull ButtonInteractionEvent e, long messageId) {
-        if (e.getMessageIdLong() != messageId) return false;
-
+    private boolean checkButtonClick(@Nonnull ButtonInteractionEvent e) {
         String buttonId = e.getComponentId();
         Button deletionButton = settings.deletionButton();
 
@@ -0,0 +1,240 @@
+package com.github.gpluscb.toni.menu;
+
+import com.github.gpluscb.toni.util.FailLogger;
+import com.github.gpluscb.toni.util.TimingWheel;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.StringSelectInteractionEvent;
+import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Replacement for the linear predicate scan of Chewtils' EventWaiter.
+ * Handlers are indexed by message id, so an incoming interaction only ever reaches the handlers registered for its own message.
+ * Modal submissions are passed on to the {@link ModalRegistry}.
+ * <p>
+ * Buttons of stateless menus carry their whole state in their custom id, which is prefixed with {@code <prefix>:}.
+ * Clicks on messages without registered handlers are passed on to the stateless handler for that prefix, if there is one.
+ * <p>
+ * Handlers are run on the JDA thread the event was received on, timeouts are run on the callback pool of the given wheel.
+ */
+public class InteractionRouter implements EventListener {
+    private static final Logger log = LogManager.getLogger(InteractionRouter.class);
+
+    @Nonnull
+    private final TimingWheel timeoutWheel;
+
+    @Nonnull
+    private final Map<Long, List<Registration<ButtonInteractionEvent>>> buttonHandlers;
+    @Nonnull
+    private final Map<Long, List<Registration<StringSelectInteractionEvent>>> selectionHandlers;
+    @Nonnull
+    private final Map<Long, List<Registration<MessageReactionAddEvent>>> reactionHandlers;
+    @Nonnull
+    private final Map<String, Consumer<ButtonInteractionEvent>> statelessButtonHandlers;
+    @Nonnull
+    private final ModalRegistry modalRegistry;
+
+    public InteractionRouter(@Nonnull TimingWheel timeoutWheel, @Nonnull ModalRegistry modalRegistry) {
+        this.timeoutWheel = timeoutWheel;
+        this.modalRegistry = modalRegistry;
+
+        buttonHandlers = new ConcurrentHashMap<>();
+        selectionHandlers = new ConcurrentHashMap<>();
+        reactionHandlers = new ConcurrentHashMap<>();
+        statelessButtonHandlers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param handler   is called for every button click on that message until it returns {@link ActionMenu.MenuAction#CANCEL}
+     * @param timeout   if this is not positive, the handler never times out
+     * @param onTimeout is not called if the handler was cancelled before
+     */
+    @Nonnull
+    public Registration<ButtonInteractionEvent> awaitButtons(long messageId, @Nonnull Function<ButtonInteractionEvent, ActionMenu.MenuAction> handler,
+                                                             long timeout, @Nonnull TimeUnit unit, @Nonnull Runnable onTimeout) {
+        return register(buttonHandlers, messageId, handler, timeout, unit, onTimeout);
+    }
+
+    /**
+     * @see #awaitButtons(long, Function, long, TimeUnit, Runnable)
+     */
+    @Nonnull
+    public Registration<StringSelectInteractionEvent> awaitSelections(long messageId, @Nonnull Function<StringSelectInteractionEvent, ActionMenu.MenuAction> handler,
+                                                                      long timeout, @Nonnull TimeUnit unit, @Nonnull Runnable onTimeout) {
+        return register(selectionHandlers, messageId, handler, timeout, unit, onTimeout);
+    }
+
+    /**
+     * @see #awaitButtons(long, Function, long, TimeUnit, Runnable)
+     */
+    @Nonnull
+    public Registration<MessageReactionAddEvent> awaitReactions(long messageId, @Nonnull Function<MessageReactionAddEvent, ActionMenu.MenuAction> handler,
+                                                                long timeout, @Nonnull TimeUnit unit, @Nonnull Runnable onTimeout) {
+        return register(reactionHandlers, messageId, handler, timeout, unit, onTimeout);
+    }
+
+    /**
+     * Registers a handler for all buttons with custom ids of the form {@code <prefix>:<state>} on messages with no other handlers.
+     * Those handlers live forever and never time out.
+     *
+     * @throws IllegalStateException if a handler for that prefix is already registered
+     */
+    public void registerStatelessButtons(@Nonnull String prefix, @Nonnull Consumer<ButtonInteractionEvent> handler) {
+        if (statelessButtonHandlers.putIfAbsent(prefix, handler) != null)
+            throw new IllegalStateException(String.format("Stateless handler for prefix %s is already registered", prefix));
+    }
+
+    /**
+     * @see ModalRegistry#register(String, Consumer, long, TimeUnit)
+     */
+    public void awaitModal(@Nonnull String modalId, @Nonnull Consumer<ModalInteractionEvent> handler, long timeout, @Nonnull TimeUnit unit) {
+        modalRegistry.register(modalId, handler, timeout, unit);
+    }
+
+    @Nonnull
+    private <K, T extends GenericEvent> Registration<T> register(@Nonnull Map<K, List<Registration<T>>> index, @Nonnull K key,
+                                                                 @Nonnull Function<T, ActionMenu.MenuAction> handler,
+                                                                 long timeout, @Nonnull TimeUnit unit, @Nonnull Runnable onTimeout) {
+        Registration<T> registration = new Registration<>(handler, self -> index.computeIfPresent(key, (k, registrations) -> {
+            List<Registration<T>> newRegistrations = registrations.stream().filter(r -> r != self).toList();
+            return newRegistrations.isEmpty() ? null : newRegistrations;
+        }));
+
+        index.compute(key, (k, registrations) -> {
+            List<Registration<T>> newRegistrations = registrations == null ? new ArrayList<>(1) : new ArrayList<>(registrations);
+            newRegistrations.add(registration);
+            return List.copyOf(newRegistrations);
+        });
+
+        if (timeout > 0) {
+            // This might swallow exceptions otherwise
+            Runnable timeoutAction = FailLogger.logFail(() -> {
+                if (registration.remove()) onTimeout.run();
+            });
+
+            registration.setTimeout(timeoutWheel.schedule(timeoutAction, timeout, unit));
+        }
+
+        return registration;
+    }
+
+    @Override
+    public void onEvent(@Nonnull GenericEvent event) {
+        if (event instanceof ButtonInteractionEvent e) {
+            if (!route(buttonHandlers, e.getMessageIdLong(), e)) routeStateless(e);
+        }
+        else if (event instanceof StringSelectInteractionEvent e) route(selectionHandlers, e.getMessageIdLong(), e);
+        else if (event instanceof MessageReactionAddEvent e) route(reactionHandlers, e.getMessageIdLong(), e);
+        else if (event instanceof ModalInteractionEvent e) modalRegistry.handle(e);
+    }
+
+    /**
+     * @return false if there were no handlers registered for that key
+     */
+    private <K, T extends GenericEvent> boolean route(@Nonnull Map<K, List<Registration<T>>> index, @Nonnull K key, @Nonnull T event) {
+        // The lists are immutable, so we can iterate while handlers register or cancel
+        List<Registration<T>> registrations = index.get(key);
+        if (registrations == null) return false;
+
+        for (Registration<T> registration : registrations) {
+            if (registration.isDone()) continue;
+
+            try {
+                if (registration.handler.apply(event) == ActionMenu.MenuAction.CANCEL) registration.cancel();
+            } catch (Exception e) {
+                log.error(String.format("Handler had uncaught exception, event: %s", event), e);
+            }
+        }
+
+        return true;
+    }
+
+    private void routeStateless(@Nonnull ButtonInteractionEvent event) {
+        String componentId = event.getComponentId();
+        int separatorIdx = componentId.indexOf(':');
+        if (separatorIdx == -1) return;
+
+        Consumer<ButtonInteractionEvent> handler = statelessButtonHandlers.get(componentId.substring(0, separatorIdx));
+        if (handler == null) return;
+
+        try {
+            handler.accept(event);
+        } catch (Exception e) {
+            log.error(String.format("Stateless handler had uncaught exception, event: %s", event), e);
+        }
+    }
+
+    /**
+     * @return the number of messages that currently have handlers registered
+     */
+    public int getRegisteredCount() {
+        return buttonHandlers.size() + selectionHandlers.size() + reactionHandlers.size();
+    }
+
+    @Nonnull
+    public ModalRegistry getModalRegistry() {
+        return modalRegistry;
+    }
+
+    public static class Registration<T extends GenericEvent> {
+        @Nonnull
+        private final Function<T, ActionMenu.MenuAction> handler;
+        @Nonnull
+        private final Consumer<Registration<T>> unregister;
+        @Nonnull
+        private final AtomicBoolean done;
+        @Nullable
+        private volatile TimingWheel.Timeout timeout;
+
+        private Registration(@Nonnull Function<T, ActionMenu.MenuAction> handler, @Nonnull Consumer<Registration<T>> unregister) {
+            this.handler = handler;
+            this.unregister = unregister;
+            done = new AtomicBoolean(false);
+        }
+
+        private void setTimeout(@Nonnull TimingWheel.Timeout timeout) {
+            this.timeout = timeout;
+            // We might have been cancelled in the meantime
+            if (done.get()) timeout.cancel();
+        }
+
+        /**
+         * Removes the handler without calling onTimeout. Does nothing if the handler was already removed.
+         */
+        public void cancel() {
+            if (!remove()) return;
+
+            TimingWheel.Timeout timeout = this.timeout;
+            if (timeout != null) timeout.cancel();
+        }
+
+        /**
+         * @return false if this was already removed
+         */
+        private boolean remove() {
+            if (done.getAndSet(true)) return false;
+
+            unregister.accept(this);
+            return true;
+        }
+
+        public boolean isDone() {
+            return done.get();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.gpluscb.toni.menu;
+
+import com.github.gpluscb.toni.util.TimingWheel;
+import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One-shot handlers for modal submissions, by modal id.
+ * Users can just dismiss a modal, so every registration expires, and if there are too many live registrations
+ * the oldest ones are evicted.
+ */
+public class ModalRegistry {
+    private static final Logger log = LogManager.getLogger(ModalRegistry.class);
+
+    @Nonnull
+    private final TimingWheel timeoutWheel;
+    private final int maxSize;
+
+    /**
+     * Insertion ordered, so the first entry is always the oldest one. Guarded by itself.
+     */
+    @Nonnull
+    private final LinkedHashMap<String, Entry> entries;
+
+    @Nonnull
+    private final AtomicLong expiredCount;
+    @Nonnull
+    private final AtomicLong evictedCount;
+
+    public ModalRegistry(@Nonnull TimingWheel timeoutWheel, int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("Max size must be positive");
+
+        this.timeoutWheel = timeoutWheel;
+        this.maxSize = maxSize;
+
+        entries = new LinkedHashMap<>();
+        expiredCount = new AtomicLong(0);
+        evictedCount = new AtomicLong(0);
+    }
+
+    /**
+     * Replaces any handler already registered for this id.
+     *
+     * @param handler is called at most once, and not at all if the registration expired or was evicted first
+     */
+    public void register(@Nonnull String modalId, @Nonnull Consumer<ModalInteractionEvent> handler, long timeout, @Nonnull TimeUnit unit) {
+        Entry entry = new Entry(handler);
+
+        synchronized (entries) {
+            Entry old = entries.put(modalId, entry);
+            if (old != null) old.cancelTimeout();
+
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxSize) {
+                Entry eldest = it.next();
+                it.remove();
+                eldest.cancelTimeout();
+                evictedCount.incrementAndGet();
+            }
+        }
+
+        entry.setTimeout(timeoutWheel.schedule(() -> {
+            boolean removed;
+            synchronized (entries) {
+                removed = entries.remove(modalId, entry);
+            }
+
+            if (removed) expiredCount.incrementAndGet();
+        }, timeout, unit));
+    }
+
+    /**
+     * Removes and runs the handler registered for the modal of this event, if there is one.
+     */
+    public void handle(@Nonnull ModalInteractionEvent event) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(event.getModalId());
+        }
+
+        if (entry == null) return;
+        entry.cancelTimeout();
+
+        try {
+            entry.handler.accept(event);
+        } catch (Exception e) {
+            log.error(String.format("Modal handler had uncaught exception, event: %s", event), e);
+        }
+    }
+
+    public int getLiveCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    private static class Entry {
+        @Nonnull
+        private final Consumer<ModalInteractionEvent> handler;
+        @Nullable
+        private volatile TimingWheel.Timeout timeout;
+        private volatile boolean done;
+
+        private Entry(@Nonnull Consumer<ModalInteractionEvent> handler) {
+            this.handler = handler;
+            done = false;
+        }
+
+        private void setTimeout(@Nonnull TimingWheel.Timeout timeout) {
+            this.timeout = timeout;
+            // We might have been removed in the meantime
+            if (done) timeout.cancel();
+        }
+
+        private void cancelTimeout() {
+            done = true;
+
+            TimingWheel.Timeout timeout = this.timeout;
+            if (timeout != null) timeout.cancel();
+        }
+    }
+}
@@ -1,10 +1,6 @@
 package com.github.gpluscb.toni.menu;
 
 import com.github.gpluscb.toni.util.Constants;
-import com.github.gpluscb.toni.util.FailLogger;
-import com.github.gpluscb.toni.util.MiscUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
-import com.jagrosh.jdautilities.menu.Menu;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Message;
@@ -29,12 +25,14 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
-/**
- * We override the validation to only allow specific users in users.
- */
-public class ReactionActionMenu extends Menu {
+public class ReactionActionMenu {
     private static final Logger log = LogManager.getLogger(ReactionActionMenu.class);
 
+    @Nonnull
+    private final InteractionRouter router;
+    private final long timeout;
+    @Nonnull
+    private final TimeUnit unit;
     @Nonnull
     private final Set<Long> users;
 
@@ -52,8 +50,10 @@ public class ReactionActionMenu extends Menu {
     @Nonnull
     private final BiConsumer<MessageChannel, Long> timeoutAction;
 
-    public ReactionActionMenu(@Nonnull EventWaiter waiter, @Nonnull Set<Long> users, long timeout, @Nonnull TimeUnit unit, @Nonnull Map<Emoji, Function<MessageReactionAddEvent, MessageEditData>> buttonActions, @Nonnull MessageCreateData start, @Nullable Emoji deletionButton, @Nonnull BiConsumer<MessageChannel, Long> timeoutAction) {
-        super(waiter, Collections.emptySet(), Collections.emptySet(), timeout, unit);
+    public ReactionActionMenu(@Nonnull InteractionRouter router, @Nonnull Set<Long> users, long timeout, @Nonnull TimeUnit unit, @Nonnull Map<Emoji, Function<MessageReactionAddEvent, MessageEditData>> buttonActions, @Nonnull MessageCreateData start, @Nullable Emoji deletionButton, @Nonnull BiConsumer<MessageChannel, Long> timeoutAction) {
+        this.router = router;
+        this.timeout = timeout;
+        this.unit = unit;
         this.users = users;
         this.buttonActions = buttonActions;
         this.start = start;
@@ -62,7 +62,6 @@ public class ReactionActionMenu extends Menu {
         this.timeoutAction = timeoutAction;
     }
 
-    @Override
     public void display(@Nonnull MessageChannel channel) {
         channel.sendMessage(start).queue(this::init);
     }
@@ -94,7 +93,6 @@ public class ReactionActionMenu extends Menu {
             channel.sendMessage(start).queue(this::init);
     }
 
-    @Override
     public void display(@Nonnull Message message) {
         message.editMessage(MessageEditData.fromCreateData(start)).queue(this::init);
     }
@@ -115,22 +113,18 @@ public class ReactionActionMenu extends Menu {
         long messageId = message.getIdLong();
         long channelId = message.getChannel().getIdLong();
 
-        waiter.waitForEvent(MessageReactionAddEvent.class,
+        router.awaitReactions(messageId,
                 e -> {
-                    if (checkReaction(e, messageId)) {
-                        // Stop awaiting on CANCEL
-                        return handleMessageReactionAdd(e) == ActionMenu.MenuAction.CANCEL;
-                    }
-                    // Return false to endlessly keep awaiting until timeout
-                    return false;
+                    if (checkReaction(e)) return handleMessageReactionAdd(e);
+                    // Keep awaiting until timeout
+                    return ActionMenu.MenuAction.CONTINUE;
                 },
-                MiscUtil.emptyConsumer(),
-                timeout, unit, FailLogger.logFail(() -> { // This is the only thing that will be executed on not JDA-WS thread. So exceptions may get swallowed
+                timeout, unit, () -> {
                     MessageChannel channel = jda.getChannelById(MessageChannel.class, channelId);
 
                     timeoutAction.accept(channel, messageId);
                     if (channel == null) log.warn("MessageChannel for onTimeout not in cache for onTimeout");
-                }));
+                });
     }
 
     private boolean isValidUser(long user) {
@@ -139,8 +133,7 @@ public class ReactionActionMenu extends Menu {
         return botIdLong != null && botIdLong != user && (users.isEmpty() || users.contains(user));
     }
 
-    private boolean checkReaction(@Nonnull MessageReactionAddEvent e, long messageId) {
-        if (e.getMessageIdLong() != messageId) return false;
+    private boolean checkReaction(@Nonnull MessageReactionAddEvent e) {
         if (!isValidUser(e.getUserIdLong())) return false;
 
         Emoji reaction = e.getEmoji();
@@ -170,7 +163,12 @@ public class ReactionActionMenu extends Menu {
         return ActionMenu.MenuAction.CONTINUE;
     }
 
-    public static class Builder extends Menu.Builder<Builder, ReactionActionMenu> {
+    public static class Builder {
+        @Nullable
+        private InteractionRouter router;
+        private long timeout;
+        @Nonnull
+        private TimeUnit unit;
         @Nonnull
         private final Set<Long> users;
         @Nonnull
@@ -189,12 +187,24 @@ public class ReactionActionMenu extends Menu {
             users = new HashSet<>();
             buttonActions = new LinkedHashMap<>(); // Preserve order
             deletionButton = Emoji.fromUnicode(Constants.CROSS_MARK);
-            setTimeout(20, TimeUnit.MINUTES);
+            timeout = 20;
+            unit = TimeUnit.MINUTES;
+        }
+
+        @Nonnull
+        public Builder setRouter(@Nullable InteractionRouter router) {
+            this.router = router;
+            return this;
+        }
+
+        @Nonnull
+        public Builder setTimeout(long timeout, @Nonnull TimeUnit unit) {
+            this.timeout = timeout;
+            this.unit = unit;
+            return this;
         }
 
         /**
-         * USE THIS METHOD INSTEAD
-         * <p>
          * If the user list ends up empty, everyone can use it
          */
         @Nonnull
@@ -242,15 +252,12 @@ public class ReactionActionMenu extends Menu {
         }
 
         /**
-         * @throws IllegalStateException if waiter or start is not set, or if super.users contains stuff to prevent accidents
+         * @throws IllegalStateException if router or start is not set
          */
         @Nonnull
-        @Override
         public synchronized ReactionActionMenu build() {
-            if (waiter == null) throw new IllegalStateException("Waiter must be set");
+            if (router == null) throw new IllegalStateException("Router must be set");
             if (start == null) throw new IllegalStateException("Start must be set");
-            if (!super.users.isEmpty())
-                throw new IllegalStateException("You likely tried to use addUsers(User...). Use addUsers(Long...) instead.");
 
             if (timeoutAction == null) {
                 timeoutAction = (channel, id) -> {
@@ -265,7 +272,7 @@ public class ReactionActionMenu extends Menu {
                 };
             }
 
-            return new ReactionActionMenu(waiter, users, timeout, unit, buttonActions, start, deletionButton, timeoutAction);
+            return new ReactionActionMenu(router, users, timeout, unit, buttonActions, start, deletionButton, timeoutAction);
         }
     }
 }
@@ -1,6 +1,5 @@
 package com.github.gpluscb.toni.menu;
 
-import com.github.gpluscb.toni.util.FailLogger;
 import com.github.gpluscb.toni.util.MiscUtil;
 import com.github.gpluscb.toni.util.PairNonnull;
 import net.dv8tion.jda.api.Permission;
@@ -104,26 +103,21 @@ public class SelectionActionMenu extends ActionMenu {
     }
 
     private void awaitEvents() {
-        getActionMenuSettings().waiter().waitForEvent(StringSelectInteractionEvent.class,
+        getActionMenuSettings().router().awaitSelections(
+                getMessageId(),
                 e -> {
-                    if (checkSelection(e, getMessageId())) {
-                        // Stop awaiting on CANCEL
-                        return handleSelection(e) == ActionMenu.MenuAction.CANCEL;
-                    }
-                    // Return false to endlessly keep awaiting until timeout
-                    return false;
+                    if (checkSelection(e)) return handleSelection(e);
+                    // Keep awaiting until timeout
+                    return MenuAction.CONTINUE;
                 },
-                MiscUtil.emptyConsumer(),
-                getActionMenuSettings().timeout(), getActionMenuSettings().unit(), FailLogger.logFail(() -> { // This is the only thing that will be executed on not JDA-WS thread. So exceptions may get swallowed
-                    settings.onTimeout().accept(new SelectionMenuTimeoutEvent());
-                }));
+                getActionMenuSettings().timeout(),
+                getActionMenuSettings().unit(),
+                () -> settings.onTimeout().accept(new SelectionMenuTimeoutEvent())
+        );
     }
 
-    private boolean checkSelection(@Nonnull StringSelectInteractionEvent e, long messageId) {
-        if (e.getMessageIdLong() != messageId
-                || !e.getComponentId().equals(settings.id())) {
-            return false;
-        }
+    private boolean checkSelection(@Nonnull StringSelectInteractionEvent e) {
+        if (!e.getComponentId().equals(settings.id())) return false;
 
         if (!isValidUser(e.getUser().getIdLong())) {
             e.reply("You cannot use this interaction.").setEphemeral(true).queue();
@@ -1,5 +1,6 @@
 package com.github.gpluscb.toni.smashdata;
 
+import com.github.gpluscb.toni.util.ConcurrencyLimiter;
 import com.google.gson.*;
 
 import javax.annotation.Nonnull;
@@ -17,17 +18,25 @@ public class SmashdataManager {
     private Map<String, Integer> pgru;
     @Nonnull
     private final Gson gson;
+    @Nonnull
+    private final ConcurrencyLimiter limiter;
 
     public SmashdataManager(@Nonnull String dbLocation, @Nonnull Gson gson) throws SQLException {
         this.gson = gson;
+        // There is only one connection, sqlite-jdbc would serialize access in synchronized blocks anyway
+        limiter = new ConcurrencyLimiter(1);
 
         connection = DriverManager.getConnection("jdbc:sqlite:" + dbLocation);
         pgru = loadPgru();
     }
 
-    public synchronized void updateDb(@Nonnull String dbLocation) throws SQLException {
-        connection = DriverManager.getConnection("jdbc:sqlite:" + dbLocation);
-        pgru = loadPgru();
+    public void updateDb(@Nonnull String dbLocation) throws SQLException {
+        // No queries may run on the old connection while we swap
+        limiter.call(() -> {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + dbLocation);
+            pgru = loadPgru();
+            return null;
+        });
     }
 
     private Map<String, Integer> loadPgru() throws SQLException {
@@ -50,51 +59,53 @@ public class SmashdataManager {
     }
 
     public List<PlayerData> loadSmashdataByTag(@Nonnull String requestedTag) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement("SELECT player_id, tag, prefixes, characters, country, state, region, social FROM players WHERE UPPER(tag) = ?");
-        statement.setQueryTimeout(10);
+        return limiter.call(() -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT player_id, tag, prefixes, characters, country, state, region, social FROM players WHERE UPPER(tag) = ?");
+            statement.setQueryTimeout(10);
 
-        statement.setString(1, requestedTag.toUpperCase());
+            statement.setString(1, requestedTag.toUpperCase());
 
-        List<PlayerData> results = new ArrayList<>();
+            List<PlayerData> results = new ArrayList<>();
 
-        ResultSet rs = statement.executeQuery();
-        while (rs.next()) {
-            String id = rs.getString("player_id");
-            String tag = rs.getString("tag");
-            String prefixesRaw = rs.getString("prefixes");
-            String charactersRaw = rs.getString("characters");
-            String country = rs.getString("country");
-            String state = rs.getString("state");
-            String region = rs.getString("region");
-            String socialRaw = rs.getString("social");
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                String id = rs.getString("player_id");
+                String tag = rs.getString("tag");
+                String prefixesRaw = rs.getString("prefixes");
+                String charactersRaw = rs.getString("characters");
+                String country = rs.getString("country");
+                String state = rs.getString("state");
+                String region = rs.getString("region");
+                String socialRaw = rs.getString("social");
 
-            List<String> prefixes = new ArrayList<>();
+                List<String> prefixes = new ArrayList<>();
 
-            JsonArray prefixesJson = prefixesRaw == null || prefixesRaw.isEmpty() || charactersRaw.equals("\"\"") ? null : JsonParser.parseString(prefixesRaw).getAsJsonArray();
-            if (prefixesJson != null)
-                for (JsonElement element : prefixesJson)
-                    prefixes.add(element.getAsString());
+                JsonArray prefixesJson = prefixesRaw == null || prefixesRaw.isEmpty() || charactersRaw.equals("\"\"") ? null : JsonParser.parseString(prefixesRaw).getAsJsonArray();
+                if (prefixesJson != null)
+                    for (JsonElement element : prefixesJson)
+                        prefixes.add(element.getAsString());
 
-            // WTF why is there just "\"\"" in the dataset for people with no character data instead of null or an empty string????? Not my dataset btw...
-            JsonObject charactersJson = charactersRaw == null || charactersRaw.isEmpty() || charactersRaw.equals("\"\"") ? null : JsonParser.parseString(charactersRaw).getAsJsonObject();
+                // WTF why is there just "\"\"" in the dataset for people with no character data instead of null or an empty string????? Not my dataset btw...
+                JsonObject charactersJson = charactersRaw == null || charactersRaw.isEmpty() || charactersRaw.equals("\"\"") ? null : JsonParser.parseString(charactersRaw).getAsJsonObject();
 
-            Map<String, Integer> characters = new HashMap<>();
+                Map<String, Integer> characters = new HashMap<>();
 
-            if (charactersJson != null)
-                for (Map.Entry<String, JsonElement> entry : charactersJson.entrySet())
-                    characters.put(entry.getKey(), entry.getValue().getAsInt());
+                if (charactersJson != null)
+                    for (Map.Entry<String, JsonElement> entry : charactersJson.entrySet())
+                        characters.put(entry.getKey(), entry.getValue().getAsInt());
 
-            Social social = gson.fromJson(socialRaw, Social.class);
+                Social social = gson.fromJson(socialRaw, Social.class);
 
-            Integer ranking = pgru.get(id);
+                Integer ranking = pgru.get(id);
 
-            PlayerData data = new PlayerData(id, tag, prefixes, social, country, state, region, characters, ranking);
-            results.add(data);
-        }
+                PlayerData data = new PlayerData(id, tag, prefixes, social, country, state, region, characters, ranking);
+                results.add(data);
+            }
 
-        statement.close();
+            statement.close();
 
-        return results;
+            return results;
+        });
     }
 
     public void shutdown() throws SQLException {
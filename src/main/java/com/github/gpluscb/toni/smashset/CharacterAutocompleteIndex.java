@@ -0,0 +1,157 @@
+package com.github.gpluscb.toni.smashset;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable autocomplete index over character names, built once.
+ * Every trie node stores its precomputed results, so a lookup is a walk down the trie, and nothing is scanned.
+ * <p>
+ * Results are distinct characters in the order they were given, each with its first (most "proper") matching name.
+ * Names are compared lowercase and without accents.
+ * If no name starts with the input, names containing the input are returned instead.
+ */
+public class CharacterAutocompleteIndex {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final int maxResults;
+    @Nonnull
+    private final Node prefixRoot;
+    /**
+     * Contains all suffixes of all names, so prefixes in here are substrings of names.
+     */
+    @Nonnull
+    private final Node substringRoot;
+
+    public CharacterAutocompleteIndex(@Nonnull List<Character> characters, int maxResults) {
+        this.maxResults = maxResults;
+
+        NodeBuilder prefixRootBuilder = new NodeBuilder();
+        NodeBuilder substringRootBuilder = new NodeBuilder();
+
+        for (int characterIdx = 0; characterIdx < characters.size(); characterIdx++) {
+            Character character = characters.get(characterIdx);
+            List<String> names = character.altNames();
+            for (int nameIdx = 0; nameIdx < names.size(); nameIdx++) {
+                String name = names.get(nameIdx);
+                String key = normalize(name);
+                Candidate candidate = new Candidate(characterIdx, nameIdx, new Match(character, name));
+
+                prefixRootBuilder.insert(key, 0, candidate);
+                for (int start = 1; start < key.length(); start++)
+                    substringRootBuilder.insert(key, start, candidate);
+            }
+        }
+
+        prefixRoot = prefixRootBuilder.build(maxResults);
+        substringRoot = substringRootBuilder.build(maxResults);
+    }
+
+    /**
+     * @return at most maxResults matches
+     */
+    @Nonnull
+    public List<Match> complete(@Nonnull String input) {
+        String key = normalize(input);
+
+        List<Match> prefixMatches = lookup(prefixRoot, key);
+        if (!prefixMatches.isEmpty()) return prefixMatches;
+
+        // Prefix matches are substring matches too, so no need to merge
+        return lookup(substringRoot, key);
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    @Nonnull
+    private static List<Match> lookup(@Nonnull Node root, @Nonnull String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) node = node.child(key.charAt(i));
+
+        return node == null ? Collections.emptyList() : node.results;
+    }
+
+    /**
+     * Lowercase and without accents, so "pokemon" finds "Pokémon".
+     */
+    @Nonnull
+    public static String normalize(@Nonnull String name) {
+        String decomposed = Normalizer.normalize(name.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("");
+    }
+
+    public record Match(@Nonnull Character character, @Nonnull String name) {
+    }
+
+    private record Candidate(int characterIdx, int nameIdx, @Nonnull Match match) {
+    }
+
+    private static class Node {
+        @Nonnull
+        private final char[] keys;
+        @Nonnull
+        private final Node[] children;
+        @Nonnull
+        private final List<Match> results;
+
+        private Node(@Nonnull char[] keys, @Nonnull Node[] children, @Nonnull List<Match> results) {
+            this.keys = keys;
+            this.children = children;
+            this.results = results;
+        }
+
+        @Nullable
+        private Node child(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            return idx < 0 ? null : children[idx];
+        }
+    }
+
+    private static class NodeBuilder {
+        @Nonnull
+        private final TreeMap<java.lang.Character, NodeBuilder> children = new TreeMap<>();
+        /**
+         * Best candidate per character index
+         */
+        @Nonnull
+        private final TreeMap<Integer, Candidate> candidates = new TreeMap<>();
+
+        private void insert(@Nonnull String key, int from, @Nonnull Candidate candidate) {
+            NodeBuilder node = this;
+            node.offer(candidate);
+            for (int i = from; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new NodeBuilder());
+                node.offer(candidate);
+            }
+        }
+
+        private void offer(@Nonnull Candidate candidate) {
+            candidates.merge(candidate.characterIdx(), candidate, (a, b) -> a.nameIdx() <= b.nameIdx() ? a : b);
+        }
+
+        @Nonnull
+        private Node build(int maxResults) {
+            char[] keys = new char[children.size()];
+            Node[] builtChildren = new Node[children.size()];
+
+            int i = 0;
+            for (Map.Entry<java.lang.Character, NodeBuilder> child : children.entrySet()) {
+                keys[i] = child.getKey();
+                builtChildren[i] = child.getValue().build(maxResults);
+                i++;
+            }
+
+            List<Match> results = candidates.values().stream()
+                    .limit(maxResults)
+                    .map(Candidate::match)
+                    .toList();
+
+            return new Node(keys, builtChildren, results);
+        }
+    }
+}
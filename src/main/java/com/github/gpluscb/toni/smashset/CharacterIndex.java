@@ -0,0 +1,233 @@
+package com.github.gpluscb.toni.smashset;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves character names with a single hash lookup.
+ * Names are compared case-insensitively, without accents, and ignoring everything that is not a letter or digit,
+ * so "Pac-Man", "pacman" and "PAC MAN" all resolve to the same character.
+ * <p>
+ * Misspelled names are resolved with a BK-tree over the normalized aliases,
+ * which only visits aliases that can be within the allowed edit distance.
+ * Swapped letters count as one edit, since that is the most common typo.
+ */
+public class CharacterIndex {
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    /**
+     * More than one select menu row of candidates isn't helpful
+     */
+    public static final int MAX_CANDIDATES = 5;
+
+    @Nonnull
+    private final List<Character> characters;
+    @Nonnull
+    private final Map<String, Character> byAlias;
+    @Nullable
+    private final BKNode fuzzyRoot;
+
+    /**
+     * If two characters share an alias, the one earlier in the tree wins.
+     */
+    public CharacterIndex(@Nonnull CharacterTree tree) {
+        characters = tree.getAllCharacters();
+
+        Map<String, Character> byAlias = new HashMap<>();
+        BKNode fuzzyRoot = null;
+        for (int characterIdx = 0; characterIdx < characters.size(); characterIdx++) {
+            Character character = characters.get(characterIdx);
+            for (String alias : character.altNames()) {
+                String key = normalize(alias);
+                if (byAlias.putIfAbsent(key, character) != null) continue;
+
+                BKNode node = new BKNode(key, alias, character, characterIdx);
+                if (fuzzyRoot == null) fuzzyRoot = node;
+                else fuzzyRoot.insert(node);
+            }
+        }
+
+        this.byAlias = Collections.unmodifiableMap(byAlias);
+        this.fuzzyRoot = fuzzyRoot;
+    }
+
+    @Nullable
+    public Character get(@Nonnull String name) {
+        return byAlias.get(normalize(name));
+    }
+
+    /**
+     * Exact matches are resolved by {@link #get(String)}.
+     * Otherwise, this returns up to {@link #MAX_CANDIDATES} characters with an alias within {@link #maxDistance(int)} edits,
+     * closest first, then in tree order.
+     */
+    @Nonnull
+    public Resolution resolve(@Nonnull String name) {
+        String key = normalize(name);
+
+        Character exact = byAlias.get(key);
+        if (exact != null) return new Resolution(Collections.singletonList(new Match(exact, name, 0)));
+
+        int maxDistance = maxDistance(key.length());
+        if (fuzzyRoot == null || maxDistance == 0) return new Resolution(Collections.emptyList());
+
+        // The tree is built on the Levenshtein distance, which is a metric unlike the distance with transpositions.
+        // A transposition is two Levenshtein edits, so we search twice the radius and filter afterwards
+        int searchRadius = 2 * maxDistance;
+
+        // Closest alias per character index
+        Map<Integer, BKMatch> closest = new HashMap<>();
+        Deque<BKNode> toVisit = new ArrayDeque<>();
+        toVisit.push(fuzzyRoot);
+        while (!toVisit.isEmpty()) {
+            BKNode node = toVisit.pop();
+            int levenshteinDistance = levenshtein(key, node.key);
+
+            if (levenshteinDistance <= searchRadius) {
+                int distance = levenshteinDistance <= maxDistance ? levenshteinDistance : transpositionDistance(key, node.key);
+                if (distance <= maxDistance)
+                    closest.merge(node.characterIdx, new BKMatch(node, distance), (a, b) -> a.distance() <= b.distance() ? a : b);
+            }
+
+            // Triangle inequality: only subtrees at distance [d - radius, d + radius] from this node can contain matches
+            for (Map.Entry<Integer, BKNode> child : node.children.entrySet())
+                if (Math.abs(child.getKey() - levenshteinDistance) <= searchRadius) toVisit.push(child.getValue());
+        }
+
+        List<Match> matches = closest.values().stream()
+                .sorted(Comparator.comparingInt(BKMatch::distance).thenComparingInt(match -> match.node().characterIdx))
+                .limit(MAX_CANDIDATES)
+                .map(match -> new Match(match.node().character, match.node().alias, match.distance()))
+                .toList();
+
+        return new Resolution(matches);
+    }
+
+    /**
+     * @return all characters in tree order
+     */
+    @Nonnull
+    public List<Character> getCharacters() {
+        return characters;
+    }
+
+    @Nonnull
+    public static String normalize(@Nonnull String name) {
+        return NON_ALPHANUMERIC.matcher(CharacterAutocompleteIndex.normalize(name)).replaceAll("");
+    }
+
+    /**
+     * Short names have too many neighbours for typos to be guessed reliably
+     */
+    private static int maxDistance(int length) {
+        if (length < 3) return 0;
+        if (length < 6) return 1;
+        return 2;
+    }
+
+    private static int levenshtein(@Nonnull String a, @Nonnull String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+
+            int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+
+        return previous[b.length()];
+    }
+
+    /**
+     * Optimal string alignment distance, like Levenshtein but swapping two adjacent characters is one edit.
+     */
+    private static int transpositionDistance(@Nonnull String a, @Nonnull String b) {
+        int[][] distances = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) distances[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) distances[0][j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(distances[i - 1][j - 1] + cost, Math.min(distances[i - 1][j], distances[i][j - 1]) + 1);
+
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    distance = Math.min(distance, distances[i - 2][j - 2] + 1);
+
+                distances[i][j] = distance;
+            }
+        }
+
+        return distances[a.length()][b.length()];
+    }
+
+    /**
+     * @param alias    the alias as written in the character data, or the input for exact matches
+     * @param distance edit distance between the normalized alias and the normalized input
+     */
+    public record Match(@Nonnull Character character, @Nonnull String alias, int distance) {
+    }
+
+    /**
+     * @param matches closest first
+     */
+    public record Resolution(@Nonnull List<Match> matches) {
+        /**
+         * @return the best match if it is exact or strictly closer than all others, null if there is no clear best match
+         */
+        @Nullable
+        public Match getConfident() {
+            if (matches.isEmpty()) return null;
+
+            Match best = matches.get(0);
+            if (best.distance() == 0 || matches.size() == 1 || matches.get(1).distance() > best.distance())
+                return best;
+
+            return null;
+        }
+    }
+
+    private record BKMatch(@Nonnull BKNode node, int distance) {
+    }
+
+    private static class BKNode {
+        @Nonnull
+        private final String key;
+        @Nonnull
+        private final String alias;
+        @Nonnull
+        private final Character character;
+        private final int characterIdx;
+        /**
+         * Keyed by the distance between the child and this node
+         */
+        @Nonnull
+        private final Map<Integer, BKNode> children;
+
+        private BKNode(@Nonnull String key, @Nonnull String alias, @Nonnull Character character, int characterIdx) {
+            this.key = key;
+            this.alias = alias;
+            this.character = character;
+            this.characterIdx = characterIdx;
+            children = new HashMap<>();
+        }
+
+        private void insert(@Nonnull BKNode node) {
+            BKNode parent = this;
+            while (true) {
+                int distance = levenshtein(node.key, parent.key);
+                BKNode child = parent.children.putIfAbsent(distance, node);
+                if (child == null) return;
+                parent = child;
+            }
+        }
+    }
+}
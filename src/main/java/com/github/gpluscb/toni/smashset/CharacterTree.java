@@ -11,18 +11,61 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
-@SuppressWarnings("ClassCanBeRecord")
+/**
+ * Immutable after construction.
+ * All flattened views are precomputed when the tree is built, the getters for them don't allocate.
+ */
 public class CharacterTree {
+    /**
+     * All combinations of the four stacking flags
+     */
+    private static final int STACKING_COMBINATIONS = 16;
+
     @Nonnull
     private final CollectionType type;
 
     @Nonnull
     private final List<OneOfTwo<Character, CharacterTree>> characters;
 
+    /**
+     * Indexed by {@link #gameIndex(Game)}
+     */
+    @Nonnull
+    private final List<List<Character>> charactersPerGame;
+    /**
+     * Indexed by {@link #viewIndex(Game, boolean, boolean, boolean, boolean)}
+     */
+    @Nonnull
+    private final List<StackedView> stackedViews;
+
     private CharacterTree(@Nonnull CollectionType type, @Nonnull List<OneOfTwo<Character, CharacterTree>> characters) {
         this.type = type;
-        this.characters = characters;
+        this.characters = Collections.unmodifiableList(characters);
+
+        List<List<Character>> charactersPerGame = new ArrayList<>();
+        List<StackedView> stackedViews = new ArrayList<>();
+
+        // Subtrees are built first, so their views are already there to use
+        for (int gameIdx = 0; gameIdx <= Game.values().length; gameIdx++) {
+            Game game = gameIdx == 0 ? null : Game.values()[gameIdx - 1];
+
+            charactersPerGame.add(computeAllCharacters(game));
+
+            for (int stacking = 0; stacking < STACKING_COMBINATIONS; stacking++) {
+                List<List<Character>> stacked = computeAllCharacters(game,
+                        (stacking & 1) != 0, (stacking & 2) != 0, (stacking & 4) != 0, (stacking & 8) != 0);
+                List<String> displayNames = stacked.stream()
+                        .map(stack -> stack.stream().map(Character::getDisplayName).collect(Collectors.joining("/")))
+                        .toList();
+
+                stackedViews.add(new StackedView(stacked, displayNames));
+            }
+        }
+
+        this.charactersPerGame = Collections.unmodifiableList(charactersPerGame);
+        this.stackedViews = Collections.unmodifiableList(stackedViews);
     }
 
     /**
@@ -78,16 +121,42 @@ public class CharacterTree {
 
     @Nonnull
     public List<Character> getAllCharacters() {
-        List<Character> allCharacters = new ArrayList<>();
+        return getAllCharacters(null);
+    }
 
-        for (OneOfTwo<Character, CharacterTree> element : characters)
-            element.onT(allCharacters::add).onU(tree -> allCharacters.addAll(tree.getAllCharacters()));
+    @Nonnull
+    public List<Character> getAllCharacters(@Nullable Game game) {
+        return charactersPerGame.get(gameIndex(game));
+    }
 
-        return allCharacters;
+    /**
+     * @return the characters in tree order, where the stacked collections are one element each
+     */
+    @Nonnull
+    public List<List<Character>> getAllCharacters(@Nullable Game game, boolean stackEchos, boolean stackMiis, boolean stackSheikZelda, boolean stackZssSamus) {
+        return stackedViews.get(viewIndex(game, stackEchos, stackMiis, stackSheikZelda, stackZssSamus)).characters();
     }
 
+    /**
+     * @return the display names of the elements of {@link #getAllCharacters(Game, boolean, boolean, boolean, boolean)} at the same index,
+     * stacked characters are separated by '/'
+     */
     @Nonnull
-    public List<Character> getAllCharacters(@Nullable Game game) {
+    public List<String> getDisplayNames(@Nullable Game game, boolean stackEchos, boolean stackMiis, boolean stackSheikZelda, boolean stackZssSamus) {
+        return stackedViews.get(viewIndex(game, stackEchos, stackMiis, stackSheikZelda, stackZssSamus)).displayNames();
+    }
+
+    private static int gameIndex(@Nullable Game game) {
+        return game == null ? 0 : game.ordinal() + 1;
+    }
+
+    private static int viewIndex(@Nullable Game game, boolean stackEchos, boolean stackMiis, boolean stackSheikZelda, boolean stackZssSamus) {
+        int stacking = (stackEchos ? 1 : 0) | (stackMiis ? 2 : 0) | (stackSheikZelda ? 4 : 0) | (stackZssSamus ? 8 : 0);
+        return gameIndex(game) * STACKING_COMBINATIONS + stacking;
+    }
+
+    @Nonnull
+    private List<Character> computeAllCharacters(@Nullable Game game) {
         List<Character> allCharacters = new ArrayList<>();
 
         for (OneOfTwo<Character, CharacterTree> element : characters) {
@@ -96,11 +165,11 @@ public class CharacterTree {
             }).onU(tree -> allCharacters.addAll(tree.getAllCharacters(game)));
         }
 
-        return allCharacters;
+        return List.copyOf(allCharacters);
     }
 
     @Nonnull
-    public List<List<Character>> getAllCharacters(@Nullable Game game, boolean stackEchos, boolean stackMiis, boolean stackSheikZelda, boolean stackZssSamus) {
+    private List<List<Character>> computeAllCharacters(@Nullable Game game, boolean stackEchos, boolean stackMiis, boolean stackSheikZelda, boolean stackZssSamus) {
         List<List<Character>> allCharacters = new ArrayList<>();
 
         for (OneOfTwo<Character, CharacterTree> element : characters) {
@@ -123,7 +192,7 @@ public class CharacterTree {
             });
         }
 
-        return allCharacters;
+        return List.copyOf(allCharacters);
     }
 
     @Nonnull
@@ -136,6 +205,9 @@ public class CharacterTree {
         return characters;
     }
 
+    private record StackedView(@Nonnull List<List<Character>> characters, @Nonnull List<String> displayNames) {
+    }
+
     private enum CollectionType {
         ROOT,
         MIIS,
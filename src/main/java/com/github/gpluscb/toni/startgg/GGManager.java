@@ -10,7 +10,9 @@ import com.github.gpluscb.ggjava.entity.object.response.scalars.IDResponse;
 import com.github.gpluscb.ggjava.entity.object.response.scalars.IntResponse;
 import com.github.gpluscb.ggjava.entity.object.response.scalars.StringResponse;
 import com.github.gpluscb.ggjava.internal.json.Deserializer;
+import com.github.gpluscb.toni.util.FailLogger;
 import com.github.gpluscb.toni.util.OneOfTwo;
+import com.github.gpluscb.toni.util.SingleFlight;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.apache.logging.log4j.LogManager;
@@ -19,10 +21,8 @@ import org.apache.logging.log4j.Logger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -60,7 +60,7 @@ public class GGManager implements GGClient {
     @Nonnull
     private static final String TOURNAMENTS_QUERY_ = "query TournamentQuery($ids:[ID!]!,$numTournaments:Int!,$numStandings:Int!){tournaments(query:{perPage:$numTournaments,filter:{ids:$ids}}){nodes{...t}}} " + TOURNAMENT_INFO_FRAGMENT;
     @Nonnull
-    private static final String LIGHT_TOURNAMENT_INFO_FRAGMENT = "fragment t on Tournament{id name numAttendees}";
+    private static final String LIGHT_TOURNAMENT_INFO_FRAGMENT = "fragment t on Tournament{id name numAttendees endAt}";
     @Nonnull
     private static final String LIGHT_TOURNAMENTS_QUERY = "query TournamentQuery($name:String!,$slug:String!,$id:ID,$numTournaments:Int!){tournament(slug:$slug,id:$id){...t} tournaments(query:{perPage:$numTournaments,filter:{name:$name}}){nodes{...t}}} " + LIGHT_TOURNAMENT_INFO_FRAGMENT;
     @Nonnull
@@ -68,6 +68,27 @@ public class GGManager implements GGClient {
     @Nonnull
     private static final String TOURNAMENTS_QUERY_TOURNAMENT_ELEMENT_WORKAROUND_FORMAT = "t%d:tournament(id:$id%1$d){...t} ";
 
+    /**
+     * Light tournaments only have {@link #LIGHT_TOURNAMENT_INFO_FRAGMENT}, so their size hardly varies
+     */
+    private static final long LIGHT_TOURNAMENT_ESTIMATED_BYTES = 512;
+    /**
+     * Short enough to not be noticeable, long enough that concurrent lookups from different users end up in one query
+     */
+    private static final long BATCH_WINDOW_MILLIS = 30;
+    /**
+     * Bigger batches are split into several queries anyway, this just bounds how many lookups wait for one window
+     */
+    private static final int MAX_BATCH_SIZE = 32;
+    /**
+     * start.gg rejects queries that could return more objects than this
+     */
+    private static final int MAX_QUERY_COMPLEXITY = 1000;
+    /**
+     * We only know the events of a tournament once we have it, most have a few
+     */
+    private static final int ESTIMATED_EVENTS_PER_TOURNAMENT = 4;
+
     @Nonnull
     private final Executor futureExecutor;
 
@@ -75,10 +96,50 @@ public class GGManager implements GGClient {
     private final GGClient client;
     @Nonnull
     private final List<String> stopwords;
+    @Nonnull
+    private final GGRequestScheduler scheduler;
+    @Nonnull
+    private final TournamentSearchCache searchCache;
+    /**
+     * Popular tournaments are often searched by many users at once, those should share one request chain
+     */
+    @Nonnull
+    private final SingleFlight<TournamentSearchCache.SearchKey, OneOfTwo<List<TournamentResponse>, GGResponse<QueryResponse>>> searchFlight;
+    @Nonnull
+    private final SingleFlight<TournamentSearchCache.TournamentKey, TournamentResponse> tournamentFlight;
+    @Nonnull
+    private final ScheduledExecutorService batchExecutor;
+    /**
+     * Tournament lookups waiting for their batch window to close, guarded by itself
+     */
+    @Nonnull
+    private final Map<BatchKey, Batch> pendingBatches;
+    @Nonnull
+    private final AtomicLong batchCount;
+    @Nonnull
+    private final AtomicLong batchQueryCount;
+    @Nonnull
+    private final AtomicLong batchTooComplexCount;
+    @Nonnull
+    private final AtomicLong batchedTournamentCount;
 
-    public GGManager(@Nonnull GGClient client, @Nonnull List<String> stopwords) {
+    public GGManager(@Nonnull GGClient client, @Nonnull List<String> stopwords, @Nonnull GGRequestScheduler scheduler, @Nonnull TournamentSearchCache searchCache) {
         this.client = client;
         this.stopwords = stopwords;
+        this.scheduler = scheduler;
+        this.searchCache = searchCache;
+        searchFlight = new SingleFlight<>();
+        tournamentFlight = new SingleFlight<>();
+        batchExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GGManager Batch-Thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pendingBatches = new HashMap<>();
+        batchCount = new AtomicLong(0);
+        batchQueryCount = new AtomicLong(0);
+        batchTooComplexCount = new AtomicLong(0);
+        batchedTournamentCount = new AtomicLong(0);
         futureExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
             int i;
 
@@ -114,38 +175,114 @@ public class GGManager implements GGClient {
     }
 
     /**
-     * Order does not matter
+     * Errors only fail the tournaments they are about, errors without a path fail all of them.
+     *
+     * @return the tournament with the given index, null if there is no such tournament
      */
-    @Nonnull
-    private static List<TournamentResponse> deserializeTournamentsWorkaroundResponse(@Nonnull JsonObject response) throws DeserializationException {
-        if (response.has("errors"))
-            throw new IllegalArgumentException("Response had errors: " + response);
+    @Nullable
+    private static JsonElement getTournamentsWorkaroundElement(@Nonnull JsonObject response, int index) {
+        String alias = String.format("t%d", index);
+
+        JsonElement errors = response.get("errors");
+        if (errors != null && errors.isJsonArray()) {
+            for (JsonElement error : errors.getAsJsonArray()) {
+                JsonElement path = error.isJsonObject() ? error.getAsJsonObject().get("path") : null;
+                boolean aboutOther = path != null && path.isJsonArray() && !path.getAsJsonArray().isEmpty()
+                        && !alias.equals(path.getAsJsonArray().get(0).getAsString());
+                if (!aboutOther) throw new IllegalArgumentException("Response had errors: " + response);
+            }
+        }
 
-        List<TournamentResponse> ret = new ArrayList<>();
+        JsonElement data = response.get("data");
+        if (data == null || !data.isJsonObject()) throw new IllegalArgumentException("Response had no data: " + response);
 
-        // It's fine if we throw here on error response I think
-        for (Map.Entry<String, JsonElement> stringJsonElementEntry : response.getAsJsonObject("data").entrySet()) {
-            JsonElement elem = stringJsonElementEntry.getValue();
-            TournamentResponse deserialized = Deserializer.deserialize(elem, TournamentResponse.class);
-            ret.add(deserialized);
-        }
+        JsonElement elem = data.getAsJsonObject().get(alias);
+        return elem == null || elem.isJsonNull() ? null : elem;
+    }
 
-        return ret;
+    /**
+     * start.gg answers with a message like "Rate limit exceeded - api-token", either on its own or as a GraphQL error.
+     */
+    private static boolean isRateLimited(@Nullable JsonObject root) {
+        return hasMessage(root, "rate limit");
+    }
+
+    /**
+     * start.gg answers with a message like "Your query complexity is too high. A maximum of 1000 objects may be returned by each request."
+     */
+    private static boolean isTooComplex(@Nullable JsonObject root) {
+        return hasMessage(root, "complexity");
+    }
+
+    /**
+     * @param part lowercase
+     * @return whether the top level message or one of the GraphQL error messages contains part
+     */
+    private static boolean hasMessage(@Nullable JsonObject root, @Nonnull String part) {
+        if (root == null) return false;
+
+        if (messageContains(root.get("message"), part)) return true;
+
+        JsonElement errors = root.get("errors");
+        if (errors == null || !errors.isJsonArray()) return false;
+
+        for (JsonElement error : errors.getAsJsonArray())
+            if (error.isJsonObject() && messageContains(error.getAsJsonObject().get("message"), part)) return true;
+
+        return false;
     }
 
+    private static boolean messageContains(@Nullable JsonElement message, @Nonnull String part) {
+        return message != null && message.isJsonPrimitive()
+                && message.getAsString().toLowerCase(Locale.ROOT).contains(part);
+    }
+
+    /**
+     * Counts the objects {@link #TOURNAMENT_INFO_FRAGMENT} returns for one tournament,
+     * assuming a couple of images per image list and a few phases per event.
+     */
+    private static int estimateTournamentComplexity(int numStandings) {
+        // Event, images, videogame, videogame images, phases, standings connection, and a standing with entrant per placement
+        int eventComplexity = 1 + 2 + 1 + 2 + 4 + 1 + 2 * numStandings;
+        // Tournament, images, links
+        return 1 + 2 + 1 + ESTIMATED_EVENTS_PER_TOURNAMENT * eventComplexity;
+    }
+
+    /**
+     * Sent as {@link GGRequestScheduler.Priority#BACKGROUND}.
+     */
     @Nonnull
     @Override
     public CompletableFuture<JsonObject> request(@Nonnull String query, @Nullable JsonObject variables) {
-        return client.request(query, variables).thenApplyAsync(r -> {
+        return request(GGRequestScheduler.Priority.BACKGROUND, query, variables);
+    }
+
+    /**
+     * @return fails with a {@link java.util.concurrent.RejectedExecutionException} if start.gg is too busy
+     */
+    @Nonnull
+    public CompletableFuture<JsonObject> request(@Nonnull GGRequestScheduler.Priority priority, @Nonnull String query, @Nullable JsonObject variables) {
+        return scheduler.submit(priority, () -> client.request(query, variables), GGManager::isRateLimited).thenApplyAsync(r -> {
             log.trace("query: \"{}\", variables: \"{}\" -> response: \"{}\"", query, variables, r);
             return r;
         }, futureExecutor);
     }
 
+    /**
+     * Sent as {@link GGRequestScheduler.Priority#BACKGROUND}.
+     */
     @Nonnull
     @Override
     public CompletableFuture<GGResponse<QueryResponse>> query(@Nonnull String query, @Nullable JsonObject variables) {
-        return client.query(query, variables).thenApplyAsync(r -> {
+        return query(GGRequestScheduler.Priority.BACKGROUND, query, variables);
+    }
+
+    /**
+     * @return fails with a {@link java.util.concurrent.RejectedExecutionException} if start.gg is too busy
+     */
+    @Nonnull
+    public CompletableFuture<GGResponse<QueryResponse>> query(@Nonnull GGRequestScheduler.Priority priority, @Nonnull String query, @Nullable JsonObject variables) {
+        return scheduler.submit(priority, () -> client.query(query, variables), r -> isRateLimited(r.getResponseRoot())).thenApplyAsync(r -> {
             log.trace("query: \"{}\", variables: \"{}\" -> response: \"{}\"", query, variables, r.getResponseRoot());
             return r;
         }, futureExecutor);
@@ -154,47 +291,71 @@ public class GGManager implements GGClient {
     @Nonnull
     @Override
     public CompletableFuture<GGResponse<MutationResponse>> mutation(@Nonnull String query, @Nullable JsonObject variables) {
-        return client.mutation(query, variables).thenApplyAsync(r -> {
+        return scheduler.submit(GGRequestScheduler.Priority.BACKGROUND, () -> client.mutation(query, variables), r -> isRateLimited(r.getResponseRoot())).thenApplyAsync(r -> {
             log.trace("query: \"{}\", variables: \"{}\" -> response: \"{}\"", query, variables, r.getResponseRoot());
             return r;
         }, futureExecutor);
     }
 
+    /**
+     * Searches that only differ in case are answered from the {@link TournamentSearchCache},
+     * and concurrent searches like that share one request chain.
+     * Requests are sent as {@link GGRequestScheduler.Priority#INTERACTIVE}.
+     *
+     * @return the best matches first, only with id, name, numAttendees and endAt.
+     * Fails with a {@link java.util.concurrent.RejectedExecutionException} if start.gg is too busy
+     * @see #getTournamentById(GGRequestScheduler.Priority, long, int)
+     */
     @Nonnull
-    public CompletableFuture<OneOfTwo<List<TournamentResponse>, GGResponse<QueryResponse>>> searchTouranmentsByName(@Nonnull String term, int numTournaments, int numStandings) {
+    public CompletableFuture<OneOfTwo<List<TournamentResponse>, GGResponse<QueryResponse>>> searchTournamentsLight(@Nonnull String term, int numTournaments) {
         String[] split = term.replaceAll("[\\^%#}+*]", "").split("\\W+");
         String filteredTerm = Arrays.stream(split).filter(Predicate.not(stopwords::contains)).collect(Collectors.joining(" "));
 
+        TournamentSearchCache.SearchKey cacheKey = new TournamentSearchCache.SearchKey(filteredTerm.toLowerCase(Locale.ROOT),
+                term.strip().toLowerCase(Locale.ROOT), numTournaments);
+
+        List<TournamentResponse> cached = searchCache.getSearch(cacheKey);
+        if (cached != null) return CompletableFuture.completedFuture(OneOfTwo.ofT(cached));
+
+        return searchFlight.call(cacheKey, this::searchTournamentsLightUncoalesced);
+    }
+
+    /**
+     * Only uses the key, so the cached result doesn't depend on which search filled it.
+     */
+    @Nonnull
+    private CompletableFuture<OneOfTwo<List<TournamentResponse>, GGResponse<QueryResponse>>> searchTournamentsLightUncoalesced(@Nonnull TournamentSearchCache.SearchKey cacheKey) {
+        int numTournaments = cacheKey.numTournaments();
+        // Only stopwords, so only the slug can really match
+        String rankingTerm = cacheKey.name().isBlank() ? cacheKey.slug() : cacheKey.name();
+
         JsonObject lightVariables = new JsonObject();
-        lightVariables.addProperty("slug", term);
-        lightVariables.addProperty("name", filteredTerm);
+        lightVariables.addProperty("slug", cacheKey.slug());
+        lightVariables.addProperty("name", cacheKey.name());
         try {
-            lightVariables.addProperty("id", Long.parseLong(filteredTerm));
+            lightVariables.addProperty("id", Long.parseLong(cacheKey.name()));
         } catch (NumberFormatException ignored) {
         }
         lightVariables.addProperty("numTournaments", Math.max(Math.min(numTournaments, 100), numTournaments * 3));
 
-        return query(LIGHT_TOURNAMENTS_QUERY, lightVariables).<OneOfTwo<List<Long>, GGResponse<QueryResponse>>>thenApply(response ->
+        return query(GGRequestScheduler.Priority.INTERACTIVE, LIGHT_TOURNAMENTS_QUERY, lightVariables).thenApply(response ->
                 response.map(OneOfTwo::ofU, success -> {
-                    Stream<Long> idsStream = Stream.empty();
+                    Stream<TournamentResponse> tournamentsStream = Stream.empty();
 
                     TournamentResponse slugTournament = success.getTournament();
-                    if (slugTournament != null) {
-                        IDResponse id = slugTournament.getId();
-                        if (id != null) idsStream = Stream.concat(idsStream, Stream.of(id.getValueLong()));
-                    }
+                    if (slugTournament != null) tournamentsStream = Stream.of(slugTournament);
 
                     List<TournamentResponse> tournaments = success.getTournaments().getNodes();
                     if (tournaments != null) {
-                        idsStream = Stream.concat(idsStream, tournaments.stream().filter(Objects::nonNull).sorted((tournament1, tournament2) -> {
+                        tournamentsStream = Stream.concat(tournamentsStream, tournaments.stream().filter(Objects::nonNull).sorted((tournament1, tournament2) -> {
                             StringResponse name1 = tournament1.getName();
                             StringResponse name2 = tournament2.getName();
 
                             // Prio 1: Whatever tournament has a name
                             if (name1 == null || name2 == null) return Boolean.compare(name1 != null, name2 != null);
 
-                            boolean name1Contains = name1.getValue().contains(term);
-                            boolean name2Contains = name2.getValue().contains(term);
+                            boolean name1Contains = name1.getValue().toLowerCase(Locale.ROOT).contains(rankingTerm);
+                            boolean name2Contains = name2.getValue().toLowerCase(Locale.ROOT).contains(rankingTerm);
 
                             // Prio 2: For whatever tournament it contains the term in name
                             int comparingContains = Boolean.compare(name1Contains, name2Contains);
@@ -210,29 +371,160 @@ public class GGManager implements GGClient {
 
                             // Prio 4: Whatever tournament has a higher attendant count
                             return Integer.compare(numAttendees1.getValue(), numAttendees2.getValue());
-                        }).map(TournamentResponse::getId).filter(Objects::nonNull).map(IDResponse::getValueLong));
+                        }));
                     }
 
-                    return OneOfTwo.ofT(idsStream.limit(numTournaments).toList());
+                    List<TournamentResponse> result = tournamentsStream
+                            .filter(tournament -> tournament.getId() != null)
+                            .limit(numTournaments)
+                            .toList();
+
+                    searchCache.putSearch(cacheKey, result, result.size() * LIGHT_TOURNAMENT_ESTIMATED_BYTES);
+
+                    return OneOfTwo.ofT(result);
                 })
-        ).thenCompose(result ->
-                result.map(ids -> {
-                            String query = generateTournamentsQueryWorkaround(ids.size());
-                            JsonObject variables = generateTournamentsQueryWorkaroundVariables(numStandings, ids);
-                            return request(query, variables).thenCompose(json -> {
-                                try {
-                                    return CompletableFuture.completedFuture(GGManager.deserializeTournamentsWorkaroundResponse(json));
-                                } catch (DeserializationException e) {
-                                    return CompletableFuture.failedFuture(e);
-                                }
-                            }).thenApply(tournaments ->
-                                    OneOfTwo.ofT(tournaments.stream()
+        );
+    }
+
+    /**
+     * Fetches {@link #TOURNAMENT_INFO_FRAGMENT} for one tournament, cached in the {@link TournamentSearchCache}.
+     * Concurrent calls for the same tournament share one request,
+     * and calls for different tournaments within {@link #BATCH_WINDOW_MILLIS} are merged into one aliased query.
+     *
+     * @return completes with null if there is no such tournament.
+     * Fails with a {@link java.util.concurrent.RejectedExecutionException} if start.gg is too busy
+     */
+    @Nonnull
+    public CompletableFuture<TournamentResponse> getTournamentById(@Nonnull GGRequestScheduler.Priority priority, long id, int numStandings) {
+        TournamentSearchCache.TournamentKey cacheKey = new TournamentSearchCache.TournamentKey(id, numStandings);
+
+        TournamentResponse cached = searchCache.getTournament(cacheKey);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+
+        return tournamentFlight.call(cacheKey, key -> enqueueTournament(priority, key));
+    }
+
+    /**
+     * Adds the tournament to the pending batch, which is sent once {@link #BATCH_WINDOW_MILLIS} have passed
+     * or it has {@link #MAX_BATCH_SIZE} tournaments.
+     */
+    @Nonnull
+    private CompletableFuture<TournamentResponse> enqueueTournament(@Nonnull GGRequestScheduler.Priority priority, @Nonnull TournamentSearchCache.TournamentKey key) {
+        BatchKey batchKey = new BatchKey(priority, key.numStandings());
+
+        CompletableFuture<TournamentResponse> future;
+        Batch full = null;
+        synchronized (pendingBatches) {
+            Batch batch = pendingBatches.get(batchKey);
+            if (batch == null) {
+                Batch newBatch = new Batch();
+                newBatch.flush = batchExecutor.schedule(() -> flushBatch(batchKey, newBatch), BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+                pendingBatches.put(batchKey, newBatch);
+                batch = newBatch;
+            }
+
+            future = batch.futures.computeIfAbsent(key.id(), id -> new CompletableFuture<>());
+
+            if (batch.futures.size() >= MAX_BATCH_SIZE) {
+                pendingBatches.remove(batchKey);
+                batch.flush.cancel(false);
+                full = batch;
+            }
+        }
+
+        if (full != null) sendBatch(batchKey, full);
+
+        return future;
+    }
+
+    private void flushBatch(@Nonnull BatchKey batchKey, @Nonnull Batch batch) {
+        synchronized (pendingBatches) {
+            // Already sent because it was full
+            if (!pendingBatches.remove(batchKey, batch)) return;
+        }
+
+        sendBatch(batchKey, batch);
+    }
+
+    /**
+     * Splits the batch into as many aliased queries as its estimated complexity needs, and sends them in parallel.
+     * The queries go through the {@link GGRequestScheduler} like every other request, so splitting doesn't exceed the rate limit.
+     */
+    private void sendBatch(@Nonnull BatchKey batchKey, @Nonnull Batch batch) {
+        List<Long> ids = new ArrayList<>(batch.futures.keySet());
+
+        batchCount.incrementAndGet();
+        batchedTournamentCount.addAndGet(ids.size());
+
+        int perQuery = Math.max(1, MAX_QUERY_COMPLEXITY / estimateTournamentComplexity(batchKey.numStandings()));
+        for (int from = 0; from < ids.size(); from += perQuery)
+            sendTournamentsQuery(batchKey, batch, ids.subList(from, Math.min(from + perQuery, ids.size())));
+    }
+
+    /**
+     * Fetches the tournaments in one aliased query and completes their futures.
+     * If start.gg still rejects the query as too complex, it is split in half and sent again.
+     */
+    private void sendTournamentsQuery(@Nonnull BatchKey batchKey, @Nonnull Batch batch, @Nonnull List<Long> ids) {
+        batchQueryCount.incrementAndGet();
+
+        String query = generateTournamentsQueryWorkaround(ids.size());
+        JsonObject variables = generateTournamentsQueryWorkaroundVariables(batchKey.numStandings(), ids);
+
+        request(batchKey.priority(), query, variables).whenComplete(FailLogger.logFail((json, t) -> {
+            if (t != null) {
+                ids.forEach(id -> batch.futures.get(id).completeExceptionally(t));
+                return;
+            }
+
+            if (ids.size() > 1 && isTooComplex(json)) {
+                // Tournaments with a lot of events are way above the estimate
+                log.debug("Tournaments query too complex, splitting: {}", ids);
+                batchTooComplexCount.incrementAndGet();
+
+                int half = ids.size() / 2;
+                sendTournamentsQuery(batchKey, batch, ids.subList(0, half));
+                sendTournamentsQuery(batchKey, batch, ids.subList(half, ids.size()));
+                return;
+            }
+
+            for (int i = 0; i < ids.size(); i++) {
+                TournamentSearchCache.TournamentKey key = new TournamentSearchCache.TournamentKey(ids.get(i), batchKey.numStandings());
+                CompletableFuture<TournamentResponse> future = batch.futures.get(key.id());
+
+                try {
+                    JsonElement elem = getTournamentsWorkaroundElement(json, i);
+                    TournamentResponse tournament = elem == null ? null : Deserializer.deserialize(elem, TournamentResponse.class);
+
+                    // The raw response is a good enough estimate for the deserialized size
+                    if (tournament != null) searchCache.putTournament(key, tournament, elem.toString().length() * 2L);
+
+                    future.complete(tournament);
+                } catch (DeserializationException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Like {@link #searchTournamentsLight(String, int)}, but with the details of all tournaments.
+     * Prefer fetching details with {@link #getTournamentById(GGRequestScheduler.Priority, long, int)} only when they are needed.
+     */
+    @Nonnull
+    public CompletableFuture<OneOfTwo<List<TournamentResponse>, GGResponse<QueryResponse>>> searchTouranmentsByName(@Nonnull String term, int numTournaments, int numStandings) {
+        return searchTournamentsLight(term, numTournaments).thenCompose(result ->
+                result.map(lightTournaments -> {
+                            List<CompletableFuture<TournamentResponse>> futures = lightTournaments.stream()
+                                    // Light tournaments always have an id
+                                    .map(tournament -> getTournamentById(GGRequestScheduler.Priority.INTERACTIVE, tournament.getId().getValueLong(), numStandings))
+                                    .toList();
+
+                            return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenApply(v ->
+                                    OneOfTwo.<List<TournamentResponse>, GGResponse<QueryResponse>>ofT(futures.stream()
+                                            .map(CompletableFuture::join)
                                             .filter(Objects::nonNull)
-                                            .sorted(Comparator.comparingLong(tournament -> {
-                                                IDResponse id = tournament.getId();
-                                                return id == null ? 0 : ids.indexOf(id.getValueLong());
-                                            })).toList())
-                            );
+                                            .toList()));
                         }, fail -> CompletableFuture.completedFuture(OneOfTwo.ofU(fail))
                 )
         );
@@ -429,6 +721,8 @@ public class GGManager implements GGClient {
     @Nonnull
     @Override
     public CompletableFuture<Void> shutdown() {
+        batchExecutor.shutdownNow();
+        scheduler.shutdown();
         return client.shutdown();
     }
 
@@ -436,4 +730,56 @@ public class GGManager implements GGClient {
     public boolean isShutDown() {
         return client.isShutDown();
     }
+
+    @Nonnull
+    public GGRequestScheduler.Stats getSchedulerStats() {
+        return scheduler.getStats();
+    }
+
+    @Nonnull
+    public TournamentSearchCache.Stats getSearchCacheStats() {
+        return searchCache.getStats();
+    }
+
+    @Nonnull
+    public SingleFlight.Stats getSearchFlightStats() {
+        return searchFlight.getStats();
+    }
+
+    @Nonnull
+    public SingleFlight.Stats getTournamentFlightStats() {
+        return tournamentFlight.getStats();
+    }
+
+    @Nonnull
+    public BatchStats getBatchStats() {
+        return new BatchStats(batchCount.get(), batchQueryCount.get(), batchTooComplexCount.get(), batchedTournamentCount.get());
+    }
+
+    /**
+     * Tournaments are only batched with others of the same priority, and the query has one $numStandings for all of them
+     */
+    private record BatchKey(@Nonnull GGRequestScheduler.Priority priority, int numStandings) {
+    }
+
+    private static class Batch {
+        /**
+         * By tournament id, in alias order. Only modified while in {@link #pendingBatches}
+         */
+        @Nonnull
+        private final LinkedHashMap<Long, CompletableFuture<TournamentResponse>> futures = new LinkedHashMap<>();
+        /**
+         * Set right after construction
+         */
+        private ScheduledFuture<?> flush;
+    }
+
+    /**
+     * @param batches     batches sent
+     * @param queries     aliased tournament queries the batches were split into
+     * @param tooComplex  queries start.gg rejected as too complex, which were split again
+     * @param tournaments tournaments fetched in those batches
+     */
+    public record BatchStats(long batches, long queries, long tooComplex, long tournaments) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,400 @@
+package com.github.gpluscb.toni.startgg;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Keeps start.gg requests within the per-token rate limit with a token bucket.
+ * In any refill period at most the bucket size plus the tokens refilled per period are sent,
+ * so both together have to stay below the limit.
+ * Requests that have to wait for a token are queued by {@link Priority}, and in submission order within a priority.
+ * <p>
+ * Rate limited responses are retried with exponential backoff, during which no other request is sent either.
+ * Submissions whose expected wait is longer than their deadline fail immediately with a {@link RejectedExecutionException},
+ * so users get a "busy" reply instead of waiting for ages.
+ */
+public class GGRequestScheduler {
+    private static final Logger log = LogManager.getLogger(GGRequestScheduler.class);
+
+    @Nonnull
+    private final Settings settings;
+    @Nonnull
+    private final ScheduledExecutorService drainExecutor;
+
+    // All guarded by this
+    @Nonnull
+    private final PriorityQueue<Task<?>> queue;
+    @Nonnull
+    private final int[] queuedPerPriority;
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+    private boolean drainScheduled;
+    private long sequence;
+
+    @Nonnull
+    private final AtomicLong sentCount;
+    @Nonnull
+    private final AtomicLong queuedTotalCount;
+    @Nonnull
+    private final AtomicLong queueWaitTotalNanos;
+    @Nonnull
+    private final AtomicLong queueWaitMaxNanos;
+    @Nonnull
+    private final AtomicLong rateLimitedCount;
+    @Nonnull
+    private final AtomicLong busyCount;
+
+    public GGRequestScheduler(@Nonnull Settings settings) {
+        this.settings = settings;
+        drainExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GGRequestScheduler Drain-Thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        queue = new PriorityQueue<>(Comparator.<Task<?>, Priority>comparing(Task::priority).thenComparingLong(Task::sequence));
+        queuedPerPriority = new int[Priority.values().length];
+        tokens = settings.bucketSize();
+        lastRefillNanos = System.nanoTime();
+        pausedUntilNanos = lastRefillNanos;
+        drainScheduled = false;
+        sequence = 0;
+
+        sentCount = new AtomicLong(0);
+        queuedTotalCount = new AtomicLong(0);
+        queueWaitTotalNanos = new AtomicLong(0);
+        queueWaitMaxNanos = new AtomicLong(0);
+        rateLimitedCount = new AtomicLong(0);
+        busyCount = new AtomicLong(0);
+    }
+
+    /**
+     * @param call        sends the request, may be called again for retries
+     * @param rateLimited whether a response means we were rate limited
+     * @return fails with a {@link RejectedExecutionException} if the expected wait is over the deadline for the priority
+     */
+    @Nonnull
+    public <T> CompletableFuture<T> submit(@Nonnull Priority priority, @Nonnull Supplier<CompletableFuture<T>> call, @Nonnull Predicate<T> rateLimited) {
+        long now = System.nanoTime();
+        Task<T> task;
+
+        synchronized (this) {
+            refill(now);
+
+            if (queue.isEmpty() && now - pausedUntilNanos >= 0 && tokens >= 1) {
+                tokens--;
+                task = new Task<>(priority, sequence++, call, rateLimited, now, new CompletableFuture<>());
+            } else {
+                long expectedWaitNanos = expectedWaitNanos(priority, now);
+                if (expectedWaitNanos > settings.maxWaitNanos(priority)) {
+                    busyCount.incrementAndGet();
+                    return CompletableFuture.failedFuture(new RejectedExecutionException(
+                            String.format("start.gg request queue is busy, expected wait: %dms", expectedWaitNanos / 1_000_000)));
+                }
+
+                task = new Task<>(priority, sequence++, call, rateLimited, now, new CompletableFuture<>());
+                enqueue(task);
+                queuedTotalCount.incrementAndGet();
+                scheduleDrain(now);
+                return task.future();
+            }
+        }
+
+        send(task, 0);
+        return task.future();
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void refill(long now) {
+        tokens = Math.min(settings.bucketSize(), tokens + (now - lastRefillNanos) / (double) settings.nanosPerToken());
+        lastRefillNanos = now;
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private long expectedWaitNanos(@Nonnull Priority priority, long now) {
+        int ahead = 0;
+        for (int i = 0; i <= priority.ordinal(); i++) ahead += queuedPerPriority[i];
+
+        double missingTokens = Math.max(0, ahead + 1 - tokens);
+        return Math.max(0, pausedUntilNanos - now) + (long) Math.ceil(missingTokens * settings.nanosPerToken());
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void enqueue(@Nonnull Task<?> task) {
+        queue.add(task);
+        queuedPerPriority[task.priority().ordinal()]++;
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void scheduleDrain(long now) {
+        if (drainScheduled) return;
+
+        long untilToken = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * settings.nanosPerToken());
+        long delay = Math.max(untilToken, pausedUntilNanos - now);
+
+        try {
+            drainExecutor.schedule(this::drain, delay, TimeUnit.NANOSECONDS);
+            drainScheduled = true;
+        } catch (RejectedExecutionException e) {
+            log.info("Drain executor rejected drain - probably shutting down");
+        }
+    }
+
+    private void drain() {
+        List<Task<?>> toSend = new ArrayList<>();
+
+        synchronized (this) {
+            drainScheduled = false;
+            long now = System.nanoTime();
+            refill(now);
+
+            while (!queue.isEmpty() && now - pausedUntilNanos >= 0 && tokens >= 1) {
+                Task<?> task = queue.poll();
+                queuedPerPriority[task.priority().ordinal()]--;
+                tokens--;
+                toSend.add(task);
+            }
+
+            if (!queue.isEmpty()) scheduleDrain(now);
+        }
+
+        long now = System.nanoTime();
+        for (Task<?> task : toSend) {
+            long waitNanos = now - task.enqueuedNanos();
+            queueWaitTotalNanos.addAndGet(waitNanos);
+            queueWaitMaxNanos.accumulateAndGet(waitNanos, Math::max);
+
+            send(task, task.attempts());
+        }
+    }
+
+    private <T> void send(@Nonnull Task<T> task, int attempt) {
+        sentCount.incrementAndGet();
+
+        CompletableFuture<T> response;
+        try {
+            response = task.call().get();
+        } catch (Exception e) {
+            task.future().completeExceptionally(e);
+            return;
+        }
+
+        response.whenComplete((result, t) -> {
+            boolean rateLimited = t == null ? task.rateLimited().test(result) : isRateLimitException(t);
+            if (!rateLimited || attempt >= settings.maxRetries()) {
+                if (rateLimited) log.warn("start.gg request still rate limited after {} retries", attempt);
+
+                if (t == null) task.future().complete(result);
+                else task.future().completeExceptionally(t);
+                return;
+            }
+
+            rateLimitedCount.incrementAndGet();
+            retry(task.withAttempts(attempt + 1));
+        });
+    }
+
+    private synchronized void retry(@Nonnull Task<?> task) {
+        long now = System.nanoTime();
+
+        // Whatever we thought we had left was wrong, so stop everything for a bit
+        long backoffNanos = Math.min(settings.maxBackoffNanos(), settings.baseBackoffNanos() << Math.min(task.attempts() - 1, 20));
+        backoffNanos += ThreadLocalRandom.current().nextLong(backoffNanos / 4 + 1);
+        pausedUntilNanos = Math.max(pausedUntilNanos, now + backoffNanos);
+        tokens = 0;
+
+        log.debug("start.gg request rate limited, retry {} in {}ms", task.attempts(), backoffNanos / 1_000_000);
+
+        // Keeps its sequence, so it goes before newer requests of the same priority
+        enqueue(task);
+        queuedTotalCount.incrementAndGet();
+        scheduleDrain(now);
+    }
+
+    private static boolean isRateLimitException(@Nullable Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            String message = t.getMessage();
+            if (message != null && (message.contains("429") || message.toLowerCase(Locale.ROOT).contains("rate limit")))
+                return true;
+        }
+
+        return false;
+    }
+
+    @Nonnull
+    public synchronized Stats getStats() {
+        long queuedTotal = queuedTotalCount.get();
+        long averageWaitNanos = queuedTotal == 0 ? 0 : queueWaitTotalNanos.get() / queuedTotal;
+        return new Stats(queuedPerPriority[Priority.INTERACTIVE.ordinal()], queuedPerPriority[Priority.BACKGROUND.ordinal()],
+                sentCount.get(), queuedTotal, averageWaitNanos, queueWaitMaxNanos.get(), rateLimitedCount.get(), busyCount.get());
+    }
+
+    /**
+     * Queued requests fail with a {@link RejectedExecutionException}.
+     */
+    public void shutdown() {
+        drainExecutor.shutdownNow();
+
+        List<Task<?>> remaining;
+        synchronized (this) {
+            remaining = new ArrayList<>(queue);
+            queue.clear();
+            Arrays.fill(queuedPerPriority, 0);
+        }
+
+        for (Task<?> task : remaining)
+            task.future().completeExceptionally(new RejectedExecutionException("GGRequestScheduler shut down"));
+    }
+
+    /**
+     * Lower ordinal goes first.
+     */
+    public enum Priority {
+        /**
+         * Someone is waiting for the reply
+         */
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    /**
+     * @param sent             including retries
+     * @param queuedTotal      the number of requests that had to wait for a token
+     * @param averageWaitNanos averaged over only the requests that had to wait
+     * @param rateLimited      the number of rate limited responses that were retried
+     * @param busy             the number of requests rejected because the expected wait was too long
+     */
+    public record Stats(int queuedInteractive, int queuedBackground, long sent, long queuedTotal,
+                        long averageWaitNanos, long maxWaitNanos, long rateLimited, long busy) {
+    }
+
+    public record Settings(int bucketSize, long nanosPerToken, int maxRetries, long baseBackoffNanos,
+                           long maxBackoffNanos, long maxInteractiveWaitNanos, long maxBackgroundWaitNanos) {
+        /**
+         * start.gg allows 80 requests per 60 seconds.
+         * A full bucket plus a period of refills is 70 of those, so we leave some headroom
+         */
+        public static final int DEFAULT_BUCKET_SIZE = 10;
+        public static final int DEFAULT_REFILL_TOKENS = 60;
+        public static final long DEFAULT_REFILL_PERIOD_SECONDS = 60;
+        public static final int DEFAULT_MAX_RETRIES = 4;
+        public static final long DEFAULT_BASE_BACKOFF_MILLIS = 1000;
+        public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30_000;
+        /**
+         * Replies are deferred, but nobody waits longer than this
+         */
+        public static final long DEFAULT_MAX_INTERACTIVE_WAIT_MILLIS = 10_000;
+        public static final long DEFAULT_MAX_BACKGROUND_WAIT_MILLIS = 10 * 60 * 1000;
+
+        public long maxWaitNanos(@Nonnull Priority priority) {
+            return switch (priority) {
+                case INTERACTIVE -> maxInteractiveWaitNanos;
+                case BACKGROUND -> maxBackgroundWaitNanos;
+            };
+        }
+
+        public static class Builder {
+            private int bucketSize = DEFAULT_BUCKET_SIZE;
+            private int refillTokens = DEFAULT_REFILL_TOKENS;
+            private long refillPeriodMillis = DEFAULT_REFILL_PERIOD_SECONDS * 1000;
+            private int maxRetries = DEFAULT_MAX_RETRIES;
+            private long baseBackoffMillis = DEFAULT_BASE_BACKOFF_MILLIS;
+            private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+            private long maxInteractiveWaitMillis = DEFAULT_MAX_INTERACTIVE_WAIT_MILLIS;
+            private long maxBackgroundWaitMillis = DEFAULT_MAX_BACKGROUND_WAIT_MILLIS;
+
+            /**
+             * Up to bucketSize + refillTokens requests are sent within one refill period.
+             *
+             * @param bucketSize         how many requests can be sent at once after being idle
+             * @param refillTokens       how many tokens are refilled per refill period, evenly spread
+             * @param refillPeriodMillis the period the refill rate is based on
+             */
+            @Nonnull
+            public Builder setRateLimit(int bucketSize, int refillTokens, long refillPeriodMillis) {
+                this.bucketSize = bucketSize;
+                this.refillTokens = refillTokens;
+                this.refillPeriodMillis = refillPeriodMillis;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxRetries(int maxRetries) {
+                this.maxRetries = maxRetries;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setBackoffMillis(long baseBackoffMillis, long maxBackoffMillis) {
+                this.baseBackoffMillis = baseBackoffMillis;
+                this.maxBackoffMillis = maxBackoffMillis;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxInteractiveWaitMillis(long maxInteractiveWaitMillis) {
+                this.maxInteractiveWaitMillis = maxInteractiveWaitMillis;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxBackgroundWaitMillis(long maxBackgroundWaitMillis) {
+                this.maxBackgroundWaitMillis = maxBackgroundWaitMillis;
+                return this;
+            }
+
+            @Nonnull
+            public Settings build() {
+                if (bucketSize <= 0) throw new IllegalStateException("BucketSize must be positive");
+                if (refillTokens <= 0) throw new IllegalStateException("RefillTokens must be positive");
+                if (refillPeriodMillis <= 0) throw new IllegalStateException("RefillPeriodMillis must be positive");
+                if (maxRetries < 0) throw new IllegalStateException("MaxRetries may not be negative");
+                if (baseBackoffMillis <= 0) throw new IllegalStateException("BaseBackoffMillis must be positive");
+                if (maxBackoffMillis < baseBackoffMillis)
+                    throw new IllegalStateException("MaxBackoffMillis may not be less than BaseBackoffMillis");
+                if (maxInteractiveWaitMillis < 0)
+                    throw new IllegalStateException("MaxInteractiveWaitMillis may not be negative");
+                if (maxBackgroundWaitMillis < 0)
+                    throw new IllegalStateException("MaxBackgroundWaitMillis may not be negative");
+
+                return new Settings(bucketSize, TimeUnit.MILLISECONDS.toNanos(refillPeriodMillis) / refillTokens, maxRetries,
+                        TimeUnit.MILLISECONDS.toNanos(baseBackoffMillis), TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis),
+                        TimeUnit.MILLISECONDS.toNanos(maxInteractiveWaitMillis), TimeUnit.MILLISECONDS.toNanos(maxBackgroundWaitMillis));
+            }
+        }
+    }
+
+    /**
+     * @param attempts how many times it was rate limited already
+     */
+    private record Task<T>(@Nonnull Priority priority, long sequence, @Nonnull Supplier<CompletableFuture<T>> call,
+                           @Nonnull Predicate<T> rateLimited, long enqueuedNanos, @Nonnull CompletableFuture<T> future,
+                           int attempts) {
+        private Task(@Nonnull Priority priority, long sequence, @Nonnull Supplier<CompletableFuture<T>> call,
+                     @Nonnull Predicate<T> rateLimited, long enqueuedNanos, @Nonnull CompletableFuture<T> future) {
+            this(priority, sequence, call, rateLimited, enqueuedNanos, future, 0);
+        }
+
+        @Nonnull
+        private Task<T> withAttempts(int attempts) {
+            return new Task<>(priority, sequence, call, rateLimited, System.nanoTime(), future, attempts);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.github.gpluscb.toni.startgg;
+
+import com.github.gpluscb.ggjava.entity.object.response.objects.TournamentResponse;
+import com.github.gpluscb.ggjava.entity.object.response.scalars.TimestampResponse;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache for tournament searches and tournament details, bounded by entry count and estimated size.
+ * Searches only hold the light tournament info needed for ranking, details are cached per tournament.
+ * <p>
+ * Completed tournaments hardly ever change, so they are kept much longer than running or upcoming tournaments,
+ * where standings and attendee counts change all the time.
+ */
+public class TournamentSearchCache {
+    @Nonnull
+    private final Settings settings;
+
+    /**
+     * Access ordered, guarded by itself
+     */
+    @Nonnull
+    private final LinkedHashMap<Key, Entry<?>> entries;
+    /**
+     * Guarded by entries
+     */
+    private long totalBytes;
+
+    @Nonnull
+    private final LongAdder hits;
+    @Nonnull
+    private final LongAdder misses;
+    @Nonnull
+    private final LongAdder evictions;
+
+    public TournamentSearchCache(@Nonnull Settings settings) {
+        this.settings = settings;
+
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
+    }
+
+    /**
+     * @return the light tournaments, null if not cached or expired
+     */
+    @Nullable
+    public List<TournamentResponse> getSearch(@Nonnull SearchKey key) {
+        return get(key);
+    }
+
+    /**
+     * @param estimatedBytes roughly what the tournaments take up in memory
+     */
+    public void putSearch(@Nonnull SearchKey key, @Nonnull List<TournamentResponse> lightTournaments, long estimatedBytes) {
+        put(key, List.copyOf(lightTournaments), isCompleted(lightTournaments), estimatedBytes);
+    }
+
+    /**
+     * @return the tournament details, null if not cached or expired
+     */
+    @Nullable
+    public TournamentResponse getTournament(@Nonnull TournamentKey key) {
+        return get(key);
+    }
+
+    /**
+     * @param estimatedBytes roughly what the tournament takes up in memory
+     */
+    public void putTournament(@Nonnull TournamentKey key, @Nonnull TournamentResponse tournament, long estimatedBytes) {
+        put(key, tournament, isCompleted(List.of(tournament)), estimatedBytes);
+    }
+
+    @Nullable
+    private <T> T get(@Nonnull Key key) {
+        synchronized (entries) {
+            Entry<?> entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.expiresAtNanos() < 0) {
+                hits.increment();
+                // The key type determines the value type
+                @SuppressWarnings("unchecked")
+                T value = (T) entry.value();
+                return value;
+            }
+
+            if (entry != null) {
+                entries.remove(key);
+                totalBytes -= entry.estimatedBytes();
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    private void put(@Nonnull Key key, @Nonnull Object value, boolean completed, long estimatedBytes) {
+        // Wouldn't fit anyway, and would evict everything else
+        if (estimatedBytes > settings.maxBytes()) return;
+
+        long ttlNanos = completed ? settings.completedTtlNanos() : settings.activeTtlNanos();
+        Entry<?> entry = new Entry<>(value, estimatedBytes, System.nanoTime() + ttlNanos);
+
+        synchronized (entries) {
+            Entry<?> previous = entries.put(key, entry);
+            if (previous != null) totalBytes -= previous.estimatedBytes();
+            totalBytes += estimatedBytes;
+
+            Iterator<Entry<?>> eldest = entries.values().iterator();
+            while ((entries.size() > settings.maxSize() || totalBytes > settings.maxBytes()) && eldest.hasNext()) {
+                totalBytes -= eldest.next().estimatedBytes();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * A result without tournaments might find a new one soon, so it doesn't count as completed.
+     */
+    private boolean isCompleted(@Nonnull List<TournamentResponse> tournaments) {
+        if (tournaments.isEmpty()) return false;
+
+        // Standings are often only finalized a while after the end date
+        Instant completedBefore = Instant.now().minusNanos(settings.completedGraceNanos());
+        for (TournamentResponse tournament : tournaments) {
+            TimestampResponse endAt = tournament.getEndAt();
+            if (endAt == null || endAt.getValueInstant().isAfter(completedBefore)) return false;
+        }
+
+        return true;
+    }
+
+    @Nonnull
+    public Stats getStats() {
+        int size;
+        long bytes;
+        synchronized (entries) {
+            size = entries.size();
+            bytes = totalBytes;
+        }
+
+        return new Stats(size, bytes, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    public sealed interface Key permits SearchKey, TournamentKey {
+    }
+
+    /**
+     * Holds everything the search request is built from, so a hit is what a fresh search would return.
+     *
+     * @param name the search term without stopwords, lowercase, may be blank
+     * @param slug the whole search term, lowercase like slugs are
+     */
+    public record SearchKey(@Nonnull String name, @Nonnull String slug, int numTournaments) implements Key {
+    }
+
+    public record TournamentKey(long id, int numStandings) implements Key {
+    }
+
+    private record Entry<T>(@Nonnull T value, long estimatedBytes, long expiresAtNanos) {
+    }
+
+    public record Stats(int size, long estimatedBytes, long hits, long misses, long evictions) {
+    }
+
+    public record Settings(int maxSize, long maxBytes, long activeTtlNanos, long completedTtlNanos,
+                           long completedGraceNanos) {
+        public static final int DEFAULT_MAX_SIZE = 512;
+        /**
+         * A big tournament with all events is a few hundred KB
+         */
+        public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+        /**
+         * Short enough that standings during an event are still reasonably live
+         */
+        public static final long DEFAULT_ACTIVE_TTL_SECONDS = 60;
+        public static final long DEFAULT_COMPLETED_TTL_SECONDS = 6 * 60 * 60;
+        public static final long DEFAULT_COMPLETED_GRACE_SECONDS = 24 * 60 * 60;
+
+        public static class Builder {
+            private int maxSize = DEFAULT_MAX_SIZE;
+            private long maxBytes = DEFAULT_MAX_BYTES;
+            private long activeTtl = DEFAULT_ACTIVE_TTL_SECONDS;
+            @Nonnull
+            private TimeUnit activeTtlUnit = TimeUnit.SECONDS;
+            private long completedTtl = DEFAULT_COMPLETED_TTL_SECONDS;
+            @Nonnull
+            private TimeUnit completedTtlUnit = TimeUnit.SECONDS;
+            private long completedGrace = DEFAULT_COMPLETED_GRACE_SECONDS;
+            @Nonnull
+            private TimeUnit completedGraceUnit = TimeUnit.SECONDS;
+
+            @Nonnull
+            public Builder setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxBytes(long maxBytes) {
+                this.maxBytes = maxBytes;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setActiveTtl(long activeTtl, @Nonnull TimeUnit unit) {
+                this.activeTtl = activeTtl;
+                activeTtlUnit = unit;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setCompletedTtl(long completedTtl, @Nonnull TimeUnit unit) {
+                this.completedTtl = completedTtl;
+                completedTtlUnit = unit;
+                return this;
+            }
+
+            /**
+             * How long after its end date a tournament still counts as active
+             */
+            @Nonnull
+            public Builder setCompletedGrace(long completedGrace, @Nonnull TimeUnit unit) {
+                this.completedGrace = completedGrace;
+                completedGraceUnit = unit;
+                return this;
+            }
+
+            @Nonnull
+            public Settings build() {
+                if (maxSize <= 0) throw new IllegalStateException("MaxSize must be positive");
+                if (maxBytes <= 0) throw new IllegalStateException("MaxBytes must be positive");
+                if (activeTtl < 0) throw new IllegalStateException("ActiveTtl may not be negative");
+                if (completedTtl < 0) throw new IllegalStateException("CompletedTtl may not be negative");
+                if (completedGrace < 0) throw new IllegalStateException("CompletedGrace may not be negative");
+
+                return new Settings(maxSize, maxBytes, activeTtlUnit.toNanos(activeTtl), completedTtlUnit.toNanos(completedTtl),
+                        completedGraceUnit.toNanos(completedGrace));
+            }
+        }
+    }
+}
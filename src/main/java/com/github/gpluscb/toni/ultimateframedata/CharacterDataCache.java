@@ -0,0 +1,204 @@
+package com.github.gpluscb.toni.ultimateframedata;
+
+import com.github.gpluscb.toni.util.SingleFlight;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache in front of {@link UltimateframedataClient}, frame data only changes with game patches.
+ * <p>
+ * Entries younger than the TTL are served without any request.
+ * Older entries are still served immediately while they are within the max staleness, and revalidated in the background.
+ * Revalidation sends the ETag and Last-Modified of the cached response, so unchanged data isn't transferred and deserialized again.
+ */
+public class CharacterDataCache {
+    private static final Logger log = LogManager.getLogger(CharacterDataCache.class);
+
+    @Nonnull
+    private final UltimateframedataClient client;
+    @Nonnull
+    private final Settings settings;
+
+    /**
+     * Access ordered, guarded by itself
+     */
+    @Nonnull
+    private final LinkedHashMap<Long, Entry> entries;
+    @Nonnull
+    private final SingleFlight<Long, CharacterData> refreshFlight;
+
+    @Nonnull
+    private final LongAdder hits;
+    @Nonnull
+    private final LongAdder staleHits;
+    @Nonnull
+    private final LongAdder misses;
+    @Nonnull
+    private final LongAdder notModified;
+    @Nonnull
+    private final LongAdder failedRefreshes;
+
+    public CharacterDataCache(@Nonnull UltimateframedataClient client, @Nonnull Settings settings) {
+        this.client = client;
+        this.settings = settings;
+
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > settings.maxSize();
+            }
+        };
+        refreshFlight = new SingleFlight<>();
+
+        hits = new LongAdder();
+        staleHits = new LongAdder();
+        misses = new LongAdder();
+        notModified = new LongAdder();
+        failedRefreshes = new LongAdder();
+    }
+
+    /**
+     * @return completes with null if there is no character with that id
+     */
+    @Nonnull
+    public CompletableFuture<CharacterData> getCharacter(long id) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(id);
+        }
+
+        if (entry != null) {
+            long age = System.nanoTime() - entry.fetchedNanos();
+
+            if (age < settings.ttlNanos()) {
+                hits.increment();
+                return CompletableFuture.completedFuture(entry.data());
+            }
+
+            if (age < settings.ttlNanos() + settings.maxStaleNanos()) {
+                staleHits.increment();
+                refresh(id, entry).whenComplete((data, t) -> {
+                    if (t != null) log.warn("Background refresh of character {} failed", id, t);
+                });
+                return CompletableFuture.completedFuture(entry.data());
+            }
+        }
+
+        misses.increment();
+        // Even a too stale entry can still be revalidated
+        return refresh(id, entry);
+    }
+
+    @Nonnull
+    private CompletableFuture<CharacterData> refresh(long id, @Nullable Entry previous) {
+        return refreshFlight.call(id, key -> client.getCharacter(id,
+                previous == null ? null : previous.eTag(),
+                previous == null ? null : previous.lastModified()
+        ).thenApply(response -> {
+            Entry refreshed;
+            if (response.notModified()) {
+                if (previous == null) throw new IllegalStateException("Not modified response to unconditional request");
+
+                notModified.increment();
+                refreshed = new Entry(previous.data(), previous.eTag(), previous.lastModified(), System.nanoTime());
+            } else {
+                refreshed = new Entry(response.data(), response.eTag(), response.lastModified(), System.nanoTime());
+            }
+
+            synchronized (entries) {
+                entries.put(id, refreshed);
+            }
+
+            return refreshed.data();
+        }).whenComplete((data, t) -> {
+            if (t != null) failedRefreshes.increment();
+        }));
+    }
+
+    @Nonnull
+    public Stats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+
+        return new Stats(size, hits.sum(), staleHits.sum(), misses.sum(), notModified.sum(), failedRefreshes.sum());
+    }
+
+    @Nonnull
+    public SingleFlight.Stats getRefreshFlightStats() {
+        return refreshFlight.getStats();
+    }
+
+    /**
+     * @param data null if there is no character with that id
+     */
+    private record Entry(@Nullable CharacterData data, @Nullable String eTag, @Nullable String lastModified,
+                         long fetchedNanos) {
+    }
+
+    /**
+     * @param notModified revalidations that didn't need to transfer the data again
+     */
+    public record Stats(int size, long hits, long staleHits, long misses, long notModified, long failedRefreshes) {
+    }
+
+    public record Settings(int maxSize, long ttlNanos, long maxStaleNanos) {
+        /**
+         * There are less characters than this
+         */
+        public static final int DEFAULT_MAX_SIZE = 128;
+        public static final long DEFAULT_TTL_MINUTES = 60;
+        /**
+         * Stale data is still served while revalidating, this only matters if the service is down for long
+         */
+        public static final long DEFAULT_MAX_STALE_MINUTES = 7 * 24 * 60;
+
+        public static class Builder {
+            private int maxSize = DEFAULT_MAX_SIZE;
+            private long ttl = DEFAULT_TTL_MINUTES;
+            @Nonnull
+            private TimeUnit ttlUnit = TimeUnit.MINUTES;
+            private long maxStale = DEFAULT_MAX_STALE_MINUTES;
+            @Nonnull
+            private TimeUnit maxStaleUnit = TimeUnit.MINUTES;
+
+            @Nonnull
+            public Builder setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setTtl(long ttl, @Nonnull TimeUnit unit) {
+                this.ttl = ttl;
+                ttlUnit = unit;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxStale(long maxStale, @Nonnull TimeUnit unit) {
+                this.maxStale = maxStale;
+                maxStaleUnit = unit;
+                return this;
+            }
+
+            @Nonnull
+            public Settings build() {
+                if (maxSize <= 0) throw new IllegalStateException("MaxSize must be positive");
+                if (ttl < 0) throw new IllegalStateException("Ttl may not be negative");
+                if (maxStale < 0) throw new IllegalStateException("MaxStale may not be negative");
+
+                return new Settings(maxSize, ttlUnit.toNanos(ttl), maxStaleUnit.toNanos(maxStale));
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.github.gpluscb.toni.ultimateframedata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * The numeric frame data of all moves of all characters, parsed once into one int array per {@link Attribute}.
+ * Queries over the whole cast only scan those arrays.
+ * <p>
+ * Values are the first number in the text, so "5-7" is 5 and multi-hit moves like "13/20" use their first hit.
+ * Text without a number like "--" is {@link #MISSING}.
+ */
+public class FrameDataColumns {
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    private final int rowCount;
+    @Nonnull
+    private final String[] characterNames;
+    /**
+     * Per row, index into characterNames
+     */
+    @Nonnull
+    private final int[] characters;
+    @Nonnull
+    private final String[] moveNames;
+    /**
+     * Distinct normalized move names, names are shared a lot between characters
+     */
+    @Nonnull
+    private final String[] normalizedMoveNames;
+    /**
+     * Per row, index into normalizedMoveNames
+     */
+    @Nonnull
+    private final int[] normalizedMoveNameIds;
+    /**
+     * Per attribute ordinal, per row
+     */
+    @Nonnull
+    private final int[][] columns;
+
+    private FrameDataColumns(@Nonnull Builder builder) {
+        rowCount = builder.characters.size();
+        characterNames = builder.characterNames.toArray(String[]::new);
+        characters = builder.characters.stream().mapToInt(Integer::intValue).toArray();
+        moveNames = builder.moveNames.toArray(String[]::new);
+        normalizedMoveNames = builder.normalizedMoveNameIdMap.keySet().toArray(String[]::new);
+        normalizedMoveNameIds = builder.normalizedMoveNameIds.stream().mapToInt(Integer::intValue).toArray();
+
+        columns = new int[Attribute.values().length][rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            int[] values = builder.values.get(row);
+            for (int attribute = 0; attribute < values.length; attribute++) columns[attribute][row] = values[attribute];
+        }
+    }
+
+    /**
+     * @return the first integer in the value, {@link #MISSING} if there is none
+     */
+    public static int parseFrames(@Nullable String value) {
+        if (value == null) return MISSING;
+
+        for (int i = 0; i < value.length(); i++) {
+            if (!isDigit(value.charAt(i))) continue;
+
+            int start = i;
+            int result = 0;
+            for (; i < value.length() && isDigit(value.charAt(i)); i++) {
+                // No frame data is that large, probably not a frame count at all
+                if (i - start >= 6) return MISSING;
+                result = result * 10 + (value.charAt(i) - '0');
+            }
+
+            // "-5" is negative, but "3-5" is a range
+            boolean negative = start > 0 && isMinus(value.charAt(start - 1))
+                    && (start < 2 || !isDigit(value.charAt(start - 2)));
+
+            return negative ? -result : result;
+        }
+
+        return MISSING;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isMinus(char c) {
+        return c == '-' || c == '−';
+    }
+
+    /**
+     * @param min        inclusive
+     * @param max        inclusive
+     * @param moveFilter only moves whose normalized name contains the normalized filter
+     * @param descending highest values first, ties are always in character order
+     */
+    @Nonnull
+    public Result query(@Nonnull Attribute attribute, int min, int max, @Nullable String moveFilter, boolean descending, int limit) {
+        int[] column = columns[attribute.ordinal()];
+
+        // Filter each distinct name once instead of every row
+        boolean[] nameMatches = null;
+        if (moveFilter != null) {
+            String filter = MoveNameNormalizer.normalize(moveFilter);
+            nameMatches = new boolean[normalizedMoveNames.length];
+            for (int i = 0; i < normalizedMoveNames.length; i++) nameMatches[i] = normalizedMoveNames[i].contains(filter);
+        }
+
+        // Value in the high half and row in the low half, so sorting primitives sorts by value, then row
+        long[] keys = new long[rowCount];
+        int matchCount = 0;
+        for (int row = 0; row < rowCount; row++) {
+            int value = column[row];
+            if (value == MISSING || value < min || value > max) continue;
+            if (nameMatches != null && !nameMatches[normalizedMoveNameIds[row]]) continue;
+
+            keys[matchCount++] = ((long) (descending ? -value : value) << 32) | row;
+        }
+
+        Arrays.sort(keys, 0, matchCount);
+
+        List<Row> rows = new ArrayList<>(Math.min(limit, matchCount));
+        for (int i = 0; i < matchCount && i < limit; i++) {
+            int row = (int) keys[i];
+            rows.add(new Row(characterNames[characters[row]], moveNames[row], column[row]));
+        }
+
+        return new Result(rows, matchCount);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Only keeps the parsed values, so characters can be decoded one at a time.
+     */
+    public static class Builder {
+        @Nonnull
+        private final List<String> characterNames = new ArrayList<>();
+        @Nonnull
+        private final List<Integer> characters = new ArrayList<>();
+        @Nonnull
+        private final List<String> moveNames = new ArrayList<>();
+        @Nonnull
+        private final Map<String, Integer> normalizedMoveNameIdMap = new LinkedHashMap<>();
+        @Nonnull
+        private final List<Integer> normalizedMoveNameIds = new ArrayList<>();
+        /**
+         * Per row, per attribute ordinal
+         */
+        @Nonnull
+        private final List<int[]> values = new ArrayList<>();
+
+        /**
+         * Includes misc moves like grabs.
+         * Characters should be added in id order, so equal values are in a stable order.
+         */
+        @Nonnull
+        public Builder addCharacter(@Nonnull CharacterData data) {
+            int character = characterNames.size();
+            characterNames.add(data.name());
+
+            for (CharacterData.MoveSection section : data.moveSections())
+                for (CharacterData.MoveData move : section.moves()) addMove(character, move);
+
+            for (CharacterData.MoveData move : data.miscData().moves()) addMove(character, move);
+
+            return this;
+        }
+
+        private void addMove(int character, @Nonnull CharacterData.MoveData move) {
+            characters.add(character);
+
+            String moveName = move.moveName();
+            moveNames.add(moveName == null ? "Some Unnamed Move" : moveName);
+            String normalizedMoveName = moveName == null ? "" : MoveNameNormalizer.normalize(moveName);
+            normalizedMoveNameIds.add(normalizedMoveNameIdMap.computeIfAbsent(normalizedMoveName, name -> normalizedMoveNameIdMap.size()));
+
+            int[] moveValues = new int[Attribute.values().length];
+            for (Attribute attribute : Attribute.values())
+                moveValues[attribute.ordinal()] = parseFrames(attribute.getField().apply(move));
+            values.add(moveValues);
+        }
+
+        @Nonnull
+        public FrameDataColumns build() {
+            return new FrameDataColumns(this);
+        }
+    }
+
+    /**
+     * @param matchCount how many moves matched in total, rows may be limited
+     */
+    public record Result(@Nonnull List<Row> rows, int matchCount) {
+    }
+
+    public record Row(@Nonnull String characterName, @Nonnull String moveName, int value) {
+    }
+
+    public enum Attribute {
+        STARTUP("startup", "Startup", false, CharacterData.MoveData::startup),
+        TOTAL_FRAMES("total-frames", "Total Frames", false, CharacterData.MoveData::totalFrames),
+        LANDING_LAG("landing-lag", "Landing Lag", false, CharacterData.MoveData::landingLag),
+        ADVANTAGE("advantage", "Advantage", true, CharacterData.MoveData::advantage),
+        SHIELD_STUN("shield-stun", "Shield Stun", true, CharacterData.MoveData::shieldStun),
+        SHIELD_LAG("shield-lag", "Shield Lag", false, CharacterData.MoveData::shieldLag),
+        ENDLAG("endlag", "Endlag", false, CharacterData.MoveData::endlag);
+
+        @Nonnull
+        private final String id;
+        @Nonnull
+        private final String displayName;
+        private final boolean higherIsBetter;
+        @Nonnull
+        private final Function<CharacterData.MoveData, String> field;
+
+        Attribute(@Nonnull String id, @Nonnull String displayName, boolean higherIsBetter, @Nonnull Function<CharacterData.MoveData, String> field) {
+            this.id = id;
+            this.displayName = displayName;
+            this.higherIsBetter = higherIsBetter;
+            this.field = field;
+        }
+
+        @Nullable
+        public static Attribute getForId(@Nonnull String id) {
+            return Arrays.stream(values()).filter(attribute -> attribute.id.equals(id)).findAny().orElse(null);
+        }
+
+        @Nonnull
+        public String getId() {
+            return id;
+        }
+
+        @Nonnull
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public boolean isHigherBetter() {
+            return higherIsBetter;
+        }
+
+        @Nonnull
+        public Function<CharacterData.MoveData, String> getField() {
+            return field;
+        }
+    }
+}
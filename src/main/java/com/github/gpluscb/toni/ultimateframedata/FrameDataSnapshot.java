@@ -0,0 +1,356 @@
+package com.github.gpluscb.toni.ultimateframedata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read-only frame data of all characters, memory mapped from a file so it doesn't live on the heap.
+ * Only the {@link CharacterData} that is asked for is decoded.
+ * <p>
+ * Layout, all numbers are big endian ints unless noted:
+ * <ol>
+ *     <li>Header: magic, version, character count, string count, offset of the records section</li>
+ *     <li>Directory: per character, sorted by id, the id (long) and the offset of its record relative to the records section</li>
+ *     <li>String table: string count + 1 absolute offsets, followed by the deduplicated UTF-8 string bytes.
+ *     String i spans from offset i to offset i + 1</li>
+ *     <li>Records: {@link CharacterData} flattened into ints, strings are string table indices or -1 for null</li>
+ * </ol>
+ * Only absolute reads are used on the buffer, so one snapshot can be read from multiple threads.
+ */
+public class FrameDataSnapshot {
+    private static final int MAGIC = 0x55464453; // "UFDS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+    private static final int DIRECTORY_ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int NULL_STRING = -1;
+
+    @Nonnull
+    private final ByteBuffer buffer;
+    private final int characterCount;
+    private final int stringCount;
+    private final int stringOffsetsStart;
+    private final int recordsStart;
+
+    private FrameDataSnapshot(@Nonnull ByteBuffer buffer) {
+        this.buffer = buffer;
+
+        if (buffer.limit() < HEADER_SIZE) throw new IllegalArgumentException("Corrupt snapshot: Truncated header");
+        if (buffer.getInt(0) != MAGIC) throw new IllegalArgumentException("Not a frame data snapshot");
+        int version = buffer.getInt(Integer.BYTES);
+        if (version != VERSION) throw new IllegalArgumentException(String.format("Unsupported snapshot version: %d", version));
+
+        characterCount = buffer.getInt(2 * Integer.BYTES);
+        stringCount = buffer.getInt(3 * Integer.BYTES);
+        recordsStart = buffer.getInt(4 * Integer.BYTES);
+        if (characterCount < 0 || stringCount < 0)
+            throw new IllegalArgumentException("Corrupt snapshot: Negative count");
+
+        // Longs, so corrupt counts can't overflow
+        long directoryEnd = HEADER_SIZE + (long) characterCount * DIRECTORY_ENTRY_SIZE;
+        long stringOffsetsEnd = directoryEnd + ((long) stringCount + 1) * Integer.BYTES;
+        if (stringOffsetsEnd > recordsStart || recordsStart > buffer.limit())
+            throw new IllegalArgumentException("Corrupt snapshot: Sections out of bounds");
+        stringOffsetsStart = (int) directoryEnd;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the file is not a valid snapshot
+     */
+    @Nonnull
+    public static FrameDataSnapshot open(@Nonnull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new FrameDataSnapshot(mapped);
+        }
+    }
+
+    /**
+     * @return null if the character is not in this snapshot
+     */
+    @Nullable
+    public CharacterData getCharacter(long id) {
+        int low = 0;
+        int high = characterCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = HEADER_SIZE + mid * DIRECTORY_ENTRY_SIZE;
+            long midId = buffer.getLong(entry);
+
+            if (midId < id) low = mid + 1;
+            else if (midId > id) high = mid - 1;
+            else return new Reader(recordsStart + buffer.getInt(entry + Long.BYTES)).readCharacter();
+        }
+
+        return null;
+    }
+
+    public int getCharacterCount() {
+        return characterCount;
+    }
+
+    @Nullable
+    private String getString(int index) {
+        if (index == NULL_STRING) return null;
+        if (index < 0 || index >= stringCount)
+            throw new IllegalStateException(String.format("Corrupt snapshot: String index %d out of bounds", index));
+
+        int start = buffer.getInt(stringOffsetsStart + index * Integer.BYTES);
+        int end = buffer.getInt(stringOffsetsStart + (index + 1) * Integer.BYTES);
+
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes to a temporary file first and then moves it into place, so readers never see a partial snapshot.
+     */
+    public static void write(@Nonnull Path path, @Nonnull Map<Long, CharacterData> characters) throws IOException {
+        Writer writer = new Writer();
+        // Sorted for binary search
+        SortedMap<Long, Integer> recordOffsets = new TreeMap<>();
+        for (Map.Entry<Long, CharacterData> character : characters.entrySet())
+            recordOffsets.put(character.getKey(), writer.writeCharacter(character.getValue()));
+
+        List<byte[]> strings = writer.strings;
+        int stringOffsetsStart = HEADER_SIZE + recordOffsets.size() * DIRECTORY_ENTRY_SIZE;
+        int stringDataStart = stringOffsetsStart + (strings.size() + 1) * Integer.BYTES;
+        int stringDataSize = strings.stream().mapToInt(bytes -> bytes.length).sum();
+        int recordsStart = stringDataStart + stringDataSize;
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(recordOffsets.size());
+                out.writeInt(strings.size());
+                out.writeInt(recordsStart);
+
+                for (Map.Entry<Long, Integer> entry : recordOffsets.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+
+                int offset = stringDataStart;
+                for (byte[] string : strings) {
+                    out.writeInt(offset);
+                    offset += string.length;
+                }
+                out.writeInt(offset);
+
+                for (byte[] string : strings) out.write(string);
+
+                writer.records.writeTo(out);
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Must mirror {@link Writer}
+     */
+    private class Reader {
+        private int position;
+
+        private Reader(int position) {
+            this.position = position;
+        }
+
+        private int readInt() {
+            int value = buffer.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        @Nullable
+        private String readString() {
+            return getString(readInt());
+        }
+
+        @Nonnull
+        private String readNonnullString() {
+            String string = readString();
+            if (string == null) throw new IllegalStateException("Corrupt snapshot: Unexpected null string");
+            return string;
+        }
+
+        @Nonnull
+        private CharacterData readCharacter() {
+            String ufdUrl = readNonnullString();
+            String name = readNonnullString();
+
+            int sectionCount = readInt();
+            List<CharacterData.MoveSection> sections = new ArrayList<>(sectionCount);
+            for (int i = 0; i < sectionCount; i++) {
+                String sectionName = readNonnullString();
+                String htmlId = readNonnullString();
+                sections.add(new CharacterData.MoveSection(sectionName, htmlId, readMoves()));
+            }
+
+            CharacterData.StatsData stats = readInt() == 0 ? null : readStats();
+            List<CharacterData.MoveData> miscMoves = readMoves();
+            String miscHtmlId = readNonnullString();
+
+            return new CharacterData(ufdUrl, name, sections, new CharacterData.MiscData(stats, miscMoves, miscHtmlId));
+        }
+
+        @Nonnull
+        private List<CharacterData.MoveData> readMoves() {
+            int moveCount = readInt();
+            List<CharacterData.MoveData> moves = new ArrayList<>(moveCount);
+            for (int i = 0; i < moveCount; i++) {
+                int hitboxCount = readInt();
+                List<CharacterData.HitboxData> hitboxes = new ArrayList<>(hitboxCount);
+                for (int j = 0; j < hitboxCount; j++) {
+                    String hitboxName = readString();
+                    hitboxes.add(new CharacterData.HitboxData(hitboxName, readNonnullString()));
+                }
+
+                moves.add(new CharacterData.MoveData(hitboxes, readString(), readString(), readString(), readString(),
+                        readString(), readString(), readString(), readString(), readString(), readString(),
+                        readString(), readString(), readString(), readString()));
+            }
+
+            return moves;
+        }
+
+        @Nonnull
+        private CharacterData.StatsData readStats() {
+            String weight = readString();
+            String gravity = readString();
+            String walkSpeed = readString();
+            String runSpeed = readString();
+            String initialDash = readString();
+            String airSpeed = readString();
+            String totalAirAcceleration = readString();
+            String shFhShffFhffFrames = readString();
+            String fallSpeedFastFallSpeed = readString();
+
+            int oosCount = readInt();
+            List<String> oosOptions = new ArrayList<>(oosCount);
+            for (int i = 0; i < oosCount; i++) oosOptions.add(readNonnullString());
+
+            String shieldGrab = readString();
+            String shieldDrop = readString();
+            String jumpSquat = readString();
+
+            return new CharacterData.StatsData(weight, gravity, walkSpeed, runSpeed, initialDash, airSpeed,
+                    totalAirAcceleration, shFhShffFhffFrames, fallSpeedFastFallSpeed, oosOptions, shieldGrab,
+                    shieldDrop, jumpSquat);
+        }
+    }
+
+    /**
+     * Must mirror {@link Reader}
+     */
+    private static class Writer {
+        @Nonnull
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+        @Nonnull
+        private final List<byte[]> strings = new ArrayList<>();
+        @Nonnull
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        @Nonnull
+        private final DataOutputStream out = new DataOutputStream(records);
+
+        /**
+         * @return the offset of the record relative to the records section
+         */
+        private int writeCharacter(@Nonnull CharacterData character) throws IOException {
+            int offset = out.size();
+
+            writeString(character.ufdUrl());
+            writeString(character.name());
+
+            out.writeInt(character.moveSections().size());
+            for (CharacterData.MoveSection section : character.moveSections()) {
+                writeString(section.sectionName());
+                writeString(section.htmlId());
+                writeMoves(section.moves());
+            }
+
+            CharacterData.MiscData misc = character.miscData();
+            CharacterData.StatsData stats = misc.stats();
+            out.writeInt(stats == null ? 0 : 1);
+            if (stats != null) writeStats(stats);
+            writeMoves(misc.moves());
+            writeString(misc.htmlId());
+
+            return offset;
+        }
+
+        private void writeMoves(@Nonnull List<CharacterData.MoveData> moves) throws IOException {
+            out.writeInt(moves.size());
+            for (CharacterData.MoveData move : moves) {
+                out.writeInt(move.hitboxes().size());
+                for (CharacterData.HitboxData hitbox : move.hitboxes()) {
+                    writeString(hitbox.name());
+                    writeString(hitbox.url());
+                }
+
+                writeString(move.moveName());
+                writeString(move.startup());
+                writeString(move.totalFrames());
+                writeString(move.landingLag());
+                writeString(move.notes());
+                writeString(move.baseDamage());
+                writeString(move.shieldLag());
+                writeString(move.shieldStun());
+                writeString(move.whichHitbox());
+                writeString(move.advantage());
+                writeString(move.activeFrames());
+                writeString(move.hopsAutocancel());
+                writeString(move.hopsActionable());
+                writeString(move.endlag());
+            }
+        }
+
+        private void writeStats(@Nonnull CharacterData.StatsData stats) throws IOException {
+            writeString(stats.weight());
+            writeString(stats.gravity());
+            writeString(stats.walkSpeed());
+            writeString(stats.runSpeed());
+            writeString(stats.initialDash());
+            writeString(stats.airSpeed());
+            writeString(stats.totalAirAcceleration());
+            writeString(stats.shFhShffFhffFrames());
+            writeString(stats.fallSpeedFastFallSpeed());
+
+            out.writeInt(stats.oosOptions().size());
+            for (String oosOption : stats.oosOptions()) writeString(oosOption);
+
+            writeString(stats.shieldGrab());
+            writeString(stats.shieldDrop());
+            writeString(stats.jumpSquat());
+        }
+
+        private void writeString(@Nullable String string) throws IOException {
+            if (string == null) {
+                out.writeInt(NULL_STRING);
+                return;
+            }
+
+            int index = stringIndices.computeIfAbsent(string, s -> {
+                strings.add(s.getBytes(StandardCharsets.UTF_8));
+                return strings.size() - 1;
+            });
+            out.writeInt(index);
+        }
+    }
+}
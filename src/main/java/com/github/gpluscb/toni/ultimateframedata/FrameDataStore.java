@@ -0,0 +1,283 @@
+package com.github.gpluscb.toni.ultimateframedata;
+
+import com.github.gpluscb.toni.smashset.Character;
+import com.github.gpluscb.toni.smashset.CharacterTree;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import okhttp3.OkHttpClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves frame data from a {@link FrameDataSnapshot}, so lookups don't depend on the ultimateframedata service being up.
+ * The service is only used to rebuild the snapshot in the background,
+ * and for characters that are missing from the snapshot, through the {@link CharacterDataCache}.
+ */
+public class FrameDataStore {
+    private static final Logger log = LogManager.getLogger(FrameDataStore.class);
+
+    /**
+     * Frame data only changes with game patches
+     */
+    private static final long REFRESH_INTERVAL_HOURS = 24;
+
+    @Nonnull
+    private final ScheduledThreadPoolExecutor executor;
+
+    @Nonnull
+    private final UltimateframedataClient client;
+    @Nonnull
+    private final CharacterDataCache fallback;
+    @Nonnull
+    private final Path path;
+    @Nonnull
+    private final List<Long> characterIds;
+
+    @Nullable
+    private volatile LoadedSnapshot snapshot;
+    /**
+     * Move indices for characters served by the fallback, reused while the fallback serves the same data
+     */
+    @Nonnull
+    private final Map<Long, IndexedCharacterData> fallbackIndexed;
+
+    public FrameDataStore(@Nonnull UltimateframedataClient client, @Nonnull CharacterDataCache fallback, @Nonnull Path path, @Nonnull List<Long> characterIds) {
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setThreadFactory(r -> new Thread(r, "FrameDataStore Refresh-Thread"));
+
+        this.client = client;
+        this.fallback = fallback;
+        this.path = path;
+        this.characterIds = characterIds;
+        fallbackIndexed = new ConcurrentHashMap<>();
+
+        if (Files.exists(path)) {
+            try {
+                LoadedSnapshot loaded = load(path, characterIds);
+                snapshot = loaded;
+                log.debug("Loaded frame data snapshot with {} characters", loaded.snapshot().getCharacterCount());
+            } catch (IOException | RuntimeException e) {
+                // Corrupt records only show up while decoding, with all kinds of exceptions
+                log.warn("Could not load frame data snapshot, it will be rebuilt", e);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot periodically, immediately if there is none yet.
+     */
+    public void start() {
+        long initialDelay = snapshot == null ? 0 : REFRESH_INTERVAL_HOURS;
+        executor.scheduleAtFixedRate(() -> refresh().whenComplete((r, t) -> {
+            if (t != null) log.warn("Frame data snapshot refresh failed, keeping the old one", t);
+        }), initialDelay, REFRESH_INTERVAL_HOURS, TimeUnit.HOURS);
+    }
+
+    /**
+     * Move indices, frame data columns and the punish index are built once per snapshot,
+     * so resolving moves doesn't need to look at every move name, and queries don't need to parse anything.
+     * Characters are decoded one at a time and only the parsed indices stay on the heap.
+     */
+    @Nonnull
+    private static LoadedSnapshot load(@Nonnull Path path, @Nonnull List<Long> characterIds) throws IOException {
+        FrameDataSnapshot snapshot = FrameDataSnapshot.open(path);
+
+        Map<Long, MoveIndex> moveIndices = new HashMap<>();
+        FrameDataColumns.Builder columns = new FrameDataColumns.Builder();
+        PunishIndex.Builder punishIndex = new PunishIndex.Builder();
+        // In id order, like the snapshot directory
+        for (long id : new TreeSet<>(characterIds)) {
+            CharacterData data = snapshot.getCharacter(id);
+            if (data == null) continue;
+
+            moveIndices.put(id, new MoveIndex(data));
+            columns.addCharacter(data);
+            punishIndex.addCharacter(id, data);
+        }
+
+        return new LoadedSnapshot(snapshot, moveIndices, columns.build(), punishIndex.build());
+    }
+
+    /**
+     * @return completes with null if there is no character with that id
+     */
+    @Nonnull
+    public CompletableFuture<CharacterData> getCharacter(long id) {
+        LoadedSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            CharacterData data = snapshot.snapshot().getCharacter(id);
+            if (data != null) return CompletableFuture.completedFuture(data);
+        }
+
+        return fallback.getCharacter(id);
+    }
+
+    /**
+     * @return completes with null if there is no character with that id
+     */
+    @Nonnull
+    public CompletableFuture<IndexedCharacterData> getIndexedCharacter(long id) {
+        LoadedSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            CharacterData data = snapshot.snapshot().getCharacter(id);
+            MoveIndex moveIndex = snapshot.moveIndices().get(id);
+            if (data != null && moveIndex != null)
+                return CompletableFuture.completedFuture(new IndexedCharacterData(data, moveIndex));
+        }
+
+        return fallback.getCharacter(id).thenApply(data -> {
+            if (data == null) return null;
+            // The cache hands out the same instance until it refreshes
+            return fallbackIndexed.compute(id, (key, previous) -> previous != null && previous.data() == data
+                    ? previous
+                    : new IndexedCharacterData(data, new MoveIndex(data)));
+        });
+    }
+
+    /**
+     * Never waits for a request, for autocomplete.
+     *
+     * @return null if the move index isn't loaded yet
+     */
+    @Nullable
+    public MoveIndex getLoadedMoveIndex(long id) {
+        LoadedSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            MoveIndex moveIndex = snapshot.moveIndices().get(id);
+            if (moveIndex != null) return moveIndex;
+        }
+
+        IndexedCharacterData fallbackData = fallbackIndexed.get(id);
+        return fallbackData == null ? null : fallbackData.moveIndex();
+    }
+
+    /**
+     * Fetches all characters, and only replaces the snapshot if all of them could be fetched.
+     */
+    @Nonnull
+    public CompletableFuture<Void> refresh() {
+        return fetchAll(client, characterIds).thenAcceptAsync(characters -> {
+            try {
+                FrameDataSnapshot.write(path, characters);
+                // The old mapping stays valid for readers still using it, it is unmapped once it is garbage collected
+                snapshot = load(path, characterIds);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            log.debug("Refreshed frame data snapshot with {} characters", characters.size());
+        }, executor);
+    }
+
+    /**
+     * @return characters the service doesn't know are left out
+     */
+    @Nonnull
+    private static CompletableFuture<Map<Long, CharacterData>> fetchAll(@Nonnull UltimateframedataClient client, @Nonnull List<Long> characterIds) {
+        Map<Long, CompletableFuture<CharacterData>> futures = new HashMap<>();
+        for (long id : characterIds) futures.put(id, client.getCharacter(id));
+
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+            Map<Long, CharacterData> characters = new HashMap<>();
+            futures.forEach((id, future) -> {
+                CharacterData data = future.join();
+                if (data != null) characters.put(id, data);
+            });
+
+            return characters;
+        });
+    }
+
+    /**
+     * @return null if no snapshot is loaded yet
+     */
+    @Nullable
+    public FrameDataColumns getColumns() {
+        LoadedSnapshot snapshot = this.snapshot;
+        return snapshot == null ? null : snapshot.columns();
+    }
+
+    /**
+     * @return null if no snapshot is loaded yet
+     */
+    @Nullable
+    public PunishIndex getPunishIndex() {
+        LoadedSnapshot snapshot = this.snapshot;
+        return snapshot == null ? null : snapshot.punishIndex();
+    }
+
+    @Nullable
+    public FrameDataSnapshot getSnapshot() {
+        LoadedSnapshot snapshot = this.snapshot;
+        return snapshot == null ? null : snapshot.snapshot();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public record IndexedCharacterData(@Nonnull CharacterData data, @Nonnull MoveIndex moveIndex) {
+    }
+
+    private record LoadedSnapshot(@Nonnull FrameDataSnapshot snapshot, @Nonnull Map<Long, MoveIndex> moveIndices,
+                                  @Nonnull FrameDataColumns columns, @Nonnull PunishIndex punishIndex) {
+    }
+
+    @Nonnull
+    public static List<Long> getCharacterIds(@Nonnull CharacterTree characterTree) {
+        return characterTree.getAllCharacters().stream()
+                .map(Character::id)
+                .filter(Objects::nonNull)
+                .map(Short::longValue)
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Builds a snapshot from the ultimateframedata service without starting the bot.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            log.error("Give characters file as first argument and snapshot location as second argument");
+            return;
+        }
+
+        List<Long> characterIds;
+        try (Reader file = new FileReader(args[0])) {
+            JsonArray json = JsonParser.parseReader(file).getAsJsonArray();
+            characterIds = getCharacterIds(CharacterTree.fromJson(json));
+        } catch (Exception e) {
+            log.error("Exception while loading characters", e);
+            return;
+        }
+
+        OkHttpClient okHttp = new OkHttpClient.Builder().build();
+        UltimateframedataClient client = new UltimateframedataClient(okHttp, new Gson());
+
+        try {
+            Map<Long, CharacterData> characters = fetchAll(client, characterIds).join();
+            FrameDataSnapshot.write(Path.of(args[1]), characters);
+            log.info("Wrote frame data snapshot with {} of {} characters", characters.size(), characterIds.size());
+        } catch (Exception e) {
+            log.error("Exception while building frame data snapshot", e);
+        } finally {
+            // The client's callback threads would keep us alive
+            System.exit(0);
+        }
+    }
+}
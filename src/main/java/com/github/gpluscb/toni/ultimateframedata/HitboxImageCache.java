@@ -0,0 +1,447 @@
+package com.github.gpluscb.toni.ultimateframedata;
+
+import com.github.gpluscb.toni.util.SingleFlight;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Keeps hitbox images on disk so embeds can attach them instead of linking the upstream host.
+ * <p>
+ * Images are stored by the SHA-256 of their content, so identical images behind different URLs are stored once.
+ * An append-only index file maps URLs to content hashes, it is rewritten without dead lines when eviction leaves too many of them.
+ * When the images exceed the size budget, the least recently used ones are deleted.
+ * The file modification time is the last use, so the order survives restarts.
+ * <p>
+ * Downloads run on a small fixed pool with a bounded queue, prefetches are dropped when the queue is full.
+ */
+public class HitboxImageCache {
+    private static final Logger log = LogManager.getLogger(HitboxImageCache.class);
+
+    private static final String INDEX_FILE_NAME = "index.tsv";
+
+    @Nonnull
+    private final OkHttpClient client;
+    @Nonnull
+    private final Path directory;
+    @Nonnull
+    private final Settings settings;
+
+    @Nonnull
+    private final ThreadPoolExecutor executor;
+    @Nonnull
+    private final SingleFlight<String, String> downloadFlight;
+
+    /**
+     * URL to content hash, guarded by this
+     */
+    @Nonnull
+    private final Map<String, String> hashes;
+    /**
+     * Blob file name to size, access ordered, guarded by this
+     */
+    @Nonnull
+    private final LinkedHashMap<String, Long> blobs;
+    /**
+     * Guarded by this
+     */
+    private long totalBytes;
+    /**
+     * Guarded by this
+     */
+    @Nonnull
+    private Writer indexWriter;
+    /**
+     * Lines in the index file including dead ones, guarded by this
+     */
+    private int indexLines;
+
+    public HitboxImageCache(@Nonnull OkHttpClient client, @Nonnull Path directory, @Nonnull Settings settings) throws IOException {
+        this.client = client;
+        this.directory = directory;
+        this.settings = settings;
+
+        executor = new ThreadPoolExecutor(settings.maxConcurrentDownloads(), settings.maxConcurrentDownloads(),
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(settings.maxQueuedDownloads()), new ThreadFactory() {
+            int i;
+
+            @Override
+            public Thread newThread(@Nonnull Runnable runnable) {
+                Thread thread = new Thread(runnable, String.format("HitboxImageCache [%d] Download-Thread", i++));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        downloadFlight = new SingleFlight<>();
+
+        hashes = new HashMap<>();
+        blobs = new LinkedHashMap<>(16, 0.75f, true);
+
+        Files.createDirectories(directory);
+        loadBlobs();
+        loadIndex();
+
+        indexWriter = writeIndex();
+
+        evict();
+        log.debug("Loaded {} hitbox images, {} bytes", blobs.size(), totalBytes);
+    }
+
+    private void loadBlobs() throws IOException {
+        List<Path> blobFiles;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{gif,png,jpg,jpeg,webp,img}")) {
+            blobFiles = new ArrayList<>();
+            stream.forEach(blobFiles::add);
+        }
+
+        // Least recently used first, so the access order matches
+        Map<Path, FileTime> lastUsed = new HashMap<>();
+        for (Path blob : blobFiles) lastUsed.put(blob, Files.getLastModifiedTime(blob));
+        blobFiles.sort(Comparator.comparing(lastUsed::get));
+
+        for (Path blob : blobFiles) {
+            long size = Files.size(blob);
+            blobs.put(blob.getFileName().toString(), size);
+            totalBytes += size;
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        Path index = directory.resolve(INDEX_FILE_NAME);
+        if (!Files.exists(index)) return;
+
+        try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0) continue;
+
+                String blob = line.substring(tab + 1);
+                // Evicted blobs leave dead lines behind
+                if (blobs.containsKey(blob)) hashes.put(line.substring(0, tab), blob);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the index without dead entries, then only appends.
+     *
+     * @return the writer to append to the new index
+     */
+    @Nonnull
+    private synchronized Writer writeIndex() throws IOException {
+        Path index = directory.resolve(INDEX_FILE_NAME);
+        Path tempIndex = Files.createTempFile(directory, INDEX_FILE_NAME, ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempIndex, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> entry : hashes.entrySet())
+                    writer.write(String.format("%s\t%s%n", entry.getKey(), entry.getValue()));
+            }
+            Files.move(tempIndex, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempIndex);
+        }
+
+        indexLines = hashes.size();
+        return Files.newBufferedWriter(index, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Counts as a use for eviction. Never downloads, and never touches the file on the calling thread.
+     * The file can still be evicted before it is read, see {@link #dropCached(Image)}.
+     *
+     * @return null if the image isn't on disk
+     */
+    @Nullable
+    public Image getCached(@Nonnull String url) {
+        String blob;
+        synchronized (this) {
+            blob = hashes.get(url);
+            if (blob == null) return null;
+
+            // Marks as recently used
+            blobs.get(blob);
+        }
+
+        Path path = directory.resolve(blob);
+        // Best effort, the modification time only keeps the order across restarts
+        try {
+            executor.execute(() -> {
+                try {
+                    Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+                } catch (IOException e) {
+                    log.debug("Could not mark hitbox image as used: {}", blob, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Download queue full, not marking hitbox image as used: {}", blob);
+        }
+
+        return new Image(path, blob.substring(blob.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * For images from {@link #getCached(String)} that turned out to be unreadable.
+     */
+    public void dropCached(@Nonnull Image image) {
+        String blob = image.path().getFileName().toString();
+        log.warn("Cached hitbox image unreadable, dropping it: {}", blob);
+        removeBlob(blob);
+    }
+
+    /**
+     * Downloads all hitbox images of the character that aren't on disk yet, as far as the download queue allows.
+     */
+    public void prefetch(@Nonnull CharacterData data) {
+        List<CharacterData.MoveData> moves = new ArrayList<>(data.miscData().moves());
+        for (CharacterData.MoveSection section : data.moveSections()) moves.addAll(section.moves());
+
+        for (CharacterData.MoveData move : moves)
+            for (CharacterData.HitboxData hitbox : move.hitboxes()) prefetch(hitbox.url());
+    }
+
+    public void prefetch(@Nonnull String url) {
+        synchronized (this) {
+            if (hashes.containsKey(url)) return;
+        }
+
+        // Concurrent prefetches of the same url share one download
+        downloadFlight.call(url, this::download).whenComplete((blob, t) -> {
+            if (t instanceof CompletionException && t.getCause() instanceof RejectedExecutionException) return;
+            if (t != null) log.debug("Hitbox image download failed: {}", url, t);
+        });
+    }
+
+    /**
+     * @return completes with the blob file name
+     */
+    @Nonnull
+    private CompletableFuture<String> download(@Nonnull String url) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return downloadBlocking(url);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    @Nonnull
+    private String downloadBlocking(@Nonnull String url) throws IOException {
+        Request request = new Request.Builder().url(url).build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null)
+                throw new IOException(String.format("Unsuccessful response: %d", response.code()));
+
+            if (body.contentLength() > settings.maxImageBytes())
+                throw new IOException(String.format("Image too large: %d bytes", body.contentLength()));
+
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is always supported", e);
+            }
+
+            Path temp = Files.createTempFile(directory, "download", ".tmp");
+            try {
+                long size = 0;
+                try (InputStream in = body.byteStream();
+                     OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)), digest)) {
+                    // Chunked responses don't say how large they are, so stop as soon as it's too much
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) >= 0) {
+                        size += read;
+                        if (size > settings.maxImageBytes())
+                            throw new IOException(String.format("Image too large: over %d bytes", settings.maxImageBytes()));
+                        out.write(buffer, 0, read);
+                    }
+                }
+
+                String blob = String.format("%s.%s", HexFormat.of().formatHex(digest.digest()), extension(url));
+                Path blobPath = directory.resolve(blob);
+                Files.move(temp, blobPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                synchronized (this) {
+                    Long previousSize = blobs.put(blob, size);
+                    if (previousSize != null) totalBytes -= previousSize;
+                    totalBytes += size;
+
+                    hashes.put(url, blob);
+                    indexWriter.write(String.format("%s\t%s%n", url, blob));
+                    indexWriter.flush();
+                    indexLines++;
+
+                    evict();
+                }
+
+                return blob;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    @Nonnull
+    private static String extension(@Nonnull String url) {
+        String path = url.toLowerCase(Locale.ROOT);
+        int query = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+
+        for (String extension : List.of("gif", "png", "jpg", "jpeg", "webp"))
+            if (path.endsWith("." + extension)) return extension;
+
+        return "img";
+    }
+
+    private synchronized void evict() {
+        boolean evicted = false;
+        Iterator<Map.Entry<String, Long>> eldest = blobs.entrySet().iterator();
+        while (totalBytes > settings.maxBytes() && eldest.hasNext()) {
+            evicted = true;
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            totalBytes -= entry.getValue();
+            hashes.values().removeIf(entry.getKey()::equals);
+
+            try {
+                Files.deleteIfExists(directory.resolve(entry.getKey()));
+            } catch (IOException e) {
+                log.warn("Could not delete evicted hitbox image {}", entry.getKey(), e);
+            }
+        }
+
+        // Compacting once dead lines outnumber live ones keeps the rewrites amortized
+        if (evicted && indexLines > 2 * hashes.size()) compactIndex();
+    }
+
+    private synchronized void compactIndex() {
+        Writer previous = indexWriter;
+        try {
+            indexWriter = writeIndex();
+        } catch (IOException e) {
+            log.warn("Could not compact the hitbox image index, appending to the old one", e);
+            return;
+        }
+
+        try {
+            previous.close();
+        } catch (IOException e) {
+            log.catching(e);
+        }
+    }
+
+    private synchronized void removeBlob(@Nonnull String blob) {
+        Long size = blobs.remove(blob);
+        if (size != null) totalBytes -= size;
+        hashes.values().removeIf(blob::equals);
+    }
+
+    public synchronized int getImageCount() {
+        return blobs.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @Nonnull
+    public SingleFlight.Stats getDownloadFlightStats() {
+        return downloadFlight.getStats();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        synchronized (this) {
+            try {
+                indexWriter.close();
+            } catch (IOException e) {
+                log.catching(e);
+            }
+        }
+    }
+
+    /**
+     * @param extension without the dot, "img" if unknown
+     */
+    public record Image(@Nonnull Path path, @Nonnull String extension) {
+    }
+
+    public record Settings(long maxBytes, long maxImageBytes, int maxConcurrentDownloads, int maxQueuedDownloads) {
+        /**
+         * Same as the example config
+         */
+        public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+        /**
+         * Discord won't take larger attachments from bots anyway
+         */
+        public static final long DEFAULT_MAX_IMAGE_BYTES = 8L * 1024 * 1024;
+        /**
+         * Be nice to the upstream host
+         */
+        public static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 4;
+        /**
+         * Enough for all hitboxes of a few characters
+         */
+        public static final int DEFAULT_MAX_QUEUED_DOWNLOADS = 1024;
+
+        public static class Builder {
+            private long maxBytes = DEFAULT_MAX_BYTES;
+            private long maxImageBytes = DEFAULT_MAX_IMAGE_BYTES;
+            private int maxConcurrentDownloads = DEFAULT_MAX_CONCURRENT_DOWNLOADS;
+            private int maxQueuedDownloads = DEFAULT_MAX_QUEUED_DOWNLOADS;
+
+            @Nonnull
+            public Builder setMaxBytes(long maxBytes) {
+                this.maxBytes = maxBytes;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxImageBytes(long maxImageBytes) {
+                this.maxImageBytes = maxImageBytes;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxConcurrentDownloads(int maxConcurrentDownloads) {
+                this.maxConcurrentDownloads = maxConcurrentDownloads;
+                return this;
+            }
+
+            @Nonnull
+            public Builder setMaxQueuedDownloads(int maxQueuedDownloads) {
+                this.maxQueuedDownloads = maxQueuedDownloads;
+                return this;
+            }
+
+            @Nonnull
+            public Settings build() {
+                if (maxBytes <= 0) throw new IllegalStateException("MaxBytes must be positive");
+                if (maxImageBytes <= 0) throw new IllegalStateException("MaxImageBytes must be positive");
+                if (maxConcurrentDownloads <= 0)
+                    throw new IllegalStateException("MaxConcurrentDownloads must be positive");
+                if (maxQueuedDownloads <= 0) throw new IllegalStateException("MaxQueuedDownloads must be positive");
+
+                return new Settings(maxBytes, maxImageBytes, maxConcurrentDownloads, maxQueuedDownloads);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.gpluscb.toni.ultimateframedata;
+
+import com.github.gpluscb.toni.util.PairNonnull;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Move names of one character, normalized once so finding a move is usually a single hash lookup.
+ * Only the move sections are indexed, misc moves are found with "misc".
+ */
+public class MoveIndex {
+    /**
+     * Where {@link #find(String)} points for the misc section
+     */
+    public static final PairNonnull<Integer, Integer> MISC = new PairNonnull<>(-1, -1);
+
+    /**
+     * First move per normalized name
+     */
+    @Nonnull
+    private final Map<String, PairNonnull<Integer, Integer>> byNormalizedName;
+    /**
+     * Names in section order for partial names like "jab" and for autocomplete
+     */
+    @Nonnull
+    private final List<IndexedMove> moves;
+
+    public MoveIndex(@Nonnull CharacterData data) {
+        byNormalizedName = new HashMap<>();
+        moves = new ArrayList<>();
+
+        List<CharacterData.MoveSection> sections = data.moveSections();
+        for (int i = 0; i < sections.size(); i++) {
+            List<CharacterData.MoveData> sectionMoves = sections.get(i).moves();
+            for (int j = 0; j < sectionMoves.size(); j++) {
+                String moveName = sectionMoves.get(j).moveName();
+                if (moveName == null) continue;
+
+                PairNonnull<Integer, Integer> position = new PairNonnull<>(i, j);
+                String normalizedName = MoveNameNormalizer.normalize(moveName);
+                byNormalizedName.putIfAbsent(normalizedName, position);
+                moves.add(new IndexedMove(moveName, moveName.toLowerCase(Locale.ROOT), normalizedName, position));
+            }
+        }
+    }
+
+    /**
+     * @return First is MoveSection idx, second is move idx. {@link #MISC} for the misc section
+     */
+    @Nullable
+    public PairNonnull<Integer, Integer> find(@Nonnull String name) {
+        String normalizedName = MoveNameNormalizer.normalize(name);
+        if (normalizedName.equals("misc")) return MISC;
+
+        PairNonnull<Integer, Integer> exact = byNormalizedName.get(normalizedName);
+        if (exact != null) return exact;
+
+        String lowercaseName = name.toLowerCase(Locale.ROOT).trim();
+        PairNonnull<Integer, Integer> foundMove = null;
+        for (IndexedMove move : moves) {
+            // Direct match -> return early
+            if (move.lowercaseName().contains(lowercaseName)) return move.position();
+
+            // Indirect match -> don't return just yet, we might find a direct match later
+            // Only check for the first move we find indirectly, otherwise "neutral air" will find "neutral air dodge"
+            if (foundMove == null && move.normalizedName().contains(normalizedName)) foundMove = move.position();
+        }
+
+        return foundMove;
+    }
+
+    /**
+     * Ranks exact matches first, then names starting with the input, then names with a word starting with the input,
+     * then names containing the input. Within a rank, moves are in section order.
+     *
+     * @return at most maxResults distinct move names
+     */
+    @Nonnull
+    public List<String> complete(@Nonnull String input, int maxResults) {
+        String normalizedInput = MoveNameNormalizer.normalize(input);
+        String lowercaseInput = input.toLowerCase(Locale.ROOT).trim();
+        String normalizedWord = " " + normalizedInput;
+        String lowercaseWord = " " + lowercaseInput;
+
+        // One bucket per rank, LinkedHashSet to drop repeated names but keep section order
+        List<Set<String>> ranks = List.of(new LinkedHashSet<>(), new LinkedHashSet<>(), new LinkedHashSet<>(), new LinkedHashSet<>());
+        for (IndexedMove move : moves) {
+            int rank = rank(move, normalizedInput, lowercaseInput, normalizedWord, lowercaseWord);
+            if (rank >= 0) ranks.get(rank).add(move.name());
+        }
+
+        return ranks.stream()
+                .flatMap(Set::stream)
+                .distinct()
+                .limit(maxResults)
+                .toList();
+    }
+
+    /**
+     * @return -1 if the move doesn't match
+     */
+    private static int rank(@Nonnull IndexedMove move, @Nonnull String normalizedInput, @Nonnull String lowercaseInput,
+                            @Nonnull String normalizedWord, @Nonnull String lowercaseWord) {
+        String normalizedName = move.normalizedName();
+        String lowercaseName = move.lowercaseName();
+
+        if (normalizedName.equals(normalizedInput)) return 0;
+        if (normalizedName.startsWith(normalizedInput) || lowercaseName.startsWith(lowercaseInput)) return 1;
+        if (normalizedName.contains(normalizedWord) || lowercaseName.contains(lowercaseWord)) return 2;
+        if (normalizedName.contains(normalizedInput) || lowercaseName.contains(lowercaseInput)) return 3;
+        return -1;
+    }
+
+    private record IndexedMove(@Nonnull String name, @Nonnull String lowercaseName, @Nonnull String normalizedName,
+                               @Nonnull PairNonnull<Integer, Integer> position) {
+    }
+}
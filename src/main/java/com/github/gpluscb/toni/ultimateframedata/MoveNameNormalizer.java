@@ -0,0 +1,199 @@
+package com.github.gpluscb.toni.ultimateframedata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Normalizes move names like "bair", "backair", "Back Aerial" or "backwards air" to "back air",
+ * so names written by users can be compared with the names on ultimateframedata.
+ * <p>
+ * Synonyms are replaced in a single left to right pass over a trie of all synonyms, instead of one regex per synonym.
+ */
+public class MoveNameNormalizer {
+    /**
+     * Replacements get a trailing space where the synonym is usually followed by another word, "sideb" becomes "side b".
+     */
+    private static final Node SYNONYMS = buildSynonyms();
+
+    private MoveNameNormalizer() {
+    }
+
+    @Nonnull
+    private static Node buildSynonyms() {
+        Node root = new Node();
+
+        root.insert("air", "air ");
+        root.insert("aerial", "air");
+        root.insert("special", "b");
+        root.insert("neutral", "neutral ");
+        root.insert("normal", "neutral ");
+        root.insert("forward", "forward ");
+        root.insert("forwards", "forward ");
+        root.insert("side", "side ");
+        root.insert("back", "back ");
+        root.insert("backward", "back ");
+        root.insert("backwards", "back ");
+        root.insert("down", "down ");
+        root.insert("downward", "down ");
+        root.insert("downwards", "down ");
+        root.insert("up", "up ");
+        root.insert("upward", "up ");
+        root.insert("upwards", "up ");
+        root.insert("miscellaneous", "misc");
+        root.insert("getup", "getup ");
+        root.insert("get up", "getup ");
+        root.insert("ledge", "ledge ");
+        // Not replaced, but known so "forwardsmash" isn't read as "forwards" "mash"
+        root.insert("smash", "smash");
+        root.insert("tilt", "tilt");
+
+        return root;
+    }
+
+    /**
+     * @return lowercase, single spaced and trimmed
+     */
+    @Nonnull
+    public static String normalize(@Nonnull String moveName) {
+        StringBuilder name = new StringBuilder(moveName.length() + 8);
+
+        int i = 0;
+        while (i < moveName.length()) {
+            Match match = synonymAt(moveName, i);
+
+            if (match == null) {
+                appendCollapsingSpaces(name, Character.toLowerCase(moveName.charAt(i)));
+                i++;
+            } else {
+                String replacement = match.node().replacement;
+                // Never null for a match
+                //noinspection ConstantConditions
+                for (int j = 0; j < replacement.length(); j++) appendCollapsingSpaces(name, replacement.charAt(j));
+                i = match.end();
+            }
+        }
+
+        int length = name.length();
+        if (length > 0 && name.charAt(length - 1) == ' ') name.setLength(length - 1);
+
+        return expandAbbreviation(name.toString());
+    }
+
+    private static void appendCollapsingSpaces(@Nonnull StringBuilder name, char c) {
+        if (Character.isWhitespace(c)) {
+            // Also trims leading spaces
+            if (name.isEmpty() || name.charAt(name.length() - 1) == ' ') return;
+            c = ' ';
+        }
+
+        name.append(c);
+    }
+
+    /**
+     * Prefers the longest synonym starting at from,
+     * unless it ends inside a synonym directly following a shorter one: "forwardspecial" is "forward" "special", not "forwards" "pecial".
+     */
+    @Nullable
+    private static Match synonymAt(@Nonnull String input, int from) {
+        Match longest = null;
+        Match shorter = null;
+
+        Node node = SYNONYMS;
+        for (int i = from; i < input.length(); i++) {
+            node = node.children.get(Character.toLowerCase(input.charAt(i)));
+            if (node == null) break;
+
+            if (node.replacement != null) {
+                if (longest != null) shorter = longest;
+                longest = new Match(node, i + 1);
+            }
+        }
+
+        if (shorter != null && longest != null) {
+            Match following = longestSynonymAt(input, shorter.end());
+            if (following != null && following.end() > longest.end()) return shorter;
+        }
+
+        return longest;
+    }
+
+    @Nullable
+    private static Match longestSynonymAt(@Nonnull String input, int from) {
+        Match longest = null;
+
+        Node node = SYNONYMS;
+        for (int i = from; i < input.length(); i++) {
+            node = node.children.get(Character.toLowerCase(input.charAt(i)));
+            if (node == null) break;
+            if (node.replacement != null) longest = new Match(node, i + 1);
+        }
+
+        return longest;
+    }
+
+    /**
+     * Expands "nair", "f air", "utilt", "dsmash", and also turns "forward b" into "side b".
+     */
+    @Nonnull
+    private static String expandAbbreviation(@Nonnull String name) {
+        int length = name.length();
+
+        // nair|fair|zair|n air|etc.
+        if ((length == 4 || length == 5) && name.endsWith("air") && (length == 4 || name.charAt(1) == ' ')) {
+            char firstChar = name.charAt(0);
+            String expandedCharacter = firstChar == 'z' ? "z" : expandDirection(firstChar);
+            if (expandedCharacter != null) return String.format("%s air", expandedCharacter);
+        }
+
+        // ftilt|f tilt|etc.
+        if ((length == 5 || length == 6) && name.endsWith("tilt") && (length == 5 || name.charAt(1) == ' ')) {
+            String expandedCharacter = expandDirection(name.charAt(0));
+            if (expandedCharacter != null) return String.format("%s tilt", expandedCharacter);
+        }
+
+        // fsmash|f smash|etc.
+        if ((length == 6 || length == 7) && name.endsWith("smash") && (length == 6 || name.charAt(1) == ' ')) {
+            String expandedCharacter = expandDirection(name.charAt(0));
+            if (expandedCharacter != null) return String.format("%s smash", expandedCharacter);
+        }
+
+        if (name.equals("forward b")) return "side b";
+
+        return name;
+    }
+
+    @Nullable
+    private static String expandDirection(char character) {
+        return switch (character) {
+            case 'n' -> "neutral";
+            case 'f' -> "forward";
+            case 'b' -> "back";
+            case 'd' -> "down";
+            case 'u' -> "up";
+            default -> null;
+        };
+    }
+
+    private record Match(@Nonnull Node node, int end) {
+    }
+
+    private static class Node {
+        @Nonnull
+        private final Map<Character, Node> children = new HashMap<>();
+        /**
+         * Null if no synonym ends here
+         */
+        @Nullable
+        private String replacement;
+
+        private void insert(@Nonnull String synonym, @Nonnull String replacement) {
+            Node node = this;
+            for (int i = 0; i < synonym.length(); i++)
+                node = node.children.computeIfAbsent(synonym.charAt(i), c -> new Node());
+
+            node.replacement = replacement;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.github.gpluscb.toni.ultimateframedata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Out of shield options and on-shield advantage of all characters, parsed once into primitive arrays.
+ * A move is punishable by an out of shield option if the option is at most as many frames as the move is negative on shield.
+ * <p>
+ * Roster-wide queries sweep the characters in parallel on the common fork-join pool.
+ */
+public class PunishIndex {
+    /**
+     * Like "Nair - ", "Up B (Frame ", the text around the frame count
+     */
+    private static final Pattern OOS_NAME_SUFFIX = Pattern.compile("[\\s\\p{Punct}–—]*(?:frames?)?[\\s\\p{Punct}–—]*$", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Sorted
+     */
+    @Nonnull
+    private final long[] characterIds;
+    @Nonnull
+    private final String[] characterNames;
+    /**
+     * Per character, sorted fastest first
+     */
+    @Nonnull
+    private final String[][] oosNames;
+    @Nonnull
+    private final int[][] oosFrames;
+    /**
+     * Per character, only moves with known advantage
+     */
+    @Nonnull
+    private final String[][] moveNames;
+    @Nonnull
+    private final int[][] moveAdvantages;
+
+    private PunishIndex(@Nonnull Builder builder) {
+        characterIds = builder.characterIds.stream().mapToLong(Long::longValue).toArray();
+        characterNames = builder.characterNames.toArray(String[]::new);
+        oosNames = builder.oosNames.toArray(String[][]::new);
+        oosFrames = builder.oosFrames.toArray(int[][]::new);
+        moveNames = builder.moveNames.toArray(String[][]::new);
+        moveAdvantages = builder.moveAdvantages.toArray(int[][]::new);
+    }
+
+    /**
+     * Shield grab counts as an option too.
+     *
+     * @return fastest first
+     */
+    @Nonnull
+    private static List<OosOption> parseOosOptions(@Nullable CharacterData.StatsData stats) {
+        if (stats == null) return Collections.emptyList();
+
+        List<OosOption> options = new ArrayList<>();
+        for (String option : stats.oosOptions()) {
+            int frames = FrameDataColumns.parseFrames(option);
+            if (frames == FrameDataColumns.MISSING || frames < 0) continue;
+
+            options.add(new OosOption(parseOosName(option), frames));
+        }
+
+        int shieldGrab = FrameDataColumns.parseFrames(stats.shieldGrab());
+        if (shieldGrab != FrameDataColumns.MISSING && shieldGrab >= 0) options.add(new OosOption("Shield Grab", shieldGrab));
+
+        options.sort(Comparator.comparingInt(OosOption::frames));
+        return options;
+    }
+
+    @Nonnull
+    private static String parseOosName(@Nonnull String option) {
+        int firstDigit = 0;
+        while (firstDigit < option.length() && !java.lang.Character.isDigit(option.charAt(firstDigit))) firstDigit++;
+
+        String name = OOS_NAME_SUFFIX.matcher(option.substring(0, firstDigit)).replaceAll("");
+        return name.isEmpty() ? option.trim() : name;
+    }
+
+    /**
+     * @return fastest first, null if the character is unknown
+     */
+    @Nullable
+    public List<OosOption> getOosOptions(long characterId) {
+        int characterIdx = Arrays.binarySearch(characterIds, characterId);
+        if (characterIdx < 0) return null;
+
+        List<OosOption> options = new ArrayList<>(oosNames[characterIdx].length);
+        for (int i = 0; i < oosNames[characterIdx].length; i++)
+            options.add(new OosOption(oosNames[characterIdx][i], oosFrames[characterIdx][i]));
+
+        return options;
+    }
+
+    /**
+     * Prefers the option with exactly that normalized name, then the fastest option containing the name.
+     *
+     * @return null if the character is unknown or has no such option
+     */
+    @Nullable
+    public OosOption findOosOption(long characterId, @Nonnull String name) {
+        List<OosOption> options = getOosOptions(characterId);
+        if (options == null) return null;
+
+        String normalizedName = MoveNameNormalizer.normalize(name);
+        return options.stream()
+                .filter(option -> MoveNameNormalizer.normalize(option.name()).equals(normalizedName))
+                .findFirst()
+                .or(() -> options.stream()
+                        .filter(option -> MoveNameNormalizer.normalize(option.name()).contains(normalizedName))
+                        .findFirst())
+                .orElse(null);
+    }
+
+    /**
+     * @param advantage on shield of the attacking move
+     * @return for every character who can punish the move, their fastest option, in character order
+     */
+    @Nonnull
+    public List<Punisher> findPunishers(int advantage) {
+        if (advantage >= 0) return Collections.emptyList();
+
+        return IntStream.range(0, characterIds.length)
+                .parallel()
+                .filter(characterIdx -> oosFrames[characterIdx].length > 0 && oosFrames[characterIdx][0] <= -advantage)
+                .mapToObj(characterIdx -> new Punisher(characterIds[characterIdx], characterNames[characterIdx],
+                        new OosOption(oosNames[characterIdx][0], oosFrames[characterIdx][0])))
+                .toList();
+    }
+
+    /**
+     * @param frames of the out of shield option
+     * @return all moves of all characters that are punishable by the option, most negative first
+     */
+    @Nonnull
+    public List<PunishableMove> findPunishable(int frames) {
+        return IntStream.range(0, characterIds.length)
+                .parallel()
+                .boxed()
+                .flatMap(characterIdx -> {
+                    int[] advantages = moveAdvantages[characterIdx];
+                    List<PunishableMove> punishable = new ArrayList<>();
+                    for (int i = 0; i < advantages.length; i++) {
+                        if (advantages[i] <= -frames)
+                            punishable.add(new PunishableMove(characterNames[characterIdx], moveNames[characterIdx][i], advantages[i]));
+                    }
+
+                    return punishable.stream();
+                })
+                .sorted(Comparator.comparingInt(PunishableMove::advantage))
+                .toList();
+    }
+
+    public int getCharacterCount() {
+        return characterIds.length;
+    }
+
+    /**
+     * Only keeps the parsed values, so characters can be decoded one at a time.
+     */
+    public static class Builder {
+        @Nonnull
+        private final List<Long> characterIds = new ArrayList<>();
+        @Nonnull
+        private final List<String> characterNames = new ArrayList<>();
+        @Nonnull
+        private final List<String[]> oosNames = new ArrayList<>();
+        @Nonnull
+        private final List<int[]> oosFrames = new ArrayList<>();
+        @Nonnull
+        private final List<String[]> moveNames = new ArrayList<>();
+        @Nonnull
+        private final List<int[]> moveAdvantages = new ArrayList<>();
+
+        /**
+         * @throws IllegalArgumentException if the id is not greater than the previously added one, lookups rely on the order
+         */
+        @Nonnull
+        public Builder addCharacter(long id, @Nonnull CharacterData data) {
+            if (!characterIds.isEmpty() && characterIds.get(characterIds.size() - 1) >= id)
+                throw new IllegalArgumentException("Characters must be added in ascending id order");
+
+            characterIds.add(id);
+            characterNames.add(data.name());
+
+            List<OosOption> options = parseOosOptions(data.miscData().stats());
+            oosNames.add(options.stream().map(OosOption::name).toArray(String[]::new));
+            oosFrames.add(options.stream().mapToInt(OosOption::frames).toArray());
+
+            List<String> names = new ArrayList<>();
+            List<Integer> advantages = new ArrayList<>();
+            for (CharacterData.MoveSection section : data.moveSections()) {
+                for (CharacterData.MoveData move : section.moves()) {
+                    int advantage = FrameDataColumns.parseFrames(move.advantage());
+                    if (advantage == FrameDataColumns.MISSING) continue;
+
+                    String moveName = move.moveName();
+                    names.add(moveName == null ? "Some Unnamed Move" : moveName);
+                    advantages.add(advantage);
+                }
+            }
+
+            moveNames.add(names.toArray(String[]::new));
+            moveAdvantages.add(advantages.stream().mapToInt(Integer::intValue).toArray());
+
+            return this;
+        }
+
+        @Nonnull
+        public PunishIndex build() {
+            return new PunishIndex(this);
+        }
+    }
+
+    public record OosOption(@Nonnull String name, int frames) {
+        public boolean punishes(int advantage) {
+            return advantage < 0 && frames <= -advantage;
+        }
+    }
+
+    public record Punisher(long characterId, @Nonnull String characterName, @Nonnull OosOption fastestOption) {
+    }
+
+    public record PunishableMove(@Nonnull String characterName, @Nonnull String moveName, int advantage) {
+    }
+}
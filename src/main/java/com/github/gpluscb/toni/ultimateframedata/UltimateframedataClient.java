@@ -1,6 +1,7 @@
 package com.github.gpluscb.toni.ultimateframedata;
 
 import com.github.gpluscb.toni.util.FailLogger;
+import com.github.gpluscb.toni.util.SingleFlight;
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -12,6 +13,7 @@ import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -20,6 +22,8 @@ import java.util.concurrent.ThreadFactory;
 public class UltimateframedataClient {
     @Nonnull
     private final UltimateframedataService service;
+    @Nonnull
+    private final SingleFlight<Long, CharacterData> characterFlight;
 
     public UltimateframedataClient(@Nonnull OkHttpClient client, @Nonnull Gson gson) {
         Executor callbackExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
@@ -43,17 +47,39 @@ public class UltimateframedataClient {
                 .build();
 
         service = retrofit.create(UltimateframedataService.class);
+        characterFlight = new SingleFlight<>();
     }
 
+    /**
+     * Concurrent requests for the same character share one upstream call.
+     */
     @Nonnull
     public CompletableFuture<CharacterData> getCharacter(long id) {
-        CompletableFuture<CharacterData> ret = new CompletableFuture<>();
+        return characterFlight.call(id, key -> getCharacter(key, null, null).thenApply(CharacterResponse::data));
+    }
 
-        service.getCharacter(id).enqueue(FailLogger.logFail(new Callback<>() {
+    /**
+     * Conditional request if any validator is given. Not coalesced.
+     *
+     * @param eTag         from a previous {@link CharacterResponse}
+     * @param lastModified from a previous {@link CharacterResponse}
+     */
+    @Nonnull
+    public CompletableFuture<CharacterResponse> getCharacter(long id, @Nullable String eTag, @Nullable String lastModified) {
+        CompletableFuture<CharacterResponse> ret = new CompletableFuture<>();
+
+        service.getCharacter(id, eTag, lastModified).enqueue(FailLogger.logFail(new Callback<>() {
             @Override
             public void onResponse(@Nonnull Call<CharacterData> call, @Nonnull Response<CharacterData> response) {
-                if (response.isSuccessful()) ret.complete(response.body());
-                else if (response.code() == 404) ret.complete(null);
+                String responseETag = response.headers().get("ETag");
+                String responseLastModified = response.headers().get("Last-Modified");
+
+                if (response.isSuccessful())
+                    ret.complete(new CharacterResponse(false, response.body(), responseETag, responseLastModified));
+                else if (response.code() == 304)
+                    ret.complete(new CharacterResponse(true, null, responseETag, responseLastModified));
+                else if (response.code() == 404)
+                    ret.complete(new CharacterResponse(false, null, responseETag, responseLastModified));
                 else ret.completeExceptionally(new IllegalStateException("Server error"));
             }
 
@@ -65,4 +91,17 @@ public class UltimateframedataClient {
 
         return ret;
     }
+
+    @Nonnull
+    public SingleFlight.Stats getCharacterFlightStats() {
+        return characterFlight.getStats();
+    }
+
+    /**
+     * @param notModified if this is true, data is null and the previous response is still valid
+     * @param data        null if not modified or if there is no character with that id
+     */
+    public record CharacterResponse(boolean notModified, @Nullable CharacterData data, @Nullable String eTag,
+                                    @Nullable String lastModified) {
+    }
 }
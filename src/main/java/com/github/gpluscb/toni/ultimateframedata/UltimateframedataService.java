@@ -2,9 +2,16 @@ package com.github.gpluscb.toni.ultimateframedata;
 
 import retrofit2.Call;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.Path;
 
+import javax.annotation.Nullable;
+
 public interface UltimateframedataService {
+    /**
+     * Null headers are not sent
+     */
     @GET("character/{id}")
-    Call<CharacterData> getCharacter(@Path("id") long id);
+    Call<CharacterData> getCharacter(@Path("id") long id, @Nullable @Header("If-None-Match") String eTag,
+                                     @Nullable @Header("If-Modified-Since") String lastModified);
 }
@@ -0,0 +1,40 @@
+package com.github.gpluscb.toni.util;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds how many threads may use a blocking backend at the same time.
+ * Waiting threads park on a fair semaphore, which unlike a {@code synchronized} block doesn't pin virtual threads.
+ */
+public class ConcurrencyLimiter {
+    @Nonnull
+    private final Semaphore permits;
+
+    public ConcurrencyLimiter(int maxConcurrent) {
+        if (maxConcurrent <= 0) throw new IllegalArgumentException("Max concurrent must be positive");
+
+        permits = new Semaphore(maxConcurrent, true);
+    }
+
+    public <T, E extends Exception> T call(@Nonnull BlockingCall<T, E> call) throws E {
+        permits.acquireUninterruptibly();
+        try {
+            return call.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return an estimate of the number of threads waiting for a permit
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    @FunctionalInterface
+    public interface BlockingCall<T, E extends Exception> {
+        T call() throws E;
+    }
+}
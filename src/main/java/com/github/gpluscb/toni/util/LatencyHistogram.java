@@ -0,0 +1,95 @@
+package com.github.gpluscb.toni.util;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free log-linear histogram in the style of HdrHistogram, with microsecond resolution.
+ * Every power of two is split into {@link #SUB_BUCKETS} linear buckets, so recorded values are off by at most 1/16.
+ * Values above about 19 hours are clamped.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final long MAX_MICROS = (1L << MAX_EXPONENT) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    @Nonnull
+    private final AtomicLongArray buckets;
+    @Nonnull
+    private final AtomicLong count;
+    @Nonnull
+    private final AtomicLong sumMicros;
+    @Nonnull
+    private final AtomicLong maxMicros;
+
+    public LatencyHistogram() {
+        buckets = new AtomicLongArray(BUCKET_COUNT);
+        count = new AtomicLong(0);
+        sumMicros = new AtomicLong(0);
+        maxMicros = new AtomicLong(0);
+    }
+
+    public void record(long duration, @Nonnull TimeUnit unit) {
+        long micros = Math.min(Math.max(unit.toMicros(duration), 0), MAX_MICROS);
+
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMeanMicros() {
+        long count = this.count.get();
+        return count == 0 ? 0 : sumMicros.get() / count;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Concurrent recordings may or may not be included.
+     *
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket containing that percentile, or 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        long count = this.count.get();
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return Math.min(bucketUpperBound(i), maxMicros.get());
+        }
+
+        return maxMicros.get();
+    }
+
+    private static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        // The top bit is implicit, the next SUB_BUCKET_BITS bits pick the linear bucket
+        int subBucket = (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.gpluscb.toni.util;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent calls with equal keys, so only the first one actually runs and the others share its result.
+ * A key is only in flight until its call completes, results are not cached.
+ * <p>
+ * Every caller gets its own copy of the shared future, so cancelling or completing it doesn't affect the other callers.
+ *
+ * @param <K> the request parameters, must implement equals and hashCode
+ */
+public class SingleFlight<K, V> {
+    @Nonnull
+    private final Map<K, CompletableFuture<V>> inFlight;
+    @Nonnull
+    private final LongAdder calls;
+    @Nonnull
+    private final LongAdder coalesced;
+
+    public SingleFlight() {
+        inFlight = new ConcurrentHashMap<>();
+        calls = new LongAdder();
+        coalesced = new LongAdder();
+    }
+
+    /**
+     * @param call only invoked if no call with an equal key is in flight
+     */
+    @Nonnull
+    public CompletableFuture<V> call(@Nonnull K key, @Nonnull Function<? super K, ? extends CompletableFuture<? extends V>> call) {
+        calls.increment();
+
+        CompletableFuture<V> shared = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.copy();
+        }
+
+        try {
+            call.apply(key).whenComplete((result, t) -> {
+                // Remove before completing so callers arriving after completion start a fresh call
+                inFlight.remove(key, shared);
+                if (t != null) shared.completeExceptionally(t);
+                else shared.complete(result);
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+        }
+
+        return shared.copy();
+    }
+
+    @Nonnull
+    public Stats getStats() {
+        return new Stats(inFlight.size(), calls.sum(), coalesced.sum());
+    }
+
+    /**
+     * @param coalesced how many calls shared the result of another call
+     */
+    public record Stats(int inFlight, long calls, long coalesced) {
+    }
+}
@@ -0,0 +1,267 @@
+package com.github.gpluscb.toni.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hierarchical timing wheel for large amounts of mostly cancelled timeouts.
+ * Scheduling and cancelling are O(1) and lock free, they only enqueue work for the tick thread.
+ * The tick thread places timeouts into buckets of {@link #LEVELS} wheels of {@link #WHEEL_SIZE} slots each,
+ * where each wheel covers {@link #WHEEL_SIZE} times the range of the one below it.
+ * Timeouts in higher wheels are cascaded down when the lower wheel wraps around.
+ * <p>
+ * Timeouts will fire at most one tick late (plus scheduling delay), never early.
+ * Callbacks are run on a separate pool so slow callbacks don't delay other expirations.
+ */
+public class TimingWheel {
+    private static final Logger log = LogManager.getLogger(TimingWheel.class);
+
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    /**
+     * With a 100ms tick this is about 13 years. Longer timeouts are cascaded down repeatedly.
+     */
+    private static final long MAX_DELTA_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    @Nonnull
+    private final ScheduledExecutorService tickPool;
+    @Nonnull
+    private final ThreadPoolExecutor callbackPool;
+
+    private final long tickNanos;
+    private final long startNanos;
+
+    /**
+     * Only accessed by the tick thread.
+     */
+    @Nonnull
+    private final Bucket[][] wheels;
+    /**
+     * The next tick to process. Only accessed by the tick thread.
+     */
+    private long currentTick;
+
+    @Nonnull
+    private final Queue<Timeout> scheduledTimeouts;
+    @Nonnull
+    private final Queue<Timeout> cancelledTimeouts;
+    @Nonnull
+    private final AtomicInteger pendingCount;
+
+    /**
+     * @param callbackThreads the number of threads to run callbacks on
+     */
+    public TimingWheel(long tick, @Nonnull TimeUnit unit, int callbackThreads) {
+        if (tick <= 0) throw new IllegalArgumentException("Tick must be positive");
+
+        tickNanos = unit.toNanos(tick);
+        startNanos = System.nanoTime();
+
+        wheels = new Bucket[LEVELS][WHEEL_SIZE];
+        for (Bucket[] wheel : wheels)
+            for (int i = 0; i < WHEEL_SIZE; i++) wheel[i] = new Bucket();
+
+        currentTick = 0;
+
+        scheduledTimeouts = new ConcurrentLinkedQueue<>();
+        cancelledTimeouts = new ConcurrentLinkedQueue<>();
+        pendingCount = new AtomicInteger(0);
+
+        tickPool = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "TimingWheel Tick-Thread"));
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        // Unbounded so the tick thread never has to wait for or run a callback itself
+        callbackPool = new ThreadPoolExecutor(callbackThreads, callbackThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> new Thread(r, String.format("TimingWheel [%d] Callback-Thread", threadCounter.getAndIncrement())));
+
+        // This might swallow exceptions otherwise
+        tickPool.scheduleAtFixedRate(FailLogger.logFail(this::advance), tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param delay if this is not positive, the task will be run on the next tick
+     */
+    @Nonnull
+    public Timeout schedule(@Nonnull Runnable task, long delay, @Nonnull TimeUnit unit) {
+        long elapsedNanos = System.nanoTime() - startNanos + unit.toNanos(delay);
+        // Round up so we never fire early
+        long deadlineTick = Math.max(0, (elapsedNanos + tickNanos - 1) / tickNanos);
+
+        Timeout timeout = new Timeout(task, deadlineTick);
+        pendingCount.incrementAndGet();
+        scheduledTimeouts.add(timeout);
+
+        return timeout;
+    }
+
+    /**
+     * @return the number of timeouts that are neither expired nor cancelled
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * @return the number of expired callbacks waiting for a callback thread
+     */
+    public int getQueuedCallbackCount() {
+        return callbackPool.getQueue().size();
+    }
+
+    public void shutdown() {
+        tickPool.shutdownNow();
+        callbackPool.shutdownNow();
+    }
+
+    private void advance() {
+        long nowTick = (System.nanoTime() - startNanos) / tickNanos;
+
+        Timeout scheduled;
+        while ((scheduled = scheduledTimeouts.poll()) != null)
+            if (scheduled.state.get() == Timeout.PENDING) place(scheduled);
+
+        Timeout cancelled;
+        while ((cancelled = cancelledTimeouts.poll()) != null)
+            if (cancelled.bucket != null) cancelled.bucket.remove(cancelled);
+
+        while (currentTick <= nowTick) {
+            processTick(currentTick);
+            currentTick++;
+        }
+    }
+
+    private void processTick(long tick) {
+        // Cascade from the top so timeouts moving down multiple levels end up in the right slot
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int levelShift = WHEEL_BITS * level;
+            if ((tick & ((1L << levelShift) - 1)) != 0) continue;
+
+            Bucket bucket = wheels[level][(int) ((tick >>> levelShift) & WHEEL_MASK)];
+            Timeout timeout;
+            while ((timeout = bucket.poll()) != null) place(timeout);
+        }
+
+        Bucket bucket = wheels[0][(int) (tick & WHEEL_MASK)];
+        Timeout timeout;
+        while ((timeout = bucket.poll()) != null) {
+            if (timeout.deadlineTick > tick) place(timeout);
+            else expire(timeout);
+        }
+    }
+
+    private void place(@Nonnull Timeout timeout) {
+        long deltaTicks = timeout.deadlineTick - currentTick;
+        if (deltaTicks < 0) {
+            expire(timeout);
+            return;
+        }
+
+        long targetTick = deltaTicks > MAX_DELTA_TICKS ? currentTick + MAX_DELTA_TICKS : timeout.deadlineTick;
+        long effectiveDelta = targetTick - currentTick;
+
+        int level = 0;
+        while (level < LEVELS - 1 && effectiveDelta >= 1L << (WHEEL_BITS * (level + 1))) level++;
+
+        int slot = (int) ((targetTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        wheels[level][slot].add(timeout);
+    }
+
+    private void expire(@Nonnull Timeout timeout) {
+        if (!timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) return;
+        pendingCount.decrementAndGet();
+
+        try {
+            // This might swallow exceptions otherwise
+            callbackPool.execute(FailLogger.logFail(timeout.task));
+        } catch (RejectedExecutionException e) {
+            log.warn("Timeout callback rejected, probably shutting down", e);
+        }
+    }
+
+    public class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        @Nonnull
+        private final Runnable task;
+        private final long deadlineTick;
+        @Nonnull
+        private final AtomicInteger state;
+
+        // Only accessed by the tick thread
+        @Nullable
+        private Bucket bucket;
+        @Nullable
+        private Timeout prev;
+        @Nullable
+        private Timeout next;
+
+        private Timeout(@Nonnull Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+            state = new AtomicInteger(PENDING);
+        }
+
+        /**
+         * @return false if this was already expired or cancelled
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) return false;
+
+            pendingCount.decrementAndGet();
+            cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list, so timeouts can be removed in O(1). Only accessed by the tick thread.
+     */
+    private static class Bucket {
+        @Nullable
+        private TimingWheel.Timeout head;
+
+        private void add(@Nonnull TimingWheel.Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) head.prev = timeout;
+            head = timeout;
+        }
+
+        private void remove(@Nonnull TimingWheel.Timeout timeout) {
+            if (timeout.prev == null) head = timeout.next;
+            else timeout.prev.next = timeout.next;
+            if (timeout.next != null) timeout.next.prev = timeout.prev;
+
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        @Nullable
+        private TimingWheel.Timeout poll() {
+            TimingWheel.Timeout timeout = head;
+            if (timeout != null) remove(timeout);
+            return timeout;
+        }
+    }
+}
@@ -1,21 +1,27 @@
 package com.github.gpluscb.toni.util.discord;
 
+import com.github.gpluscb.toni.menu.InteractionRouter;
 import com.github.gpluscb.toni.util.MiscUtil;
-import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
 import net.dv8tion.jda.api.interactions.callbacks.IModalCallback;
 import net.dv8tion.jda.api.interactions.modals.Modal;
 import net.dv8tion.jda.api.requests.restaction.interactions.ModalCallbackAction;
 
 import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
 public abstract class WaitableModalHandler<T> {
+    /**
+     * Dismissed modals are never reported, so we give up on them after a while.
+     */
+    private static final long MODAL_TIMEOUT_MINUTES = 30;
+
     @Nonnull
-    private final EventWaiter waiter;
+    private final InteractionRouter router;
 
-    protected WaitableModalHandler(@Nonnull EventWaiter waiter) {
-        this.waiter = waiter;
+    protected WaitableModalHandler(@Nonnull InteractionRouter router) {
+        this.router = router;
     }
 
     /**
@@ -35,12 +41,7 @@ public abstract class WaitableModalHandler<T> {
         String id = MiscUtil.randomString(5);
         Modal m = toModal().setId(id).build();
 
-        // TODO: Timeout
-        waiter.waitForEvent(
-                ModalInteractionEvent.class,
-                e -> e.getModalId().equals(id),
-                e -> onReply.accept(fromModalInteraction(e), e)
-        );
+        router.awaitModal(id, e -> onReply.accept(fromModalInteraction(e), e), MODAL_TIMEOUT_MINUTES, TimeUnit.MINUTES);
 
         return interaction.replyModal(m);
     }